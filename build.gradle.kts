@@ -17,6 +17,11 @@ sourceSets {
             srcDirs("src/main/gen")
         }
     }
+    // 词法器基准（src/jmh/java），编译与运行时使用主代码及其 IDE 平台依赖
+    create("jmh") {
+        compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+        runtimeClasspath += output + compileClasspath
+    }
 }
 
 repositories {
@@ -29,6 +34,11 @@ repositories {
 dependencies {
     testImplementation("org.junit.jupiter:junit-jupiter-api:5.8.2")
     testRuntimeOnly("org.junit.jupiter:junit-jupiter-engine:5.8.2")
+    // 平台测试框架（BasePlatformTestCase 等）基于 JUnit 3，需要 vintage 引擎运行
+    testRuntimeOnly("org.junit.vintage:junit-vintage-engine:5.8.2")
+
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
 }
 
 // Configure Gradle IntelliJ Plugin
@@ -102,4 +112,27 @@ tasks {
     compileJava {
         dependsOn(generateLexer, generateParser)
     }
+
+    // 将 keywords.yaml 编译为二进制表 keywords.spec，运行时无需解析 YAML
+    val compileSpec by registering(JavaExec::class) {
+        val specSource = file("src/main/resources/keywords.yaml")
+        val specOutputDir = layout.buildDirectory.dir("generated/spec")
+        dependsOn(compileJava)
+        inputs.file(specSource)
+        outputs.dir(specOutputDir)
+        classpath = files(sourceSets.main.get().java.destinationDirectory) + sourceSets.main.get().compileClasspath
+        mainClass.set("com.ferock.classicasp.SpecCompiler")
+        args(specSource.absolutePath, specOutputDir.get().file("keywords.spec").asFile.absolutePath)
+    }
+
+    processResources {
+        from(compileSpec)
+    }
+
+    // 运行词法器基准：./gradlew jmh（直接调用 JMH 命令行入口，附带 gc 分配统计）
+    register<JavaExec>("jmh") {
+        classpath = sourceSets["jmh"].runtimeClasspath
+        mainClass.set("org.openjdk.jmh.Main")
+        args("-prof", "gc")
+    }
 }
\ No newline at end of file
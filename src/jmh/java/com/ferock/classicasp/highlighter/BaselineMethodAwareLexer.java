@@ -0,0 +1,234 @@
+package com.ferock.classicasp.highlighter;
+
+import com.ferock.classicasp.SpecRegistry;
+import com.intellij.lexer.FlexAdapter;
+import com.intellij.lexer.Lexer;
+import com.intellij.lexer.LexerBase;
+import com.intellij.lexer.RestartableLexer;
+import com.intellij.lexer.TokenIterator;
+import com.intellij.psi.TokenType;
+import com.intellij.psi.tree.IElementType;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 基准对照：改为 CaseInsensitiveLookup 查询之前的 MethodAwareLexer（原样保留，仅改类名）
+ * 每个标识符都会创建子串并转小写，再查 SpecRegistry 的 Set/Map。
+ *
+ * 轻量级语义包装词法器：
+ * 将 DOT 后紧邻的 IDENTIFIER/WRITE 在满足对象方法或系统函数的情况下重写为 OBJECT_METHOD。
+ *
+ * 重写所需的上下文全部编码进 getState()，编辑器可在任意 token 边界重新开始词法分析：
+ * <pre>
+ *   bit 0-7   委托 Flex 词法器状态
+ *   bit 8     上一个显著 token 是否为 DOT
+ *   bit 9-    上一个标识符：0=无，1=非已知对象，2+k=已知对象表中的第 k 个对象
+ * </pre>
+ */
+public class BaselineMethodAwareLexer extends LexerBase implements RestartableLexer {
+    private static final int DELEGATE_STATE_MASK = 0xFF;
+    private static final int AFTER_DOT_BIT = 1 << 8;
+    private static final int IDENTIFIER_SHIFT = 9;
+
+    private static final int NO_IDENTIFIER = 0;
+    private static final int UNKNOWN_IDENTIFIER = 1;
+    private static final int FIRST_OBJECT_ID = 2;
+
+    private static volatile ObjectTable objectTable;
+
+    private final Lexer delegate;
+
+    private CharSequence buffer;
+    private int endOffset;
+
+    private int tokenStart;
+    private int tokenEnd;
+    private IElementType tokenType;
+
+    private boolean rewriteLogEmitted = false;
+
+    // 当前 token 之前的上下文（均可由状态恢复）
+    private boolean afterDot = false;
+    // 为了判定对象名，记录上一个标识符：见 NO_IDENTIFIER / UNKNOWN_IDENTIFIER / FIRST_OBJECT_ID
+    private int lastIdentifierId = NO_IDENTIFIER;
+
+    public BaselineMethodAwareLexer() {
+        this.delegate = new FlexAdapter(new com.ferock.classicasp.ClassicASPLexer(null));
+    }
+
+    @Override
+    public void start(@NotNull CharSequence buffer, int startOffset, int endOffset, int initialState) {
+        this.buffer = buffer;
+        this.endOffset = endOffset;
+        this.rewriteLogEmitted = false;
+        this.afterDot = (initialState & AFTER_DOT_BIT) != 0;
+        this.lastIdentifierId = initialState >>> IDENTIFIER_SHIFT;
+
+        delegate.start(buffer, startOffset, endOffset, initialState & DELEGATE_STATE_MASK);
+        pullAndRewrite();
+    }
+
+    @Override
+    public void start(@NotNull CharSequence buffer, int startOffset, int endOffset, int initialState, TokenIterator tokenIterator) {
+        // 状态已完整描述上下文，无需回看之前的 token
+        start(buffer, startOffset, endOffset, initialState);
+    }
+
+    @Override
+    public int getStartState() { return 0; }
+
+    @Override
+    public boolean isRestartableState(int state) {
+        // 所有上下文都已编码进状态，任意 token 边界都可以重新开始
+        return true;
+    }
+
+    @Override
+    public int getState() {
+        int state = delegate.getState() & DELEGATE_STATE_MASK;
+        if (afterDot) state |= AFTER_DOT_BIT;
+        return state | (lastIdentifierId << IDENTIFIER_SHIFT);
+    }
+
+    @Override
+    public IElementType getTokenType() { return tokenType; }
+
+    @Override
+    public int getTokenStart() { return tokenStart; }
+
+    @Override
+    public int getTokenEnd() { return tokenEnd; }
+
+    @Override
+    public void advance() {
+        if (tokenType != null && !isWhitespaceOrComment(tokenType)) {
+            afterDot = tokenType == com.ferock.classicasp.psi.ClassicASTypes.DOT;
+            // 记录最近一次可作为“对象名”的文本
+            if (tokenType == com.ferock.classicasp.psi.ClassicASTypes.IDENTIFIER ||
+                tokenType == com.ferock.classicasp.psi.ClassicASTypes.WRITE ||
+                tokenType == com.ferock.classicasp.psi.ClassicASTypes.RESPONSE ||
+                tokenType == com.ferock.classicasp.psi.ClassicASTypes.REQUEST ||
+                tokenType == com.ferock.classicasp.psi.ClassicASTypes.SERVER ||
+                tokenType == com.ferock.classicasp.psi.ClassicASTypes.SESSION ||
+                tokenType == com.ferock.classicasp.psi.ClassicASTypes.APPLICATION ||
+                tokenType == ClassicASPTokenTypes.ERR) {
+                lastIdentifierId = objectTable().idOf(buffer.subSequence(tokenStart, tokenEnd).toString());
+            }
+        }
+        delegate.advance();
+        pullAndRewrite();
+    }
+
+    @NotNull
+    @Override
+    public CharSequence getBufferSequence() { return buffer; }
+
+    @Override
+    public int getBufferEnd() { return endOffset; }
+
+    private void pullAndRewrite() {
+        tokenType = delegate.getTokenType();
+        if (tokenType == null) {
+            tokenStart = tokenEnd = endOffset;
+            return;
+        }
+        tokenStart = delegate.getTokenStart();
+        tokenEnd = delegate.getTokenEnd();
+
+        // 规则A：将 On / Error / Resume / Err / Goto 等识别为关键字（词法层）
+        if (tokenType == com.ferock.classicasp.psi.ClassicASTypes.IDENTIFIER) {
+            String text = buffer.subSequence(tokenStart, tokenEnd).toString();
+            String lower = text.toLowerCase();
+            if ("on".equals(lower)) {
+                tokenType = ClassicASPTokenTypes.ON;
+            } else if ("error".equals(lower)) {
+                tokenType = ClassicASPTokenTypes.ERROR;
+            } else if ("resume".equals(lower)) {
+                tokenType = ClassicASPTokenTypes.RESUME;
+            } else if ("err".equals(lower)) {
+                tokenType = ClassicASPTokenTypes.ERR;
+            } else if ("goto".equals(lower)) {
+                tokenType = ClassicASPTokenTypes.GOTO;
+            } else {
+                // YAML 驱动：若存在于 keywords.* 任一分组，则作为通用关键字高亮
+                Set<String> yamlKeywords = SpecRegistry.getKeywords();
+                if (yamlKeywords != null && yamlKeywords.contains(lower)) {
+                    tokenType = ClassicASPTokenTypes.KEYWORD_GENERIC;
+                }
+            }
+        }
+
+        if (isMethodNameCandidate(tokenType) && isAfterDotWithKnownObject()) {
+            tokenType = ClassicASPTokenTypes.OBJECT_METHOD;
+            if (!rewriteLogEmitted) {
+                System.out.println("[ASP][MethodAwareLexer] rewrite to OBJECT_METHOD at [" + tokenStart + "," + tokenEnd + "]");
+                rewriteLogEmitted = true;
+            }
+        }
+    }
+
+    private boolean isAfterDotWithKnownObject() {
+        if (!afterDot) return false;
+        // DOT 之前应当是对象名；我们已在 advance 时记录了上一个标识符
+        // 简化：使用 lastIdentifierId 作为对象名候选
+        if (lastIdentifierId == NO_IDENTIFIER) return false;
+        String methodName = buffer.subSequence(tokenStart, tokenEnd).toString();
+
+        Set<String> sysFns = SpecRegistry.getSysFunctions();
+        Set<String> methods = objectTable().methodsOf(lastIdentifierId);
+        if (methods != null && methods.contains(methodName.toLowerCase())) {
+            return true;
+        }
+        // 兜底：允许系统函数在 DOT 后也着成方法名（例如自定义对象也可能调用内置函数名）
+        return sysFns != null && sysFns.contains(methodName.toLowerCase());
+    }
+
+    private boolean isMethodNameCandidate(IElementType type) {
+        return type == com.ferock.classicasp.psi.ClassicASTypes.IDENTIFIER
+                || type == com.ferock.classicasp.psi.ClassicASTypes.WRITE;
+    }
+
+    private boolean isWhitespaceOrComment(IElementType type) {
+        return type == TokenType.WHITE_SPACE
+                || type == com.ferock.classicasp.psi.ClassicASTypes.WHITE_SPACE
+                || type == com.ferock.classicasp.psi.ClassicASTypes.COMMENT;
+    }
+
+    private static ObjectTable objectTable() {
+        Map<String, Set<String>> objMethods = SpecRegistry.getObjectToMethods();
+        ObjectTable table = objectTable;
+        if (table == null || table.source != objMethods) {
+            table = new ObjectTable(objMethods);
+            objectTable = table;
+        }
+        return table;
+    }
+
+    /**
+     * 已知对象的稳定编号表（按对象名排序），用于把“上一个标识符”压缩进 int 状态
+     */
+    private static final class ObjectTable {
+        private final Map<String, Set<String>> source;
+        private final String[] names;
+
+        private ObjectTable(Map<String, Set<String>> source) {
+            this.source = source;
+            this.names = source.keySet().toArray(new String[0]);
+            Arrays.sort(names);
+        }
+
+        int idOf(String identifier) {
+            if (identifier == null || identifier.isEmpty()) return NO_IDENTIFIER;
+            int index = Arrays.binarySearch(names, identifier.toLowerCase());
+            return index >= 0 ? FIRST_OBJECT_ID + index : UNKNOWN_IDENTIFIER;
+        }
+
+        Set<String> methodsOf(int id) {
+            int index = id - FIRST_OBJECT_ID;
+            return index >= 0 && index < names.length ? source.get(names[index]) : null;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.ferock.classicasp.highlighter;
+
+import com.intellij.lexer.Lexer;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 高亮词法器 MethodAwareLexer 的吞吐基准（./gradlew jmh）
+ * current 为当前实现，baseline 为改用 CaseInsensitiveLookup 之前的同一词法器（BaselineMethodAwareLexer）；
+ * 两者使用同一个委托词法器与同一份文本。结果中的 tokens 行即每秒词法 token 数，
+ * gc.alloc.rate.norm 为每次扫描的分配字节数。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LexerBenchmark {
+
+    private static final String PAGE =
+            "<html>\n<body>\n"
+            + "<%\n"
+            + "Option Explicit\n"
+            + "Dim conn, rs, i\n"
+            + "On Error Resume Next\n"
+            + "Set conn = Server.CreateObject(\"ADODB.Connection\")\n"
+            + "Function FormatName(ByVal first, ByVal last)\n"
+            + "    If Len(first) > 0 And Not IsNull(last) Then\n"
+            + "        FormatName = UCase(Left(first, 1)) & LCase(Mid(first, 2)) & \" \" & last\n"
+            + "    Else\n"
+            + "        FormatName = Trim(last)\n"
+            + "    End If\n"
+            + "End Function\n"
+            + "For i = 1 To 10\n"
+            + "    Response.Write FormatName(Request.QueryString(\"first\"), Session(\"last\")) ' greeting\n"
+            + "Next\n"
+            + "If Err.Number <> 0 Then Response.Redirect \"error.asp\"\n"
+            + "%>\n"
+            + "<p class=\"note\"><%= Server.HTMLEncode(Request.Form(\"comment\")) %></p>\n"
+            + "</body>\n</html>\n";
+
+    // 文本至少包含的 token 数（按整页重复）
+    @Param({"1000", "10000", "100000"})
+    public int tokenCount;
+
+    private String text;
+    private Lexer current;
+    private Lexer baseline;
+
+    /**
+     * 每秒词法 token 数：JMH 把 OPERATIONS 类型的计数器按吞吐报告
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Tokens {
+        public long tokens;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            tokens = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        current = new MethodAwareLexer();
+        baseline = new BaselineMethodAwareLexer();
+        // 预先构建 SpecRegistry 与词法器的查找表，不计入测量
+        int pageTokens = lex(current, PAGE);
+        lex(baseline, PAGE);
+        text = PAGE.repeat((tokenCount + pageTokens - 1) / pageTokens);
+    }
+
+    @Benchmark
+    public int current(Tokens counter) {
+        int tokens = lex(current, text);
+        counter.tokens += tokens;
+        return tokens;
+    }
+
+    @Benchmark
+    public int baseline(Tokens counter) {
+        int tokens = lex(baseline, text);
+        counter.tokens += tokens;
+        return tokens;
+    }
+
+    private static int lex(Lexer lexer, CharSequence text) {
+        int tokens = 0;
+        lexer.start(text, 0, text.length(), 0);
+        while (lexer.getTokenType() != null) {
+            tokens++;
+            lexer.advance();
+        }
+        return tokens;
+    }
+}
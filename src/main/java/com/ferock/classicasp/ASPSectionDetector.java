@@ -1,11 +1,99 @@
 package com.ferock.classicasp;
 
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+
 /**
  * ASP区域检测器
  * 提供统一的ASP代码区域检测逻辑，供格式化器、语法高亮器等组件使用
  */
 public class ASPSectionDetector {
 
+    /**
+     * Document 上缓存的区域索引，按 modificationStamp 判断是否过期
+     */
+    private static final Key<CachedSectionIndex> SECTION_INDEX_KEY = Key.create("ClassicASP.AspSectionIndex");
+
+    /**
+     * 构建可复用的ASP区域索引
+     * 需要多次查询同一份内容时，应持有该索引而不是反复调用下面的静态方法
+     * @param content 文件内容
+     * @return ASP区域索引
+     */
+    public static AspSectionIndex buildIndex(CharSequence content) {
+        return AspSectionIndex.build(content);
+    }
+
+    /**
+     * 获取文档的ASP区域索引
+     * 结果缓存在 Document 的 user data 中，文档未修改前重复调用不会重新扫描
+     * @param document 文档
+     * @return ASP区域索引
+     */
+    public static AspSectionIndex getIndex(Document document) {
+        if (document == null) {
+            return AspSectionIndex.EMPTY_INDEX;
+        }
+
+        // 先取时间戳再取文本：并发修改时最多导致下一次重新构建
+        long stamp = document.getModificationStamp();
+        CachedSectionIndex cached = document.getUserData(SECTION_INDEX_KEY);
+        if (cached != null && cached.stamp == stamp) {
+            return cached.index;
+        }
+
+        AspSectionIndex index = AspSectionIndex.build(document.getImmutableCharSequence());
+        document.putUserData(SECTION_INDEX_KEY, new CachedSectionIndex(stamp, index));
+        return index;
+    }
+
+    /**
+     * 文档修改后增量更新已缓存的索引
+     * 仅当缓存对应修改前的版本时才更新，否则保持过期状态，留给下次查询全量重建
+     * @param event 文档修改事件
+     */
+    static void updateIndex(DocumentEvent event) {
+        Document document = event.getDocument();
+        CachedSectionIndex cached = document.getUserData(SECTION_INDEX_KEY);
+        if (cached == null || cached.stamp != event.getOldTimeStamp()) {
+            return;
+        }
+
+        AspSectionIndex index = cached.index.update(document.getImmutableCharSequence(),
+                event.getOffset(), event.getOldLength(), event.getNewLength());
+        document.putUserData(SECTION_INDEX_KEY, new CachedSectionIndex(document.getModificationStamp(), index));
+    }
+
+    /**
+     * 获取文件的ASP区域索引
+     * 有对应 Document 时复用其缓存，否则按文件内容临时构建
+     * @param file PSI文件
+     * @return ASP区域索引
+     */
+    public static AspSectionIndex getIndex(PsiFile file) {
+        if (file == null) {
+            return AspSectionIndex.EMPTY_INDEX;
+        }
+
+        Document document = PsiDocumentManager.getInstance(file.getProject()).getDocument(file);
+        if (document != null) {
+            return getIndex(document);
+        }
+        return AspSectionIndex.build(file.getViewProvider().getContents());
+    }
+
+    /**
+     * 获取文档的ASP区域信息（使用缓存的索引）
+     * @param document 文档
+     * @return ASP区域信息数组，每个元素包含 [start, end]
+     */
+    public static int[][] getASPSections(Document document) {
+        return getIndex(document).getSections();
+    }
+
     /**
      * 检查指定位置是否在ASP代码区域内
      * @param content 文件内容
@@ -17,33 +105,7 @@ public class ASPSectionDetector {
             return false;
         }
 
-        // 简单遍历，只记录ASP区域状态
-        boolean inASPSection = false;
-        int currentPos = 0;
-
-        while (currentPos < content.length() && currentPos <= position) {
-            // 查找ASP开始标签 <%
-            if (currentPos + 1 < content.length() &&
-                content.charAt(currentPos) == '<' &&
-                content.charAt(currentPos + 1) == '%') {
-                inASPSection = true;
-                currentPos += 2;
-                continue;
-            }
-
-            // 查找ASP结束标签 %>
-            if (currentPos + 1 < content.length() &&
-                content.charAt(currentPos) == '%' &&
-                content.charAt(currentPos + 1) == '>') {
-                inASPSection = false;
-                currentPos += 2;
-                continue;
-            }
-
-            currentPos++;
-        }
-
-        return inASPSection;
+        return AspSectionIndex.build(content).isInASPSection(position);
     }
 
     /**
@@ -57,18 +119,7 @@ public class ASPSectionDetector {
             return false;
         }
 
-        String[] lines = content.split("\n", -1);
-        if (lineNumber >= lines.length) {
-            return false;
-        }
-
-        // 计算该行的起始位置
-        int lineStart = 0;
-        for (int i = 0; i < lineNumber; i++) {
-            lineStart += lines[i].length() + 1; // +1 for newline
-        }
-
-        return isInASPSection(content, lineStart);
+        return AspSectionIndex.build(content).isLineInASPSection(lineNumber);
     }
 
     /**
@@ -81,43 +132,7 @@ public class ASPSectionDetector {
             return new int[0][2];
         }
 
-        java.util.List<int[]> sections = new java.util.ArrayList<>();
-        boolean inASPSection = false;
-        int startPos = -1;
-        int currentPos = 0;
-
-        while (currentPos < content.length()) {
-            // 查找ASP开始标签 <%
-            if (currentPos + 1 < content.length() &&
-                content.charAt(currentPos) == '<' &&
-                content.charAt(currentPos + 1) == '%') {
-
-                if (!inASPSection) {
-                    startPos = currentPos;
-                    inASPSection = true;
-                }
-                currentPos += 2;
-                continue;
-            }
-
-            // 查找ASP结束标签 %>
-            if (currentPos + 1 < content.length() &&
-                content.charAt(currentPos) == '%' &&
-                content.charAt(currentPos + 1) == '>') {
-
-                if (inASPSection && startPos >= 0) {
-                    sections.add(new int[]{startPos, currentPos + 2});
-                    inASPSection = false;
-                    startPos = -1;
-                }
-                currentPos += 2;
-                continue;
-            }
-
-            currentPos++;
-        }
-
-        return sections.toArray(new int[0][2]);
+        return AspSectionIndex.build(content).getSections();
     }
 
     /**
@@ -172,4 +187,17 @@ public class ASPSectionDetector {
 
         return new int[]{aspCodeLines, htmlLines, lines.length};
     }
+
+    /**
+     * 与修改时间戳绑定的索引缓存项
+     */
+    private static final class CachedSectionIndex {
+        private final long stamp;
+        private final AspSectionIndex index;
+
+        private CachedSectionIndex(long stamp, AspSectionIndex index) {
+            this.stamp = stamp;
+            this.index = index;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,378 @@
+package com.ferock.classicasp;
+
+import java.util.Arrays;
+
+/**
+ * ASP区域索引
+ * 一次扫描文本，记录 <% / %> 边界与行起始偏移，之后的位置/行查询均为二分查找（O(log n)）。
+ * 实例不可变，可在格式化器、补全、跳转等组件间复用。
+ */
+public final class AspSectionIndex {
+
+    private static final int[] EMPTY = new int[0];
+
+    /**
+     * 空文本的索引
+     */
+    public static final AspSectionIndex EMPTY_INDEX = new AspSectionIndex(0, EMPTY, new int[]{0});
+
+    private final int textLength;
+
+    /**
+     * 状态翻转的标签起始偏移（升序）。
+     * 偶数下标为进入ASP的 "<%"，奇数下标为离开ASP的 "%>"；
+     * 嵌套的 "<%" 与HTML中孤立的 "%>" 不改变状态，因此不记录。
+     */
+    private final int[] boundaries;
+
+    /**
+     * 每一行的起始偏移（升序，按 '\n' 分行，首元素恒为 0）
+     */
+    private final int[] lineStarts;
+
+    private AspSectionIndex(int textLength, int[] boundaries, int[] lineStarts) {
+        this.textLength = textLength;
+        this.boundaries = boundaries;
+        this.lineStarts = lineStarts;
+    }
+
+    /**
+     * 单次扫描构建索引
+     * @param content 文件内容
+     * @return ASP区域索引
+     */
+    public static AspSectionIndex build(CharSequence content) {
+        if (content == null || content.length() == 0) {
+            return EMPTY_INDEX;
+        }
+
+        int length = content.length();
+        int[] bounds = new int[16];
+        int boundCount = 0;
+        int[] lines = new int[64];
+        int lineCount = 1;
+        boolean inASPSection = false;
+
+        int pos = 0;
+        while (pos < length) {
+            char c = content.charAt(pos);
+            if (c == '\n') {
+                if (lineCount == lines.length) {
+                    lines = Arrays.copyOf(lines, lineCount << 1);
+                }
+                lines[lineCount++] = pos + 1;
+                pos++;
+                continue;
+            }
+            if (pos + 1 < length) {
+                char next = content.charAt(pos + 1);
+                boolean open = c == '<' && next == '%';
+                boolean close = c == '%' && next == '>';
+                if (open || close) {
+                    // 仅记录改变状态的标签
+                    if (open != inASPSection) {
+                        if (boundCount == bounds.length) {
+                            bounds = Arrays.copyOf(bounds, boundCount << 1);
+                        }
+                        bounds[boundCount++] = pos;
+                        inASPSection = open;
+                    }
+                    pos += 2;
+                    continue;
+                }
+            }
+            pos++;
+        }
+
+        return new AspSectionIndex(length,
+                boundCount == 0 ? EMPTY : Arrays.copyOf(bounds, boundCount),
+                Arrays.copyOf(lines, lineCount));
+    }
+
+    /**
+     * 根据一次文本修改增量更新索引
+     * 修改点之前的边界与行首原样保留，之后的整体平移 delta；
+     * 只重新扫描受损窗口，直到扫描状态与旧索引重新同步为止。
+     * @param text 修改后的完整文本
+     * @param offset 修改起始偏移
+     * @param oldLength 被替换的旧文本长度
+     * @param newLength 插入的新文本长度
+     * @return 新的ASP区域索引（当前实例不变）
+     */
+    public AspSectionIndex update(CharSequence text, int offset, int oldLength, int newLength) {
+        int delta = newLength - oldLength;
+        if (text == null || offset < 0 || oldLength < 0 || newLength < 0 ||
+            offset + oldLength > textLength || text.length() != textLength + delta) {
+            // 与当前索引不匹配，退回全量扫描
+            return build(text);
+        }
+        if (text.length() == 0) {
+            return EMPTY_INDEX;
+        }
+
+        return new AspSectionIndex(text.length(),
+                updateBoundaries(text, offset, newLength, delta),
+                updateLineStarts(text, offset, oldLength, newLength, delta));
+    }
+
+    private int[] updateLineStarts(CharSequence text, int offset, int oldLength, int newLength, int delta) {
+        // 行首 <= offset 的行由修改点之前的换行产生，保持不变；
+        // (offset, offset + oldLength] 之间的行首随旧文本一起删除
+        int keepHead = countAtOrBefore(lineStarts, offset);
+        int keepTail = countAtOrBefore(lineStarts, offset + oldLength);
+
+        int inserted = 0;
+        for (int i = offset, end = offset + newLength; i < end; i++) {
+            if (text.charAt(i) == '\n') {
+                inserted++;
+            }
+        }
+
+        int[] lines = new int[keepHead + inserted + (lineStarts.length - keepTail)];
+        System.arraycopy(lineStarts, 0, lines, 0, keepHead);
+        int count = keepHead;
+        for (int i = offset, end = offset + newLength; i < end; i++) {
+            if (text.charAt(i) == '\n') {
+                lines[count++] = i + 1;
+            }
+        }
+        for (int i = keepTail; i < lineStarts.length; i++) {
+            lines[count++] = lineStarts[i] + delta;
+        }
+        return lines;
+    }
+
+    private int[] updateBoundaries(CharSequence text, int offset, int newLength, int delta) {
+        int length = text.length();
+
+        // 回退到一个必然被扫描访问的位置：前一个字符不可能是标签的一部分
+        int restart = offset;
+        while (restart > 0 && isTagChar(text.charAt(restart - 1))) {
+            restart--;
+        }
+
+        int head = countBefore(boundaries, restart);
+        boolean inASPSection = (head & 1) == 1;
+
+        int[] rescanned = new int[8];
+        int rescannedCount = 0;
+        int tail = boundaries.length;
+        int editEnd = offset + newLength;
+        int oldIndex = -1;
+
+        int pos = restart;
+        while (pos < length) {
+            // 越过修改区后，在同步点处比较新旧扫描状态，一致则后续结果与旧索引相同
+            if (pos > editEnd && !isTagChar(text.charAt(pos - 1))) {
+                int oldPos = pos - delta;
+                if (oldIndex < 0) {
+                    oldIndex = countBefore(boundaries, oldPos);
+                } else {
+                    while (oldIndex < boundaries.length && boundaries[oldIndex] < oldPos) {
+                        oldIndex++;
+                    }
+                }
+                if (((oldIndex & 1) == 1) == inASPSection) {
+                    tail = oldIndex;
+                    break;
+                }
+            }
+
+            if (pos + 1 < length) {
+                char c = text.charAt(pos);
+                char next = text.charAt(pos + 1);
+                boolean open = c == '<' && next == '%';
+                boolean close = c == '%' && next == '>';
+                if (open || close) {
+                    if (open != inASPSection) {
+                        if (rescannedCount == rescanned.length) {
+                            rescanned = Arrays.copyOf(rescanned, rescannedCount << 1);
+                        }
+                        rescanned[rescannedCount++] = pos;
+                        inASPSection = open;
+                    }
+                    pos += 2;
+                    continue;
+                }
+            }
+            pos++;
+        }
+
+        int[] bounds = new int[head + rescannedCount + (boundaries.length - tail)];
+        if (bounds.length == 0) {
+            return EMPTY;
+        }
+        System.arraycopy(boundaries, 0, bounds, 0, head);
+        System.arraycopy(rescanned, 0, bounds, head, rescannedCount);
+        int count = head + rescannedCount;
+        for (int i = tail; i < boundaries.length; i++) {
+            bounds[count++] = boundaries[i] + delta;
+        }
+        return bounds;
+    }
+
+    private static boolean isTagChar(char c) {
+        return c == '<' || c == '%' || c == '>';
+    }
+
+    // 以下两个方法仅供测试比较增量更新与全量扫描的结果
+    int[] boundaries() {
+        return boundaries.clone();
+    }
+
+    int[] lineStarts() {
+        return lineStarts.clone();
+    }
+
+    /**
+     * @return 建立索引时的文本长度
+     */
+    public int getTextLength() {
+        return textLength;
+    }
+
+    /**
+     * 检查指定位置是否在ASP代码区域内
+     * @param position 要检查的位置
+     * @return 是否在ASP区域内
+     */
+    public boolean isInASPSection(int position) {
+        if (position < 0 || position >= textLength) {
+            return false;
+        }
+        // 起始偏移 <= position 的边界数量为奇数时处于ASP区域
+        return (countAtOrBefore(boundaries, position) & 1) == 1;
+    }
+
+    /**
+     * 检查指定行是否在ASP代码区域内（以行首位置判断）
+     * @param lineNumber 行号（从0开始）
+     * @return 是否在ASP区域内
+     */
+    public boolean isLineInASPSection(int lineNumber) {
+        if (lineNumber < 0 || lineNumber >= lineStarts.length) {
+            return false;
+        }
+        return isInASPSection(lineStarts[lineNumber]);
+    }
+
+    /**
+     * @return 行数（与 content.split("\n", -1).length 一致）
+     */
+    public int getLineCount() {
+        return lineStarts.length;
+    }
+
+    /**
+     * 获取行起始偏移
+     * @param lineNumber 行号（从0开始）
+     * @return 起始偏移
+     */
+    public int getLineStartOffset(int lineNumber) {
+        return lineStarts[lineNumber];
+    }
+
+    /**
+     * 获取行结束偏移（不含换行符）
+     * @param lineNumber 行号（从0开始）
+     * @return 结束偏移
+     */
+    public int getLineEndOffset(int lineNumber) {
+        return lineNumber + 1 < lineStarts.length ? lineStarts[lineNumber + 1] - 1 : textLength;
+    }
+
+    /**
+     * 获取偏移所在行号
+     * @param offset 偏移
+     * @return 行号（从0开始），越界时截断到首/末行
+     */
+    public int getLineNumber(int offset) {
+        if (offset <= 0) {
+            return 0;
+        }
+        int idx = Arrays.binarySearch(lineStarts, offset);
+        return idx >= 0 ? idx : -idx - 2;
+    }
+
+    /**
+     * 获取ASP区域信息
+     * @return ASP区域信息数组，每个元素包含 [start, end]；未闭合的区域不计入
+     */
+    public int[][] getSections() {
+        int count = boundaries.length >> 1;
+        int[][] sections = new int[count][];
+        for (int i = 0; i < count; i++) {
+            sections[i] = new int[]{boundaries[i << 1], boundaries[(i << 1) + 1] + 2};
+        }
+        return sections;
+    }
+
+    /**
+     * @return 是否存在至少一个ASP开始标签
+     */
+    public boolean hasASPSections() {
+        return boundaries.length > 0;
+    }
+
+    /**
+     * @return 升序数组中 <= value 的元素个数
+     */
+    private static int countAtOrBefore(int[] sorted, int value) {
+        return countBefore(sorted, value + 1);
+    }
+
+    /**
+     * @return 升序数组中 < value 的元素个数
+     */
+    private static int countBefore(int[] sorted, int value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 逐行推进的 ASP 区域状态，判定规则与 build 相同
+     * 用于不持有完整文本的流式处理：只保存当前是否处于ASP区域。
+     */
+    public static final class LineTracker {
+        private boolean inASPSection;
+
+        /**
+         * 推进一行
+         * @param line 行内容（不含换行符）
+         * @return 该行是否在ASP区域内（以行首位置判断，同 isLineInASPSection）
+         */
+        public boolean next(CharSequence line) {
+            boolean atLineStart = inASPSection;
+            int length = line.length();
+            int pos = 0;
+            while (pos + 1 < length) {
+                char c = line.charAt(pos);
+                char next = line.charAt(pos + 1);
+                boolean open = c == '<' && next == '%';
+                boolean close = c == '%' && next == '>';
+                if (open || close) {
+                    if (open != inASPSection) {
+                        inASPSection = open;
+                        if (pos == 0) {
+                            // 行首的标签属于本行
+                            atLineStart = open;
+                        }
+                    }
+                    pos += 2;
+                    continue;
+                }
+                pos++;
+            }
+            return atLineStart;
+        }
+    }
+}
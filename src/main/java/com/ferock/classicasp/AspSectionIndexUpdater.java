@@ -0,0 +1,17 @@
+package com.ferock.classicasp;
+
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * ASP区域索引增量维护
+ * 监听所有文档修改，把已缓存的区域索引按修改的偏移/长度平移，只重新扫描受损窗口
+ */
+public class AspSectionIndexUpdater implements DocumentListener {
+
+    @Override
+    public void documentChanged(@NotNull DocumentEvent event) {
+        ASPSectionDetector.updateIndex(event);
+    }
+}
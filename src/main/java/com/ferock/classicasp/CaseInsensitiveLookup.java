@@ -0,0 +1,133 @@
+package com.ferock.classicasp;
+
+import java.util.Map;
+
+/**
+ * 大小写不敏感的只读查找表
+ * 开放寻址哈希，键在构建时统一转为小写；查询直接作用于 CharSequence 的区间，
+ * 不创建 String、不调用 toLowerCase，适合词法器、格式化器等逐 token 的热路径。
+ *
+ * @param <V> 值类型
+ */
+public final class CaseInsensitiveLookup<V> {
+
+    private final char[][] keys;
+    private final Object[] values;
+    private final int mask;
+    private final int size;
+
+    private CaseInsensitiveLookup(char[][] keys, Object[] values, int size) {
+        this.keys = keys;
+        this.values = values;
+        this.mask = keys.length - 1;
+        this.size = size;
+    }
+
+    /**
+     * 由映射构建查找表；键大小写不敏感，后出现的重复键覆盖先出现的
+     * @param source 键 -> 值
+     * @return 查找表
+     */
+    public static <V> CaseInsensitiveLookup<V> of(Map<String, ? extends V> source) {
+        // 装载因子不超过 0.5，保证探测链很短
+        int capacity = 4;
+        while (capacity < source.size() * 2) {
+            capacity <<= 1;
+        }
+        char[][] keys = new char[capacity][];
+        Object[] values = new Object[capacity];
+        int mask = capacity - 1;
+        int size = 0;
+
+        for (Map.Entry<String, ? extends V> e : source.entrySet()) {
+            if (e.getKey() == null || e.getValue() == null) continue;
+            char[] key = e.getKey().toCharArray();
+            for (int i = 0; i < key.length; i++) {
+                key[i] = fold(key[i]);
+            }
+            int slot = hash(key) & mask;
+            while (keys[slot] != null && !equalsFolded(keys[slot], key, 0, key.length)) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == null) {
+                size++;
+            }
+            keys[slot] = key;
+            values[slot] = e.getValue();
+        }
+        return new CaseInsensitiveLookup<>(keys, values, size);
+    }
+
+    /**
+     * 查询整个字符序列
+     */
+    public V get(CharSequence text) {
+        return text == null ? null : get(text, 0, text.length());
+    }
+
+    /**
+     * 查询字符序列中的 [start, end) 区间
+     * @return 对应的值，不存在时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(CharSequence text, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + fold(text.charAt(i));
+        }
+        int slot = mix(h) & mask;
+        char[] key;
+        while ((key = keys[slot]) != null) {
+            if (key.length == end - start && equalsFolded(key, text, start, end)) {
+                return (V) values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * 区间是否为表中的键
+     */
+    public boolean contains(CharSequence text, int start, int end) {
+        return get(text, start, end) != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static boolean equalsFolded(char[] key, CharSequence text, int start, int end) {
+        for (int i = start, k = 0; i < end; i++, k++) {
+            if (key[k] != fold(text.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    private static boolean equalsFolded(char[] key, char[] other, int start, int end) {
+        if (key.length != end - start) return false;
+        for (int i = start, k = 0; i < end; i++, k++) {
+            if (key[k] != other[i]) return false;
+        }
+        return true;
+    }
+
+    private static int hash(char[] folded) {
+        int h = 0;
+        for (char c : folded) {
+            h = 31 * h + c;
+        }
+        return mix(h);
+    }
+
+    private static int mix(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private static char fold(char c) {
+        if (c < 128) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+        }
+        return Character.toLowerCase(c);
+    }
+}
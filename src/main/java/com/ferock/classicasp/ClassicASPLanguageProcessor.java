@@ -4,6 +4,7 @@ import com.intellij.lang.annotation.AnnotationHolder;
 import com.intellij.lang.annotation.HighlightSeverity;
 import com.intellij.openapi.editor.DefaultLanguageHighlighterColors;
 import com.intellij.openapi.editor.colors.TextAttributesKey;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
@@ -20,20 +21,24 @@ import java.util.*;
  */
 public class ClassicASPLanguageProcessor {
 
-    // 缓存处理器
-    private static final Map<String, ProcessingResult> resultCache = new HashMap<>();
     private static final long CACHE_TIMEOUT = 30000; // 30秒缓存超时
+    private static final int MAX_CACHE_ENTRIES = 32; // 最多缓存的文件数
+    private static final long MAX_CACHE_WEIGHT = 4L * 1024 * 1024; // 缓存内容总字符数上限
+
+    // 缓存处理器：线程安全，每个文件只保留最新版本，以内容摘要区分版本
+    private static final RevisionCache<ProcessingResult> resultCache =
+        new RevisionCache<>("语言处理", MAX_CACHE_ENTRIES, MAX_CACHE_WEIGHT, CACHE_TIMEOUT);
 
     /**
      * 处理结果类
      */
     public static class ProcessingResult {
-        private final List<TokenInfo> tokens;
+        private final TokenStream tokens;
         private final List<HighlightInfo> highlights;
         private final List<ValidationError> errors;
         private final long timestamp;
 
-        public ProcessingResult(List<TokenInfo> tokens, List<HighlightInfo> highlights, List<ValidationError> errors) {
+        public ProcessingResult(TokenStream tokens, List<HighlightInfo> highlights, List<ValidationError> errors) {
             this.tokens = tokens;
             this.highlights = highlights;
             this.errors = errors;
@@ -41,35 +46,12 @@ public class ClassicASPLanguageProcessor {
         }
 
         // Getters
-        public List<TokenInfo> getTokens() { return tokens; }
+        public TokenStream getTokens() { return tokens; }
         public List<HighlightInfo> getHighlights() { return highlights; }
         public List<ValidationError> getErrors() { return errors; }
         public long getTimestamp() { return timestamp; }
     }
 
-    /**
-     * Token 信息类
-     */
-    public static class TokenInfo {
-        private final IElementType type;
-        private final String text;
-        private final int startOffset;
-        private final int endOffset;
-
-        public TokenInfo(IElementType type, String text, int startOffset, int endOffset) {
-            this.type = type;
-            this.text = text;
-            this.startOffset = startOffset;
-            this.endOffset = endOffset;
-        }
-
-        // Getters
-        public IElementType getType() { return type; }
-        public String getText() { return text; }
-        public int getStartOffset() { return startOffset; }
-        public int getEndOffset() { return endOffset; }
-    }
-
     /**
      * 高亮信息类
      */
@@ -110,28 +92,31 @@ public class ClassicASPLanguageProcessor {
     /**
      * 统一处理文件内容
      * @param content 文件内容
-     * @param filePath 文件路径（用于缓存）
+     * @param filePath 文件路径（用于缓存）；没有对应文件时为 null，此时不缓存
      * @return 处理结果
      */
     public static ProcessingResult process(String content, String filePath) {
         if (content == null || content.trim().isEmpty()) {
-            return new ProcessingResult(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+            return new ProcessingResult(TokenStream.lex(newLexer(), ""), new ArrayList<>(), new ArrayList<>());
         }
 
-        // 生成缓存键
-        String cacheKey = generateCacheKey(content, filePath);
+        // 生成版本标识
+        String revision = RevisionCache.contentDigest(content);
 
         // 检查缓存
-        ProcessingResult cachedResult = getCachedResult(cacheKey);
+        ProcessingResult cachedResult = filePath == null ? null : resultCache.get(filePath, revision);
         if (cachedResult != null) {
             return cachedResult;
         }
 
         // 执行统一处理
-        ProcessingResult result = performUnifiedProcessing(content);
+        SafetyLimits.Budget budget = SafetyLimits.Budget.start("ClassicASPLanguageProcessor.process");
+        ProcessingResult result = performUnifiedProcessing(content, filePath, budget);
 
-        // 缓存结果
-        cacheResult(cacheKey, result);
+        // 缓存结果（替换该文件之前的版本）；超时得到的部分结果不缓存，下次重新分析
+        if (filePath != null && !budget.isExhausted()) {
+            resultCache.put(filePath, revision, result, content.length());
+        }
 
         return result;
     }
@@ -139,12 +124,12 @@ public class ClassicASPLanguageProcessor {
     /**
      * 执行统一的处理逻辑
      */
-    private static ProcessingResult performUnifiedProcessing(String content) {
+    private static ProcessingResult performUnifiedProcessing(String content, String filePath, SafetyLimits.Budget budget) {
         // 1. 词法分析
-        List<TokenInfo> tokens = performLexicalAnalysis(content);
+        TokenStream tokens = performLexicalAnalysis(content, budget);
 
         // 2. 语义分析
-        SemanticAnalyzer.AnalysisResult semantic = SemanticAnalyzer.analyze(content);
+        SemanticAnalyzer.AnalysisResult semantic = SemanticAnalyzer.analyze(content, filePath, budget);
 
         // 3. 生成高亮信息
         List<HighlightInfo> highlights = generateHighlights(tokens, semantic);
@@ -158,57 +143,47 @@ public class ClassicASPLanguageProcessor {
     /**
      * 执行词法分析
      */
-    private static List<TokenInfo> performLexicalAnalysis(String content) {
-        List<TokenInfo> tokens = new ArrayList<>();
-        com.intellij.lexer.Lexer lexer = new com.intellij.lexer.FlexAdapter(new ClassicASPLexer(null));
-        lexer.start(content, 0, content.length(), 0);
+    private static TokenStream performLexicalAnalysis(String content, SafetyLimits.Budget budget) {
+        TokenStream tokens = TokenStream.lex(newLexer(), content, budget);
 
-        boolean printedDirectiveSample = false;
+        // 仅采样一次：遇到 <%@ 后收集直到 %> 并打印
         int directiveStartIndex = -1;
-
-        while (lexer.getTokenType() != null) {
-            IElementType tokenType = lexer.getTokenType();
-            int startOffset = lexer.getTokenStart();
-            int endOffset = lexer.getTokenEnd();
-            String tokenText = content.substring(startOffset, endOffset);
-
-            tokens.add(new TokenInfo(tokenType, tokenText, startOffset, endOffset));
-
-            // 仅采样一次：遇到 <%@ 后收集直到 %> 并打印
-            if (!printedDirectiveSample && tokenType.toString().equals("ASP_DIRECTIVE_START")) {
-                directiveStartIndex = tokens.size() - 1;
-            } else if (directiveStartIndex >= 0 && tokenType.toString().equals("ASP_CLOSE")) {
+        for (int index = 0; index < tokens.size(); index++) {
+            IElementType tokenType = tokens.getType(index);
+            if (tokenType == ClassicASTypes.ASP_DIRECTIVE_START) {
+                directiveStartIndex = index;
+            } else if (directiveStartIndex >= 0 && tokenType == ClassicASTypes.ASP_CLOSE) {
                 StringBuilder sb = new StringBuilder();
                 sb.append("[ASP][DirectiveSample]");
-                for (int i = directiveStartIndex; i < tokens.size(); i++) {
-                    TokenInfo ti = tokens.get(i);
-                    String t = ti.getType().toString();
-                    String txt = ti.getText();
-                    if (txt.length() > 20) txt = txt.substring(0, 20) + "...";
-                    sb.append(" | ").append(t).append(':').append(txt);
+                for (int i = directiveStartIndex; i <= index; i++) {
+                    CharSequence txt = tokens.getText(i);
+                    if (txt.length() > 20) txt = txt.subSequence(0, 20) + "...";
+                    sb.append(" | ").append(tokens.getType(i)).append(':').append(txt);
                 }
                 System.out.println(sb.toString());
-                printedDirectiveSample = true;
-                directiveStartIndex = -1;
+                break;
             }
-
-            lexer.advance();
         }
 
         return tokens;
     }
 
+    private static com.intellij.lexer.Lexer newLexer() {
+        return new com.intellij.lexer.FlexAdapter(new ClassicASPLexer(null));
+    }
+
     /**
      * 生成高亮信息
      */
-    private static List<HighlightInfo> generateHighlights(List<TokenInfo> tokens, SemanticAnalyzer.AnalysisResult semantic) {
+    private static List<HighlightInfo> generateHighlights(TokenStream tokens, SemanticAnalyzer.AnalysisResult semantic) {
         List<HighlightInfo> highlights = new ArrayList<>();
         Map<IElementType, TextAttributesKey> attributesMap = getAttributesMap();
 
-        for (TokenInfo token : tokens) {
-            TextAttributesKey attributes = attributesMap.get(token.getType());
+        for (int i = 0; i < tokens.size(); i++) {
+            ProgressManager.checkCanceled();
+            TextAttributesKey attributes = attributesMap.get(tokens.getType(i));
             if (attributes != null) {
-                TextRange range = new TextRange(token.getStartOffset(), token.getEndOffset());
+                TextRange range = new TextRange(tokens.getStart(i), tokens.getEnd(i));
                 highlights.add(new HighlightInfo(range, attributes));
             }
         }
@@ -219,7 +194,7 @@ public class ClassicASPLanguageProcessor {
     /**
      * 生成验证错误
      */
-    private static List<ValidationError> generateValidationErrors(List<TokenInfo> tokens,
+    private static List<ValidationError> generateValidationErrors(TokenStream tokens,
                                                                 SemanticAnalyzer.AnalysisResult semantic,
                                                                 String content) {
         List<ValidationError> errors = new ArrayList<>();
@@ -294,7 +269,7 @@ public class ClassicASPLanguageProcessor {
     /**
      * 检查语义错误
      */
-    private static void checkSemanticErrors(List<TokenInfo> tokens,
+    private static void checkSemanticErrors(TokenStream tokens,
                                           SemanticAnalyzer.AnalysisResult semantic,
                                           List<ValidationError> errors) {
         // 这里可以添加更多的语义检查逻辑
@@ -370,39 +345,6 @@ public class ClassicASPLanguageProcessor {
         return attributes;
     }
 
-    /**
-     * 生成缓存键
-     */
-    private static String generateCacheKey(String content, String filePath) {
-        int contentHash = content.hashCode();
-        return filePath + ":" + contentHash;
-    }
-
-    /**
-     * 获取缓存的结果
-     */
-    private static ProcessingResult getCachedResult(String cacheKey) {
-        ProcessingResult cached = resultCache.get(cacheKey);
-        if (cached == null) {
-            return null;
-        }
-
-        // 检查缓存是否过期
-        if (System.currentTimeMillis() - cached.getTimestamp() > CACHE_TIMEOUT) {
-            resultCache.remove(cacheKey);
-            return null;
-        }
-
-        return cached;
-    }
-
-    /**
-     * 缓存结果
-     */
-    private static void cacheResult(String cacheKey, ProcessingResult result) {
-        resultCache.put(cacheKey, result);
-    }
-
     /**
      * 清除缓存
      */
@@ -417,7 +359,8 @@ public class ClassicASPLanguageProcessor {
         if (element instanceof PsiFile) {
             PsiFile file = (PsiFile) element;
             String content = file.getText();
-            String filePath = file.getVirtualFile() != null ? file.getVirtualFile().getPath() : "unknown";
+            // 没有对应文件（内存中的 PSI）时不缓存，避免所有这类文件共用同一个缓存槽位
+            String filePath = file.getVirtualFile() != null ? file.getVirtualFile().getPath() : null;
 
             ProcessingResult result = process(content, filePath);
 
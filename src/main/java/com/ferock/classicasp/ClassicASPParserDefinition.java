@@ -1,8 +1,11 @@
 package com.ferock.classicasp;
 
-import com.ferock.classicasp.lexer.ClassicASPLexerAdapter;
-import com.ferock.classicasp.parser.ClassicASPParser;
-import com.ferock.classicasp.psi.ClassicASTypes;
+import com.ferock.classicasp.lexer.ClassicASPDeclarationLexer;
+import com.ferock.classicasp.parser.ClassicASPDeclarationParser;
+import com.ferock.classicasp.psi.ClassicASPElementTypes;
+import com.ferock.classicasp.psi.impl.ClassicASPDeclarationImpl;
+import com.ferock.classicasp.psi.stubs.ClassicASPDeclarationElementType;
+import com.intellij.extapi.psi.ASTWrapperPsiElement;
 import com.intellij.lang.ASTNode;
 import com.intellij.lang.ParserDefinition;
 import com.intellij.lang.PsiParser;
@@ -15,18 +18,21 @@ import com.intellij.psi.tree.IFileElementType;
 import com.intellij.psi.tree.TokenSet;
 import org.jetbrains.annotations.NotNull;
 
+/**
+ * 声明级解析：只为声明建立存根节点，过程体惰性解析，不产生语法错误
+ */
 public class ClassicASPParserDefinition implements ParserDefinition {
-    public static final IFileElementType FILE = new IFileElementType(ClassicASPLanguage.INSTANCE);
+    public static final IFileElementType FILE = ClassicASPElementTypes.FILE;
 
     @NotNull
     @Override
     public Lexer createLexer(Project project) {
-        return new ClassicASPLexerAdapter();
+        return new ClassicASPDeclarationLexer();
     }
 
     @Override
     public @NotNull PsiParser createParser(Project project) {
-        return new ClassicASPParser();
+        return new ClassicASPDeclarationParser();
     }
 
     @Override
@@ -36,23 +42,26 @@ public class ClassicASPParserDefinition implements ParserDefinition {
 
     @Override
     public @NotNull TokenSet getWhitespaceTokens() {
-        // 告知解析器：将 ClassicASTypes.WHITE_SPACE 视为可跳过的空白
-        return TokenSet.create(ClassicASTypes.WHITE_SPACE);
+        // 换行是语句分隔符，不在空白之列
+        return ClassicASPElementTypes.WHITE_SPACES;
     }
 
     @Override
     public @NotNull TokenSet getCommentTokens() {
-        return TokenSet.EMPTY;
+        return ClassicASPElementTypes.COMMENTS;
     }
 
     @Override
     public @NotNull TokenSet getStringLiteralElements() {
-        return TokenSet.create(ClassicASTypes.STRING_LITERAL);
+        return ClassicASPElementTypes.STRINGS;
     }
 
     @Override
     public @NotNull PsiElement createElement(ASTNode node) {
-        return ClassicASTypes.Factory.createElement(node);
+        if (node.getElementType() instanceof ClassicASPDeclarationElementType) {
+            return new ClassicASPDeclarationImpl(node);
+        }
+        return new ASTWrapperPsiElement(node);
     }
 
     @Override
@@ -1,7 +1,13 @@
 package com.ferock.classicasp;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
 import java.util.Stack;
 
 /**
@@ -51,6 +57,7 @@ public class CodeBlockAnalyzer {
         private String startKeyword;
         private String endKeyword;
         private List<CodeBlock> children;
+        private CodeBlock parent;
 
         public CodeBlock(BlockType type, int startLine, String startKeyword) {
             this.type = type;
@@ -70,6 +77,7 @@ public class CodeBlockAnalyzer {
         public String getEndKeyword() { return endKeyword; }
         public void setEndKeyword(String endKeyword) { this.endKeyword = endKeyword; }
         public List<CodeBlock> getChildren() { return children; }
+        public CodeBlock getParent() { return parent; }
 
         @Override
         public String toString() {
@@ -80,22 +88,54 @@ public class CodeBlockAnalyzer {
     /**
      * 分析代码块结构
      * @param content 文件内容
-     * @return 代码块列表
+     * @return 代码块列表（不可变，附带行号 -> 代码块索引）
      */
     public static List<CodeBlock> analyzeCodeBlocks(String content) {
+        return analyzeCodeBlocks(content, SafetyLimits.Budget.start("CodeBlockAnalyzer.analyzeCodeBlocks"));
+    }
+
+    /**
+     * 在预算内分析代码块结构
+     * @param content 文件内容
+     * @param budget 耗时与取消预算；用完时停止，已识别的代码块保留，未闭合的延伸到文件末尾
+     * @return 代码块列表（不可变，附带行号 -> 代码块索引）
+     */
+    public static List<CodeBlock> analyzeCodeBlocks(String content, SafetyLimits.Budget budget) {
         if (content == null || content.trim().isEmpty()) {
-            return new ArrayList<>();
+            return CodeBlockList.EMPTY;
         }
 
         List<CodeBlock> blocks = new ArrayList<>();
         String[] lines = content.split("\n", -1);
         Stack<CodeBlock> blockStack = new Stack<>();
 
-        for (int lineNum = 0; lineNum < lines.length; lineNum++) {
-            String line = lines[lineNum].trim();
+        // 单次遍历：逐行推进 ASP/HTML 状态，与 ASPSectionDetector.isLineInASPSection 判定一致
+        boolean inASPSection = false;
+        int lineStart = 0;
+
+        for (int lineNum = 0; lineNum < lines.length && !budget.exhausted(); lineNum++) {
+            String rawLine = lines[lineNum];
+            String line = rawLine.trim();
+
+            // 行首若恰好是标签，则先生效再判定本行状态
+            int scanPos = 0;
+            if (rawLine.length() >= 2) {
+                char c0 = rawLine.charAt(0);
+                char c1 = rawLine.charAt(1);
+                if (c0 == '<' && c1 == '%') {
+                    inASPSection = true;
+                    scanPos = 2;
+                } else if (c0 == '%' && c1 == '>') {
+                    inASPSection = false;
+                    scanPos = 2;
+                }
+            }
+            boolean lineInASPSection = inASPSection && lineStart < content.length();
+            inASPSection = scanSectionState(rawLine, scanPos, inASPSection);
+            lineStart += rawLine.length() + 1;
 
             // 检查是否在ASP区域内
-            if (!ASPSectionDetector.isLineInASPSection(content, lineNum)) {
+            if (!lineInASPSection) {
                 continue; // 跳过HTML区域
             }
 
@@ -121,6 +161,7 @@ public class CodeBlockAnalyzer {
                     CodeBlock parent = blockStack.peek();
                     if (parent != closedBlock) {
                         parent.getChildren().add(closedBlock);
+                        closedBlock.parent = parent;
                     }
                 }
             }
@@ -134,7 +175,120 @@ public class CodeBlockAnalyzer {
             }
         }
 
-        return blocks;
+        return new CodeBlockList(blocks);
+    }
+
+    /**
+     * analyzeCodeBlocks 的结果列表
+     * 构建时把代码块展开为“行号 -> 代码块”的扁平数组，getBlockAtLine 对它是 O(1) 查询；
+     * 每行对应的代码块与递归查找的结果一致（按列表顺序第一个包含该行的代码块）。
+     */
+    public static final class CodeBlockList extends AbstractList<CodeBlock> implements RandomAccess {
+
+        static final CodeBlockList EMPTY = new CodeBlockList(Collections.emptyList());
+
+        private final CodeBlock[] blocks;
+        private final CodeBlock[] blockAtLine;
+
+        CodeBlockList(List<CodeBlock> blocks) {
+            this.blocks = blocks.toArray(new CodeBlock[0]);
+            this.blockAtLine = buildLineTable(this.blocks);
+        }
+
+        @Override
+        public CodeBlock get(int index) {
+            return blocks[index];
+        }
+
+        @Override
+        public int size() {
+            return blocks.length;
+        }
+
+        /**
+         * 获取指定行的代码块
+         * @param lineNum 行号（从0开始）
+         * @return 代码块，不在任何代码块内时返回 null
+         */
+        public CodeBlock getBlockAtLine(int lineNum) {
+            return lineNum >= 0 && lineNum < blockAtLine.length ? blockAtLine[lineNum] : null;
+        }
+
+        private static CodeBlock[] buildLineTable(CodeBlock[] blocks) {
+            int maxLine = -1;
+            for (CodeBlock block : blocks) {
+                maxLine = Math.max(maxLine, block.getEndLine());
+            }
+            CodeBlock[] table = new CodeBlock[maxLine + 1];
+
+            // nextFree[i]：>= i 的第一个尚未分配的行，已分配区间整体跳过，总代价接近线性
+            int[] nextFree = new int[maxLine + 2];
+            Arrays.setAll(nextFree, i -> i);
+
+            Set<CodeBlock> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (CodeBlock block : blocks) {
+                fill(block, table, nextFree, visited);
+            }
+            return table;
+        }
+
+        /**
+         * 按递归查找的顺序（先自身、再子块）把代码块写入尚未分配的行
+         */
+        private static void fill(CodeBlock block, CodeBlock[] table, int[] nextFree, Set<CodeBlock> visited) {
+            // 再次遇到的代码块不会分配到新的行
+            if (!visited.add(block)) {
+                return;
+            }
+            int start = Math.max(block.getStartLine(), 0);
+            int end = block.getEndLine();
+            if (start <= end) {
+                for (int line = findFree(nextFree, start); line <= end; line = findFree(nextFree, line + 1)) {
+                    table[line] = block;
+                    nextFree[line] = line + 1;
+                }
+            }
+            for (CodeBlock child : block.getChildren()) {
+                fill(child, table, nextFree, visited);
+            }
+        }
+
+        private static int findFree(int[] nextFree, int line) {
+            int root = line;
+            while (nextFree[root] != root) {
+                root = nextFree[root];
+            }
+            // 路径压缩
+            while (nextFree[line] != root) {
+                int next = nextFree[line];
+                nextFree[line] = root;
+                line = next;
+            }
+            return root;
+        }
+    }
+
+    /**
+     * 从指定位置扫描一行中的 <% / %> 标签，返回行尾时的ASP区域状态
+     * 标签不会跨行，因此逐行扫描与整文件扫描结果一致
+     */
+    private static boolean scanSectionState(String line, int from, boolean inASPSection) {
+        int pos = from;
+        int last = line.length() - 1;
+        while (pos < last) {
+            char c = line.charAt(pos);
+            char next = line.charAt(pos + 1);
+            if (c == '<' && next == '%') {
+                inASPSection = true;
+                pos += 2;
+            } else if (c == '%' && next == '>') {
+                inASPSection = false;
+                pos += 2;
+            } else {
+                pos++;
+            }
+        }
+        return inASPSection;
     }
 
     /**
@@ -239,6 +393,9 @@ public class CodeBlockAnalyzer {
      * 获取指定行的代码块信息
      */
     public static CodeBlock getBlockAtLine(List<CodeBlock> blocks, int lineNum) {
+        if (blocks instanceof CodeBlockList) {
+            return ((CodeBlockList) blocks).getBlockAtLine(lineNum);
+        }
         for (CodeBlock block : blocks) {
             if (lineNum >= block.getStartLine() && lineNum <= block.getEndLine()) {
                 return block;
@@ -103,6 +103,10 @@ public class CodeHierarchyManager {
      */
     private static CodeBlockAnalyzer.CodeBlock findParentBlock(List<CodeBlockAnalyzer.CodeBlock> blocks,
                                                               CodeBlockAnalyzer.CodeBlock targetBlock) {
+        // 分析结果中的代码块已记录父块，无需遍历整棵树
+        if (blocks instanceof CodeBlockAnalyzer.CodeBlockList) {
+            return targetBlock.getParent();
+        }
         for (CodeBlockAnalyzer.CodeBlock block : blocks) {
             if (block.getChildren().contains(targetBlock)) {
                 return block;
@@ -128,6 +132,7 @@ public class CodeHierarchyManager {
         }
 
         String[] lines = content.split("\n", -1);
+        AspSectionIndex sectionIndex = AspSectionIndex.build(content);
 
         StringBuilder result = new StringBuilder();
 
@@ -136,7 +141,7 @@ public class CodeHierarchyManager {
             String trimmedLine = line.trim();
 
             // 检查是否在ASP区域内
-            if (!ASPSectionDetector.isLineInASPSection(content, i)) {
+            if (!sectionIndex.isLineInASPSection(i)) {
                 // HTML区域保持原样
                 result.append(line).append("\n");
                 continue;
@@ -0,0 +1,328 @@
+package com.ferock.classicasp;
+
+import com.intellij.openapi.editor.Document;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 行级差异（Myers 算法）
+ * 把 旧文本 -> 新文本 转换为最少的区间替换，用于把格式化结果写回文档：
+ * 只有真正变化的行会被替换，未变化区域的标记、折叠、高亮与撤销记录都不受影响。
+ */
+public final class LineDiff {
+
+    /**
+     * 搜索步数上限；超过后剩余的子问题整段替换，避免差异极大时耗时失控
+     */
+    private static final long MAX_SNAKE_STEPS = 20_000_000L;
+
+    private LineDiff() {}
+
+    /**
+     * 一次区间替换（偏移相对于旧文本）
+     */
+    public static final class Edit {
+        public final int startOffset;
+        public final int endOffset;
+        public final String replacement;
+
+        Edit(int startOffset, int endOffset, String replacement) {
+            this.startOffset = startOffset;
+            this.endOffset = endOffset;
+            this.replacement = replacement;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + startOffset + "," + endOffset + ") -> \"" + replacement + "\"";
+        }
+    }
+
+    /**
+     * 把文档内容改为新文本，只替换发生变化的部分
+     * @param document 文档（需在写操作中调用）
+     * @param newText 新文本
+     * @return 实际执行的替换次数
+     */
+    public static int apply(Document document, CharSequence newText) {
+        return apply(document, 0, document.getTextLength(), newText);
+    }
+
+    /**
+     * 把文档的 [startOffset, endOffset) 区间改为新文本，只替换发生变化的部分
+     * @param document 文档（需在写操作中调用）
+     * @param startOffset 区间起始偏移
+     * @param endOffset 区间结束偏移
+     * @param newText 新文本
+     * @return 实际执行的替换次数
+     */
+    public static int apply(Document document, int startOffset, int endOffset, CharSequence newText) {
+        CharSequence oldText = document.getImmutableCharSequence().subSequence(startOffset, endOffset);
+        List<Edit> edits = computeEdits(oldText, newText);
+        // 从后往前替换，前面的偏移不受影响
+        for (int i = edits.size() - 1; i >= 0; i--) {
+            Edit edit = edits.get(i);
+            document.replaceString(startOffset + edit.startOffset, startOffset + edit.endOffset, edit.replacement);
+        }
+        return edits.size();
+    }
+
+    /**
+     * 计算把旧文本变为新文本所需的替换（按偏移升序，互不重叠）
+     * 先按行求最短编辑脚本，每段变化再去掉首尾相同的字符。
+     * @param oldText 旧文本
+     * @param newText 新文本
+     * @return 替换列表；文本相同时为空
+     */
+    public static List<Edit> computeEdits(CharSequence oldText, CharSequence newText) {
+        List<Edit> edits = new ArrayList<>();
+        int[] oldLines = lineStarts(oldText);
+        int[] newLines = lineStarts(newText);
+        int oldCount = oldLines.length - 1;
+        int newCount = newLines.length - 1;
+
+        // 去掉公共的首尾行
+        int prefix = 0;
+        while (prefix < oldCount && prefix < newCount &&
+               lineEquals(oldText, oldLines, prefix, newText, newLines, prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < oldCount - prefix && suffix < newCount - prefix &&
+               lineEquals(oldText, oldLines, oldCount - 1 - suffix, newText, newLines, newCount - 1 - suffix)) {
+            suffix++;
+        }
+        int n = oldCount - prefix - suffix;
+        int m = newCount - prefix - suffix;
+        if (n == 0 && m == 0) {
+            return edits;
+        }
+
+        boolean[] keepOld = new boolean[n];
+        boolean[] keepNew = new boolean[m];
+        new Script(oldText, oldLines, newText, newLines, prefix, keepOld, keepNew).run(n, m);
+
+        // 相邻的增删行合并为一段替换
+        int i = 0;
+        int j = 0;
+        while (i < n || j < m) {
+            if (i < n && j < m && keepOld[i] && keepNew[j]) {
+                i++;
+                j++;
+                continue;
+            }
+            int oldStart = i;
+            int newStart = j;
+            while (i < n && !keepOld[i]) i++;
+            while (j < m && !keepNew[j]) j++;
+            addEdit(edits, oldText, oldLines, prefix + oldStart, prefix + i, newText, newLines, prefix + newStart, prefix + j);
+        }
+        return edits;
+    }
+
+    /**
+     * Myers 线性空间算法（双向搜索中间点后分治），标记两侧保留（匹配）的行
+     */
+    private static final class Script {
+        private final CharSequence oldText;
+        private final int[] oldLines;
+        private final CharSequence newText;
+        private final int[] newLines;
+        private final int base;
+        private final boolean[] keepOld;
+        private final boolean[] keepNew;
+        private long budget = MAX_SNAKE_STEPS;
+
+        private Script(CharSequence oldText, int[] oldLines, CharSequence newText, int[] newLines,
+                       int base, boolean[] keepOld, boolean[] keepNew) {
+            this.oldText = oldText;
+            this.oldLines = oldLines;
+            this.newText = newText;
+            this.newLines = newLines;
+            this.base = base;
+            this.keepOld = keepOld;
+            this.keepNew = keepNew;
+        }
+
+        private boolean same(int x, int y) {
+            return lineEquals(oldText, oldLines, base + x, newText, newLines, base + y);
+        }
+
+        /**
+         * 处理子问题 old[aLo, aHi) 与 new[bLo, bHi)，用显式栈代替递归
+         */
+        private void run(int n, int m) {
+            ArrayDeque<int[]> pending = new ArrayDeque<>();
+            pending.push(new int[]{0, n, 0, m});
+            while (!pending.isEmpty()) {
+                int[] task = pending.pop();
+                int aLo = task[0], aHi = task[1], bLo = task[2], bHi = task[3];
+
+                // 公共首尾行直接保留
+                while (aLo < aHi && bLo < bHi && same(aLo, bLo)) {
+                    keepOld[aLo++] = true;
+                    keepNew[bLo++] = true;
+                }
+                while (aLo < aHi && bLo < bHi && same(aHi - 1, bHi - 1)) {
+                    keepOld[--aHi] = true;
+                    keepNew[--bHi] = true;
+                }
+                if (aLo == aHi || bLo == bHi) {
+                    continue;
+                }
+
+                int[] split = bisect(aLo, aHi, bLo, bHi);
+                if (split == null) {
+                    // 超出预算或没有公共行：整段视为修改
+                    continue;
+                }
+                pending.push(new int[]{split[0], aHi, split[1], bHi});
+                pending.push(new int[]{aLo, split[0], bLo, split[1]});
+            }
+        }
+
+        /**
+         * 从两端同时推进，找到前后路径重叠处作为分割点
+         * @return {旧文本分割行, 新文本分割行}，找不到或超出预算时返回 null
+         */
+        private int[] bisect(int aLo, int aHi, int bLo, int bHi) {
+            int n = aHi - aLo;
+            int m = bHi - bLo;
+            int maxD = (n + m + 1) / 2;
+            int vOffset = maxD;
+            int vLength = 2 * maxD + 2;
+            int[] v1 = new int[vLength];
+            int[] v2 = new int[vLength];
+            Arrays.fill(v1, -1);
+            Arrays.fill(v2, -1);
+            v1[vOffset + 1] = 0;
+            v2[vOffset + 1] = 0;
+            int delta = n - m;
+            boolean front = (delta & 1) != 0;
+            int k1start = 0, k1end = 0, k2start = 0, k2end = 0;
+
+            for (int d = 0; d < maxD; d++) {
+                // 正向
+                for (int k1 = -d + k1start; k1 <= d - k1end; k1 += 2) {
+                    int k1Offset = vOffset + k1;
+                    int x1 = (k1 == -d || (k1 != d && v1[k1Offset - 1] < v1[k1Offset + 1]))
+                            ? v1[k1Offset + 1] : v1[k1Offset - 1] + 1;
+                    int y1 = x1 - k1;
+                    while (x1 < n && y1 < m && same(aLo + x1, bLo + y1)) {
+                        x1++;
+                        y1++;
+                    }
+                    v1[k1Offset] = x1;
+                    if (--budget < 0) return null;
+                    if (x1 > n) {
+                        k1end += 2;
+                    } else if (y1 > m) {
+                        k1start += 2;
+                    } else if (front) {
+                        int k2Offset = vOffset + delta - k1;
+                        if (k2Offset >= 0 && k2Offset < vLength && v2[k2Offset] != -1 && x1 >= n - v2[k2Offset]) {
+                            return split(aLo, bLo, n, m, x1, y1);
+                        }
+                    }
+                }
+                // 反向（从末尾往前比较）
+                for (int k2 = -d + k2start; k2 <= d - k2end; k2 += 2) {
+                    int k2Offset = vOffset + k2;
+                    int x2 = (k2 == -d || (k2 != d && v2[k2Offset - 1] < v2[k2Offset + 1]))
+                            ? v2[k2Offset + 1] : v2[k2Offset - 1] + 1;
+                    int y2 = x2 - k2;
+                    while (x2 < n && y2 < m && same(aHi - x2 - 1, bHi - y2 - 1)) {
+                        x2++;
+                        y2++;
+                    }
+                    v2[k2Offset] = x2;
+                    if (--budget < 0) return null;
+                    if (x2 > n) {
+                        k2end += 2;
+                    } else if (y2 > m) {
+                        k2start += 2;
+                    } else if (!front) {
+                        int k1Offset = vOffset + delta - k2;
+                        if (k1Offset >= 0 && k1Offset < vLength && v1[k1Offset] != -1) {
+                            int x1 = v1[k1Offset];
+                            int y1 = vOffset + x1 - k1Offset;
+                            if (x1 >= n - x2) {
+                                return split(aLo, bLo, n, m, x1, y1);
+                            }
+                        }
+                    }
+                }
+            }
+            return null;
+        }
+
+        private static int[] split(int aLo, int bLo, int n, int m, int x, int y) {
+            // 分割点落在端点时无法缩小问题
+            if ((x == 0 && y == 0) || (x == n && y == m)) {
+                return null;
+            }
+            return new int[]{aLo + x, bLo + y};
+        }
+    }
+
+    private static void addEdit(List<Edit> edits, CharSequence oldText, int[] oldLines, int oldFrom, int oldTo,
+                                CharSequence newText, int[] newLines, int newFrom, int newTo) {
+        int oldStart = oldLines[oldFrom];
+        int oldEnd = oldLines[oldTo];
+        int newStart = newLines[newFrom];
+        int newEnd = newLines[newTo];
+
+        // 段内再去掉首尾相同的字符（如只改了缩进或大小写）
+        while (oldStart < oldEnd && newStart < newEnd && oldText.charAt(oldStart) == newText.charAt(newStart)) {
+            oldStart++;
+            newStart++;
+        }
+        while (oldEnd > oldStart && newEnd > newStart && oldText.charAt(oldEnd - 1) == newText.charAt(newEnd - 1)) {
+            oldEnd--;
+            newEnd--;
+        }
+        if (oldStart == oldEnd && newStart == newEnd) {
+            return;
+        }
+        edits.add(new Edit(oldStart, oldEnd, newText.subSequence(newStart, newEnd).toString()));
+    }
+
+    /**
+     * 行起始偏移，末尾附加文本长度作为哨兵；每行包含其结尾的 '\n'
+     */
+    private static int[] lineStarts(CharSequence text) {
+        int length = text.length();
+        int[] starts = new int[16];
+        int count = 0;
+        int pos = 0;
+        while (pos < length) {
+            if (count + 1 >= starts.length) {
+                starts = Arrays.copyOf(starts, starts.length << 1);
+            }
+            starts[count++] = pos;
+            while (pos < length && text.charAt(pos++) != '\n') {
+                // 扫描到行尾
+            }
+        }
+        starts[count] = length;
+        return Arrays.copyOf(starts, count + 1);
+    }
+
+    private static boolean lineEquals(CharSequence a, int[] aLines, int aLine, CharSequence b, int[] bLines, int bLine) {
+        int aStart = aLines[aLine];
+        int bStart = bLines[bLine];
+        int length = aLines[aLine + 1] - aStart;
+        if (length != bLines[bLine + 1] - bStart) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (a.charAt(aStart + i) != b.charAt(bStart + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
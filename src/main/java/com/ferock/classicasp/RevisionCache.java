@@ -0,0 +1,236 @@
+package com.ferock.classicasp;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按文件缓存分析结果的 LRU
+ * 每个文件只保留最新一个版本（revision），同时受条目数、总权重（通常为字符数）和超时时间约束；
+ * 值通过 SoftReference 持有，内存紧张时可由 GC 回收。所有方法线程安全。
+ *
+ * @param <V> 缓存值类型
+ */
+public final class RevisionCache<V> {
+
+    private final String name;
+    private final int maxEntries;
+    private final long maxWeight;
+    private final long ttlMillis;
+
+    // accessOrder = true：迭代顺序即最近最少使用顺序
+    private final LinkedHashMap<String, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReferenceQueue<V> collected = new ReferenceQueue<>();
+
+    private long totalWeight;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * @param name 名称（用于统计信息）
+     * @param maxEntries 最大文件数
+     * @param maxWeight 最大总权重
+     * @param ttlMillis 条目超时时间，<= 0 表示不超时
+     */
+    public RevisionCache(String name, int maxEntries, long maxWeight, long ttlMillis) {
+        this.name = name;
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * 获取文件指定版本的缓存值
+     * @param fileKey 文件标识
+     * @param revision 版本标识（按 equals 比较）
+     * @return 缓存值，不存在、版本不符、已过期或已被回收时返回 null
+     */
+    public synchronized V get(String fileKey, Object revision) {
+        purgeCollected();
+
+        Entry<V> entry = entries.get(fileKey);
+        if (entry == null || !entry.revision.equals(revision)) {
+            missCount++;
+            return null;
+        }
+
+        V value = entry.value.get();
+        if (value == null || isExpired(entry)) {
+            remove(fileKey, entry);
+            evictionCount++;
+            missCount++;
+            return null;
+        }
+
+        hitCount++;
+        return value;
+    }
+
+    /**
+     * 缓存文件的一个版本，同一文件的旧版本被直接替换
+     * @param fileKey 文件标识
+     * @param revision 版本标识
+     * @param value 缓存值
+     * @param weight 权重（如内容字符数），超过总权重上限的单个值不缓存
+     */
+    public synchronized void put(String fileKey, Object revision, V value, long weight) {
+        purgeCollected();
+
+        Entry<V> previous = entries.get(fileKey);
+        if (previous != null) {
+            remove(fileKey, previous);
+            if (!previous.revision.equals(revision)) {
+                evictionCount++;
+            }
+        }
+        if (weight > maxWeight) {
+            return;
+        }
+
+        entries.put(fileKey, new Entry<>(fileKey, revision, value, weight, collected));
+        totalWeight += weight;
+
+        // 按 LRU 顺序淘汰，直到满足条目数与权重上限
+        Iterator<Map.Entry<String, Entry<V>>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || totalWeight > maxWeight) && it.hasNext()) {
+            Map.Entry<String, Entry<V>> eldest = it.next();
+            if (eldest.getKey().equals(fileKey)) continue;
+            it.remove();
+            totalWeight -= eldest.getValue().weight;
+            eldest.getValue().value.clear();
+            evictionCount++;
+        }
+    }
+
+    /**
+     * 移除文件的缓存
+     */
+    public synchronized void invalidate(String fileKey) {
+        Entry<V> entry = entries.get(fileKey);
+        if (entry != null) {
+            remove(fileKey, entry);
+        }
+    }
+
+    /**
+     * 清空缓存（统计计数保留）
+     */
+    public synchronized void clear() {
+        for (Entry<V> entry : entries.values()) {
+            entry.value.clear();
+        }
+        entries.clear();
+        totalWeight = 0;
+    }
+
+    public synchronized int size() { purgeCollected(); return entries.size(); }
+    public synchronized long getWeight() { purgeCollected(); return totalWeight; }
+    public synchronized long getHitCount() { return hitCount; }
+    public synchronized long getMissCount() { return missCount; }
+    public synchronized long getEvictionCount() { return evictionCount; }
+
+    /**
+     * 获取缓存统计信息
+     */
+    public synchronized String getStatistics() {
+        purgeCollected();
+        StringBuilder stats = new StringBuilder();
+        stats.append(name).append(" 缓存统计:\n");
+        stats.append("- 缓存条目数: ").append(entries.size()).append(" / ").append(maxEntries).append("\n");
+        stats.append("- 缓存权重: ").append(totalWeight).append(" / ").append(maxWeight).append("\n");
+        stats.append("- 命中/未命中/淘汰: ").append(hitCount).append(" / ").append(missCount)
+             .append(" / ").append(evictionCount).append("\n");
+        return stats.toString();
+    }
+
+    /**
+     * 计算内容的 SHA-256 摘要，作为抗碰撞的版本标识
+     * 与 String.hashCode() 不同，两个不同版本几乎不可能得到相同的摘要
+     * @param content 文件内容
+     * @return 十六进制摘要
+     */
+    public static String contentDigest(CharSequence content) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+
+        // 按 UTF-16 编码分块喂入，避免复制整份内容
+        byte[] chunk = new byte[8192];
+        int used = 0;
+        for (int i = 0, length = content.length(); i < length; i++) {
+            char c = content.charAt(i);
+            chunk[used++] = (byte) (c >>> 8);
+            chunk[used++] = (byte) c;
+            if (used == chunk.length) {
+                digest.update(chunk, 0, used);
+                used = 0;
+            }
+        }
+        digest.update(chunk, 0, used);
+
+        byte[] hash = digest.digest();
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = Character.forDigit((hash[i] >>> 4) & 0xF, 16);
+            hex[i * 2 + 1] = Character.forDigit(hash[i] & 0xF, 16);
+        }
+        return new String(hex);
+    }
+
+    private boolean isExpired(Entry<V> entry) {
+        return ttlMillis > 0 && System.currentTimeMillis() - entry.timestamp > ttlMillis;
+    }
+
+    private void remove(String fileKey, Entry<V> entry) {
+        entries.remove(fileKey);
+        totalWeight -= entry.weight;
+        entry.value.clear();
+    }
+
+    /**
+     * 清理已被 GC 回收的条目，释放其权重
+     */
+    @SuppressWarnings("unchecked")
+    private void purgeCollected() {
+        ValueReference<V> ref;
+        while ((ref = (ValueReference<V>) collected.poll()) != null) {
+            Entry<V> entry = entries.get(ref.fileKey);
+            if (entry != null && entry.value == ref) {
+                entries.remove(ref.fileKey);
+                totalWeight -= entry.weight;
+                evictionCount++;
+            }
+        }
+    }
+
+    private static final class Entry<V> {
+        private final Object revision;
+        private final ValueReference<V> value;
+        private final long weight;
+        private final long timestamp;
+
+        private Entry(String fileKey, Object revision, V value, long weight, ReferenceQueue<V> queue) {
+            this.revision = revision;
+            this.value = new ValueReference<>(fileKey, value, queue);
+            this.weight = weight;
+            this.timestamp = System.currentTimeMillis();
+        }
+    }
+
+    private static final class ValueReference<V> extends SoftReference<V> {
+        private final String fileKey;
+
+        private ValueReference(String fileKey, V value, ReferenceQueue<V> queue) {
+            super(value, queue);
+            this.fileKey = fileKey;
+        }
+    }
+}
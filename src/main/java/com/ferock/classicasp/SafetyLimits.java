@@ -1,41 +1,22 @@
 package com.ferock.classicasp;
 
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+
 /**
  * Classic ASP 插件的安全限制配置
  * 防止死循环和其他可能导致 IDE 卡死的情况
  */
 public final class SafetyLimits {
 
-    /**
-     * 通用循环的最大迭代次数
-     * 适用于所有可能出现死循环的地方
-     */
-    public static final int MAX_LOOP_ITERATIONS = 1000;
-
-    /**
-     * AST 节点遍历的最大深度
-     */
-    public static final int MAX_AST_DEPTH = 500;
-
-    /**
-     * 词法分析器处理单个 token 的最大字符数
-     */
-    public static final int MAX_TOKEN_LENGTH = 10000;
-
-    /**
-     * 解析器处理单个语句的最大 token 数量
-     */
-    public static final int MAX_TOKENS_PER_STATEMENT = 1000;
+    private static final Logger LOG = Logger.getInstance(SafetyLimits.class);
 
     /**
-     * 格式化器处理的最大文本长度（字符数）
+     * 后台分析的默认耗时预算（毫秒）
+     * 代替固定的迭代次数上限：超过后停止分析并返回已得到的部分结果
      */
-    public static final int MAX_FORMATTING_TEXT_LENGTH = 1000000; // 1MB
-
-    /**
-     * 单个文件的最大行数限制
-     */
-    public static final int MAX_FILE_LINES = 10000;
+    public static final long ANALYSIS_TIME_BUDGET_MS = 2000;
 
     /**
      * 私有构造函数，防止实例化
@@ -44,33 +25,6 @@ public final class SafetyLimits {
         throw new UnsupportedOperationException("SafetyLimits is a utility class and should not be instantiated");
     }
 
-    /**
-     * 记录达到安全限制的警告信息
-     *
-     * @param location 发生位置的描述
-     * @param limitType 限制类型
-     * @param actualValue 实际达到的值
-     */
-    public static void logSafetyLimitReached(String location, String limitType, int actualValue) {
-        System.err.println("WARNING: Safety limit reached in " + location +
-                          " - " + limitType + ": " + actualValue);
-    }
-
-        /**
-     * 检查循环是否超过安全限制
-     *
-     * @param iterations 当前迭代次数
-     * @param location 循环位置描述
-     * @return 是否超过限制
-     */
-    public static boolean checkLoopLimit(int iterations, String location) {
-        if (iterations >= MAX_LOOP_ITERATIONS) {
-            logSafetyLimitReached(location, "MAX_LOOP_ITERATIONS", iterations);
-            return true;
-        }
-        return false;
-    }
-
     /**
      * 安全执行代码块，捕获所有异常
      *
@@ -82,6 +36,9 @@ public final class SafetyLimits {
     public static <T> T safeExecute(java.util.function.Supplier<T> operation, String location, T defaultValue) {
         try {
             return operation.get();
+        } catch (ProcessCanceledException e) {
+            // 取消必须继续向上传递，不能当作错误吞掉
+            throw e;
         } catch (Exception e) {
             System.err.println("ERROR in " + location + ": " + e.getMessage());
             e.printStackTrace();
@@ -98,6 +55,8 @@ public final class SafetyLimits {
     public static void safeExecute(Runnable operation, String location) {
         try {
             operation.run();
+        } catch (ProcessCanceledException e) {
+            throw e;
         } catch (Exception e) {
             System.err.println("ERROR in " + location + ": " + e.getMessage());
             e.printStackTrace();
@@ -105,29 +64,68 @@ public final class SafetyLimits {
     }
 
     /**
-     * 验证文档内容是否安全处理
-     *
-     * @param text 要验证的文本
-     * @param location 验证位置描述
-     * @return 是否安全
+     * 耗时与取消预算
+     * 循环每次迭代调用 exhausted()：定期检查 ProgressManager.checkCanceled()（被取消时抛出
+     * ProcessCanceledException），超过时限后返回 true，由调用方停止并保留已得到的结果。
+     * 结果必须与耗时无关的场景（索引、格式化）不使用预算，直接调用 ProgressManager.checkCanceled()。
      */
-    public static boolean isTextSafeToProcess(String text, String location) {
-        if (text == null) {
-            System.err.println("WARNING: Null text in " + location);
-            return false;
+    public static final class Budget {
+
+        /**
+         * 每 256 次迭代检查一次取消与时间，避免频繁读取时钟
+         */
+        private static final int CHECK_INTERVAL_MASK = 0xFF;
+
+        private final String location;
+        private final long deadline;
+        private int ticks;
+        private boolean exhausted;
+
+        private Budget(String location, long millis) {
+            this.location = location;
+            this.deadline = System.nanoTime() + millis * 1_000_000L;
         }
 
-        if (text.length() > MAX_FORMATTING_TEXT_LENGTH) {
-            System.err.println("WARNING: Text too long in " + location + ": " + text.length() + " chars");
-            return false;
+        /**
+         * 以默认时限（ANALYSIS_TIME_BUDGET_MS）开始计时
+         * @param location 使用位置描述（用于日志）
+         */
+        public static Budget start(String location) {
+            return new Budget(location, ANALYSIS_TIME_BUDGET_MS);
         }
 
-        int lineCount = text.split("\n").length;
-        if (lineCount > MAX_FILE_LINES) {
-            System.err.println("WARNING: Too many lines in " + location + ": " + lineCount + " lines");
-            return false;
+        /**
+         * 以指定时限开始计时
+         * @param location 使用位置描述（用于日志）
+         * @param millis 时限（毫秒）
+         */
+        public static Budget start(String location, long millis) {
+            return new Budget(location, millis);
         }
 
-        return true;
+        /**
+         * @return 预算是否已用完；被取消时抛出 ProcessCanceledException
+         */
+        public boolean exhausted() {
+            if (exhausted) {
+                return true;
+            }
+            if ((++ticks & CHECK_INTERVAL_MASK) != 0) {
+                return false;
+            }
+            ProgressManager.checkCanceled();
+            if (System.nanoTime() - deadline >= 0) {
+                exhausted = true;
+                LOG.debug("Time budget exhausted in " + location + " after " + ticks + " iterations");
+            }
+            return exhausted;
+        }
+
+        /**
+         * @return 之前的检查是否已发现超时（不推进计数）
+         */
+        public boolean isExhausted() {
+            return exhausted;
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,8 +1,6 @@
 package com.ferock.classicasp;
 
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.Map;
 
 /**
  * 统一语义分析管理器
@@ -11,10 +9,13 @@ import java.util.Map;
  */
 public class SemanticAnalyzer {
 
-    // 缓存管理器
-    private static final Map<String, AnalysisResult> analysisCache = new ConcurrentHashMap<>();
-    private static final Map<String, Long> cacheTimestamps = new ConcurrentHashMap<>();
     private static final long CACHE_TIMEOUT = 30000; // 30秒缓存超时
+    private static final int MAX_CACHE_ENTRIES = 64; // 最多缓存的文件数
+    private static final long MAX_CACHE_WEIGHT = 8L * 1024 * 1024; // 缓存内容总字符数上限
+
+    // 缓存管理器：每个文件只保留最新版本，按 LRU 与内容大小淘汰，值为软引用
+    private static final RevisionCache<AnalysisResult> analysisCache =
+        new RevisionCache<>("语义分析", MAX_CACHE_ENTRIES, MAX_CACHE_WEIGHT, CACHE_TIMEOUT);
 
     /**
      * 语义分析结果类
@@ -23,14 +24,21 @@ public class SemanticAnalyzer {
         private String content;
         private List<CodeBlockAnalyzer.CodeBlock> codeBlocks;
         private int[][] aspSections;
+        private AspSectionIndex sectionIndex;
         private String blockStatistics;
         private String hierarchyStatistics;
         private long analysisTimestamp;
 
         public AnalysisResult(String content, List<CodeBlockAnalyzer.CodeBlock> codeBlocks,
                            int[][] aspSections, String blockStatistics, String hierarchyStatistics) {
+            this(content, codeBlocks, AspSectionIndex.build(content), aspSections, blockStatistics, hierarchyStatistics);
+        }
+
+        public AnalysisResult(String content, List<CodeBlockAnalyzer.CodeBlock> codeBlocks, AspSectionIndex sectionIndex,
+                           int[][] aspSections, String blockStatistics, String hierarchyStatistics) {
             this.content = content;
             this.codeBlocks = codeBlocks;
+            this.sectionIndex = sectionIndex;
             this.aspSections = aspSections;
             this.blockStatistics = blockStatistics;
             this.hierarchyStatistics = hierarchyStatistics;
@@ -41,6 +49,7 @@ public class SemanticAnalyzer {
         public String getContent() { return content; }
         public List<CodeBlockAnalyzer.CodeBlock> getCodeBlocks() { return codeBlocks; }
         public int[][] getAspSections() { return aspSections; }
+        public AspSectionIndex getSectionIndex() { return sectionIndex; }
         public String getBlockStatistics() { return blockStatistics; }
         public String getHierarchyStatistics() { return hierarchyStatistics; }
         public long getAnalysisTimestamp() { return analysisTimestamp; }
@@ -53,15 +62,23 @@ public class SemanticAnalyzer {
      * @return 语义分析结果
      */
     public static AnalysisResult analyze(String content, String filePath) {
+        return analyze(content, filePath, SafetyLimits.Budget.start("SemanticAnalyzer.analyze"));
+    }
+
+    /**
+     * 在预算内执行语义分析（带缓存）
+     * @param content 文件内容
+     * @param filePath 文件路径（用于缓存键）；为 null 时不缓存
+     * @param budget 耗时与取消预算；用完时返回部分结果且不缓存
+     * @return 语义分析结果
+     */
+    public static AnalysisResult analyze(String content, String filePath, SafetyLimits.Budget budget) {
         if (content == null || content.trim().isEmpty()) {
             return new AnalysisResult(content, null, new int[0][2], "无内容", "无层级信息");
         }
 
-        // 生成缓存键
-        String cacheKey = generateCacheKey(content, filePath);
-
         // 检查缓存
-        AnalysisResult cachedResult = getCachedResult(cacheKey);
+        AnalysisResult cachedResult = filePath == null ? null : getCachedResult(content, filePath);
         if (cachedResult != null) {
             // System.out.println("🔍 [CACHE] 使用缓存的分析结果，文件: " + filePath);
             return cachedResult;
@@ -70,10 +87,12 @@ public class SemanticAnalyzer {
         // System.out.println("🔍 [SEMANTIC] 开始语义分析，内容长度: " + content.length() + "，文件: " + filePath);
 
         // 执行完整分析
-        AnalysisResult result = performFullAnalysis(content);
+        AnalysisResult result = performFullAnalysis(content, budget);
 
-        // 缓存结果
-        cacheResult(cacheKey, result);
+        // 缓存结果；超时得到的部分结果不缓存
+        if (filePath != null && !budget.isExhausted()) {
+            cacheResult(content, filePath, result);
+        }
 
         return result;
     }
@@ -84,19 +103,20 @@ public class SemanticAnalyzer {
      * @return 语义分析结果
      */
     public static AnalysisResult analyze(String content) {
-        return analyze(content, "unknown");
+        return analyze(content, null);
     }
 
     /**
      * 执行完整的语义分析
      */
-    private static AnalysisResult performFullAnalysis(String content) {
+    private static AnalysisResult performFullAnalysis(String content, SafetyLimits.Budget budget) {
         // 第一步：代码区域检测
-        int[][] aspSections = ASPSectionDetector.getASPSections(content);
+        AspSectionIndex sectionIndex = AspSectionIndex.build(content);
+        int[][] aspSections = sectionIndex.getSections();
         // System.out.println("🔍 [SEMANTIC] ASP区域检测完成，找到 " + aspSections.length + " 个ASP区域");
 
         // 第二步：代码块分析
-        List<CodeBlockAnalyzer.CodeBlock> codeBlocks = CodeBlockAnalyzer.analyzeCodeBlocks(content);
+        List<CodeBlockAnalyzer.CodeBlock> codeBlocks = CodeBlockAnalyzer.analyzeCodeBlocks(content, budget);
         // System.out.println("🔍 [SEMANTIC] 代码块分析完成，找到 " + codeBlocks.size() + " 个顶级代码块");
 
         // 第三步：生成统计信息
@@ -107,45 +127,33 @@ public class SemanticAnalyzer {
         // System.out.println(blockStatistics);
         // System.out.println(hierarchyStatistics);
 
-        return new AnalysisResult(content, codeBlocks, aspSections, blockStatistics, hierarchyStatistics);
+        return new AnalysisResult(content, codeBlocks, sectionIndex, aspSections, blockStatistics, hierarchyStatistics);
     }
 
     /**
-     * 生成缓存键
+     * 生成版本标识
      */
-    private static String generateCacheKey(String content, String filePath) {
-        // 使用内容哈希和文件路径作为缓存键
-        int contentHash = content.hashCode();
-        return filePath + ":" + contentHash;
+    private static String generateRevision(String content) {
+        // 使用内容长度和哈希作为版本标识，命中时再比较内容以排除哈希碰撞
+        return content.length() + ":" + content.hashCode();
     }
 
     /**
      * 获取缓存的分析结果
      */
-    private static AnalysisResult getCachedResult(String cacheKey) {
-        AnalysisResult cached = analysisCache.get(cacheKey);
-        if (cached == null) {
+    private static AnalysisResult getCachedResult(String content, String filePath) {
+        AnalysisResult cached = analysisCache.get(filePath, generateRevision(content));
+        if (cached == null || !content.equals(cached.getContent())) {
             return null;
         }
-
-        // 检查缓存是否过期
-        Long timestamp = cacheTimestamps.get(cacheKey);
-        if (timestamp == null || System.currentTimeMillis() - timestamp > CACHE_TIMEOUT) {
-            // System.out.println("🔍 [CACHE] 缓存已过期，重新分析");
-            invalidateSpecificCache(cacheKey);
-            return null;
-        }
-
         return cached;
     }
 
     /**
-     * 缓存分析结果
+     * 缓存分析结果（替换该文件之前的版本）
      */
-    private static void cacheResult(String cacheKey, AnalysisResult result) {
-        analysisCache.put(cacheKey, result);
-        cacheTimestamps.put(cacheKey, System.currentTimeMillis());
-                    // System.out.println("🔍 [CACHE] 分析结果已缓存，键: " + cacheKey);
+    private static void cacheResult(String content, String filePath, AnalysisResult result) {
+        analysisCache.put(filePath, generateRevision(content), result, content.length());
     }
 
     /**
@@ -153,19 +161,7 @@ public class SemanticAnalyzer {
      * @param filePath 文件路径
      */
     public static void invalidateCache(String filePath) {
-        // 移除所有与该文件相关的缓存
-        analysisCache.entrySet().removeIf(entry -> entry.getKey().startsWith(filePath + ":"));
-        cacheTimestamps.entrySet().removeIf(entry -> entry.getKey().startsWith(filePath + ":"));
-        // System.out.println("🔍 [CACHE] 已清除文件缓存: " + filePath);
-    }
-
-    /**
-     * 使特定缓存失效
-     * @param cacheKey 缓存键
-     */
-    private static void invalidateSpecificCache(String cacheKey) {
-        analysisCache.remove(cacheKey);
-        cacheTimestamps.remove(cacheKey);
+        analysisCache.invalidate(filePath);
     }
 
     /**
@@ -173,26 +169,15 @@ public class SemanticAnalyzer {
      */
     public static void clearAllCache() {
         analysisCache.clear();
-        cacheTimestamps.clear();
-        // System.out.println("🔍 [CACHE] 已清除所有缓存");
     }
 
     /**
      * 获取缓存统计信息
      */
     public static String getCacheStatistics() {
-        StringBuilder stats = new StringBuilder();
-        stats.append("缓存统计信息:\n");
-        stats.append("- 缓存条目数: ").append(analysisCache.size()).append("\n");
+        StringBuilder stats = new StringBuilder(analysisCache.getStatistics());
         stats.append("- 缓存超时时间: ").append(CACHE_TIMEOUT / 1000).append(" 秒\n");
-
-        long totalMemory = 0;
-        for (AnalysisResult result : analysisCache.values()) {
-            if (result.getContent() != null) {
-                totalMemory += result.getContent().length() * 2; // 估算内存使用
-            }
-        }
-        stats.append("- 估算内存使用: ").append(totalMemory / 1024).append(" KB\n");
+        stats.append("- 估算内存使用: ").append(analysisCache.getWeight() * 2 / 1024).append(" KB\n");
 
         return stats.toString();
     }
@@ -206,10 +191,10 @@ public class SemanticAnalyzer {
         }
 
         // 检查是否在ASP区域内
-        boolean inASPSection = ASPSectionDetector.isInASPSection(result.getContent(), position);
+        boolean inASPSection = result.getSectionIndex().isInASPSection(position);
 
         // 计算行号
-        int lineNumber = calculateLineNumber(result.getContent(), position);
+        int lineNumber = calculateLineNumber(result, position);
 
         // 获取代码块信息
         CodeBlockAnalyzer.CodeBlock block = null;
@@ -229,7 +214,7 @@ public class SemanticAnalyzer {
         }
 
         // 检查是否在ASP区域内
-        boolean inASPSection = ASPSectionDetector.isLineInASPSection(result.getContent(), lineNumber);
+        boolean inASPSection = result.getSectionIndex().isLineInASPSection(lineNumber);
 
         // 获取代码块信息
         CodeBlockAnalyzer.CodeBlock block = null;
@@ -282,18 +267,12 @@ public class SemanticAnalyzer {
     /**
      * 计算行号
      */
-    private static int calculateLineNumber(String content, int position) {
-        if (position < 0 || position >= content.length()) {
+    private static int calculateLineNumber(AnalysisResult result, int position) {
+        if (position < 0 || position >= result.getContent().length()) {
             return 0;
         }
 
-        int lineNumber = 0;
-        for (int i = 0; i < position; i++) {
-            if (content.charAt(i) == '\n') {
-                lineNumber++;
-            }
-        }
-        return lineNumber;
+        return result.getSectionIndex().getLineNumber(position);
     }
 
     /**
@@ -0,0 +1,41 @@
+package com.ferock.classicasp;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 构建时把 keywords.yaml 编译为二进制表 keywords.spec（由 Gradle 的 compileSpec 任务调用）
+ * 运行时 SpecRegistry 直接读取该表，首次打开文件时无需解析 YAML。
+ */
+public final class SpecCompiler {
+
+    private SpecCompiler() {}
+
+    /**
+     * @param args YAML 路径、输出路径
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("usage: SpecCompiler <keywords.yaml> <keywords.spec>");
+        }
+        Path source = Paths.get(args[0]);
+        Path target = Paths.get(args[1]);
+        byte[] yaml = Files.readAllBytes(source);
+        SpecSnapshot snapshot = SpecYamlParser.parse(new ByteArrayInputStream(yaml));
+
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+        try (OutputStream file = Files.newOutputStream(target);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            snapshot.write(out, SpecSnapshot.checksum(yaml));
+        }
+        System.out.println("[SpecCompiler] " + source + " -> " + target + " (" + Files.size(target) + " bytes)");
+    }
+}
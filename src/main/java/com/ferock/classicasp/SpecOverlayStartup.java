@@ -0,0 +1,16 @@
+package com.ferock.classicasp;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.StartupActivity;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 项目打开时加载并监视项目级规范覆盖表
+ */
+public class SpecOverlayStartup implements StartupActivity.DumbAware {
+
+    @Override
+    public void runActivity(@NotNull Project project) {
+        SpecOverlayWatcher.watch(project);
+    }
+}
@@ -0,0 +1,169 @@
+package com.ferock.classicasp;
+
+import com.intellij.notification.NotificationGroupManager;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.ex.EditorEx;
+import com.intellij.openapi.editor.highlighter.EditorHighlighterFactory;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 项目级规范覆盖表的热加载
+ * 项目根目录下的 .classicasp/keywords.yaml 与打包的 keywords.yaml 格式相同（例如团队自己的 COM 对象及其方法），
+ * 由 SpecRegistry 叠加在内置表之上。文件创建、修改或删除后在后台线程重新解析并替换快照；
+ * 只有词法高亮用到的表改变时才为打开的 ASP 编辑器重建高亮器，格式化与补全的缓存在下次使用时自行重建。
+ */
+public class SpecOverlayWatcher implements BulkFileListener {
+
+    private static final Logger LOG = Logger.getInstance(SpecOverlayWatcher.class);
+
+    // plugin.xml 中注册的通知组
+    private static final String NOTIFICATION_GROUP = "Classic ASP";
+
+    // 相对项目根目录的覆盖表路径
+    static final String OVERLAY_PATH = ".classicasp/keywords.yaml";
+
+    // 重新加载在单个后台线程上按顺序执行，连续保存时以最后读到的文件内容为准
+    private static final ExecutorService RELOADER =
+            AppExecutorUtil.createBoundedApplicationPoolExecutor("ClassicASP Spec Overlay", 1);
+
+    // 已打开项目的覆盖表路径 -> 项目（用于报告解析错误）
+    private static final Map<String, Project> watched = new ConcurrentHashMap<>();
+
+    /**
+     * 开始监视项目的覆盖表（项目打开时调用），项目关闭时移除其覆盖表
+     */
+    static void watch(Project project) {
+        String basePath = project.getBasePath();
+        if (basePath == null) return;
+        String path = basePath + "/" + OVERLAY_PATH;
+        if (watched.putIfAbsent(path, project) != null) return;
+        Disposer.register(project, () -> {
+            watched.remove(path);
+            RELOADER.execute(() -> apply(path, null));
+        });
+        // 让 VFS 加载覆盖表所在目录，之后在 IDE 外的修改也能收到事件
+        LocalFileSystem.getInstance().findFileByPath(path);
+        reload(path);
+    }
+
+    @Override
+    public void after(@NotNull List<? extends VFileEvent> events) {
+        if (watched.isEmpty()) return;
+        Set<String> changed = new LinkedHashSet<>();
+        for (VFileEvent event : events) {
+            VirtualFile file = event.getFile();
+            for (String path : watched.keySet()) {
+                // 覆盖表本身或其所在目录被创建、修改、删除、移动或重命名
+                if (affects(event.getPath(), path) || (file != null && affects(file.getPath(), path))) {
+                    changed.add(path);
+                }
+            }
+        }
+        for (String path : changed) {
+            reload(path);
+        }
+    }
+
+    private static boolean affects(String eventPath, String overlayPath) {
+        return overlayPath.equals(eventPath) || overlayPath.startsWith(eventPath + "/");
+    }
+
+    private static void reload(String path) {
+        RELOADER.execute(() -> {
+            SpecSnapshot overlay;
+            try {
+                overlay = parse(Paths.get(path));
+            } catch (Throwable t) {
+                // 解析失败时保留上一次成功加载的覆盖表
+                LOG.warn("Classic ASP spec overlay ignored: " + path, t);
+                notifyParseFailure(path, t);
+                return;
+            }
+            apply(path, overlay);
+        });
+    }
+
+    /**
+     * @return 覆盖表，文件不存在或为空时返回 null
+     */
+    private static SpecSnapshot parse(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) return null;
+        byte[] yaml = Files.readAllBytes(file);
+        if (new String(yaml, StandardCharsets.UTF_8).isBlank()) return null;
+        return SpecYamlParser.parse(new ByteArrayInputStream(yaml));
+    }
+
+    private static void apply(String path, SpecSnapshot overlay) {
+        // 项目已关闭
+        if (overlay != null && !watched.containsKey(path)) return;
+        long start = System.nanoTime();
+        SpecSnapshot previous = SpecRegistry.setOverlay(path, overlay);
+        SpecSnapshot current = SpecRegistry.snapshot();
+        if (current == previous) return;
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Spec overlay " + (overlay != null ? "applied" : "removed") + " in "
+                    + (System.nanoTime() - start) / 1_000_000 + "ms: " + path + ", caseMap=" + current.getCaseMap().size()
+                    + ", objects=" + current.getObjectToMethods().size() + ", sysFns=" + current.getSysFunctions().size());
+        }
+
+        if (current.getKeywords() != previous.getKeywords()
+                || current.getSysFunctions() != previous.getSysFunctions()
+                || current.getObjectToMethods() != previous.getObjectToMethods()) {
+            ApplicationManager.getApplication().invokeLater(SpecOverlayWatcher::rehighlightEditors);
+        }
+    }
+
+    /**
+     * 以气泡通知报告覆盖表的解析错误（日志之外用户唯一能看到的提示）
+     */
+    private static void notifyParseFailure(String path, Throwable error) {
+        Project project = watched.get(path);
+        if (project == null || project.isDisposed()) return;
+        String message = error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+        NotificationGroupManager.getInstance().getNotificationGroup(NOTIFICATION_GROUP)
+                .createNotification("Classic ASP: " + OVERLAY_PATH + " 解析失败，继续使用上一次的内容",
+                        StringUtil.escapeXmlEntities(message), NotificationType.WARNING)
+                .notify(project);
+    }
+
+    /**
+     * 为打开的 ASP 编辑器换上新的高亮器（词法状态中编码了对象编号，需要整体重新扫描）
+     */
+    private static void rehighlightEditors() {
+        for (Editor editor : EditorFactory.getInstance().getAllEditors()) {
+            Project project = editor.getProject();
+            VirtualFile file = FileDocumentManager.getInstance().getFile(editor.getDocument());
+            if (!(editor instanceof EditorEx) || project == null || project.isDisposed() || file == null
+                    || file.getFileType() != ClassicASPFileType.INSTANCE) {
+                continue;
+            }
+            ((EditorEx) editor).setHighlighter(EditorHighlighterFactory.getInstance().createEditorHighlighter(project, file));
+        }
+    }
+}
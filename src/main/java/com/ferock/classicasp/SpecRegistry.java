@@ -1,172 +1,132 @@
 package com.ferock.classicasp;
 
-import org.yaml.snakeyaml.Yaml;
+import com.intellij.openapi.diagnostic.Logger;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 /**
  * 读取并缓存 src/main/resources/keywords.yaml 的轻量注册器。
+ * 加载结果发布为不可变的 SpecSnapshot（volatile 引用），读取无锁；只有首次加载时加锁。
+ * 优先读取构建时编译的 keywords.spec（无需 YAML 解析），缺失或与 YAML 不一致时解析 YAML。
  * 失败时回退到内置的 VBScriptKeywords 数据。
+ * 项目级覆盖表（见 SpecOverlayWatcher）叠加在内置表之上，变化时整体替换快照，读取方不会被阻塞。
  */
 public final class SpecRegistry {
 
-    private static volatile boolean loaded = false;
+    private static final Logger LOG = Logger.getInstance(SpecRegistry.class);
 
-    private static Map<String, String> caseMap = new HashMap<>();                // 小写 -> 正确大小写
-    private static Map<String, Set<String>> objectToMethods = new HashMap<>();   // 对象名(小写) -> 方法集合(小写)
-    private static Map<String, Map<String, String>> objectMethodCase = new HashMap<>(); // 对象名(小写) -> (方法小写 -> 方法正确大小写)
-    private static Set<String> sysFunctions = new HashSet<>();                   // 内置函数名集合(小写)
-    private static Map<String, String> sysFunctionCase = new HashMap<>();        // 内置函数 小写->正确大小写
-    private static Set<String> keywords = new HashSet<>();                        // YAML 中声明的关键词（小写聚合）
+    static final String YAML_RESOURCE = "keywords.yaml";
+    // 构建时由 SpecCompiler 生成
+    static final String COMPILED_RESOURCE = "keywords.spec";
 
-    // YAML: formatting
-    private static List<String> operatorSymbolsWithSpaces = new ArrayList<>();   // 需要空格的符号运算符（字符串形式）
-    private static Set<String> keywordOpsWithSpaces = new HashSet<>();           // 需要空格的关键字运算符（小写）
+    private static volatile SpecSnapshot snapshot;
+
+    // 以下字段由类锁保护
+    // 打包的 keywords.yaml 对应的快照（不含覆盖表）
+    private static SpecSnapshot bundled;
+    // 覆盖表文件路径 -> 解析结果，按加入顺序叠加
+    private static final Map<String, SpecSnapshot> overlays = new LinkedHashMap<>();
 
     private SpecRegistry() {}
 
-    public static Map<String, String> getCaseMap() { ensureLoaded(); return caseMap; }
-    public static Map<String, Set<String>> getObjectToMethods() { ensureLoaded(); return objectToMethods; }
-    public static Map<String, Map<String, String>> getObjectMethodCase() { ensureLoaded(); return objectMethodCase; }
-    public static Set<String> getSysFunctions() { ensureLoaded(); return sysFunctions; }
-    public static Map<String, String> getSysFunctionCase() { ensureLoaded(); return sysFunctionCase; }
-    public static List<String> getOperatorSymbolsWithSpaces() { ensureLoaded(); return operatorSymbolsWithSpaces; }
-    public static Set<String> getKeywordOpsWithSpaces() { ensureLoaded(); return keywordOpsWithSpaces; }
-    public static Set<String> getKeywords() { ensureLoaded(); return keywords; }
-
-    private static synchronized void ensureLoaded() {
-        if (loaded) return;
-        try (InputStream in = SpecRegistry.class.getClassLoader().getResourceAsStream("keywords.yaml")) {
-            if (in == null) { fallbackToBuiltin("[SpecRegistry] keywords.yaml not found, fallback to built-in tables."); return; }
-            Yaml yaml = new Yaml();
-            Object data = yaml.load(in);
-            if (!(data instanceof Map)) { fallbackToBuiltin("[SpecRegistry] YAML root is not a map, fallback."); return; }
-            Map<?,?> root = (Map<?,?>) data;
-
-            // case_map
-            Object cm = root.get("case_map");
-            if (cm instanceof Map) {
-                Map<?,?> m = (Map<?,?>) cm;
-                for (Map.Entry<?,?> e : m.entrySet()) {
-                    if (e.getKey() != null && e.getValue() != null) {
-                        caseMap.put(String.valueOf(e.getKey()).toLowerCase(), String.valueOf(e.getValue()));
-                    }
-                }
-            }
+    /**
+     * @return 当前快照（首次调用时加载）
+     */
+    public static SpecSnapshot snapshot() {
+        SpecSnapshot s = snapshot;
+        return s != null ? s : ensureLoaded();
+    }
 
-            // objects.methods
-            Object objects = root.get("objects");
-            if (objects instanceof Map) {
-                Map<?,?> objMap = (Map<?,?>) objects;
-                for (Map.Entry<?,?> e : objMap.entrySet()) {
-                    String objectName = String.valueOf(e.getKey());
-                    Object def = e.getValue();
-                    if (def instanceof Map) {
-                        Object methods = ((Map<?,?>) def).get("methods");
-                        Set<String> methodSet = new HashSet<>();
-                        Map<String, String> methodCase = new HashMap<>();
-                        if (methods instanceof List) {
-                            for (Object m : (List<?>) methods) {
-                                if (m != null) {
-                                    String proper = String.valueOf(m);
-                                    String lower = proper.toLowerCase();
-                                    methodSet.add(lower);
-                                    methodCase.put(lower, proper);
-                                }
-                            }
-                        }
-                        objectToMethods.put(objectName.toLowerCase(), methodSet);
-                        objectMethodCase.put(objectName.toLowerCase(), methodCase);
-                    }
-                }
-            }
+    public static Map<String, String> getCaseMap() { return snapshot().getCaseMap(); }
+    public static Map<String, Set<String>> getObjectToMethods() { return snapshot().getObjectToMethods(); }
+    public static Map<String, Map<String, String>> getObjectMethodCase() { return snapshot().getObjectMethodCase(); }
+    public static Set<String> getSysFunctions() { return snapshot().getSysFunctions(); }
+    public static Map<String, String> getSysFunctionCase() { return snapshot().getSysFunctionCase(); }
+    public static List<String> getOperatorSymbolsWithSpaces() { return snapshot().getOperatorSymbolsWithSpaces(); }
+    public static Set<String> getKeywordOpsWithSpaces() { return snapshot().getKeywordOpsWithSpaces(); }
+    public static Set<String> getKeywords() { return snapshot().getKeywords(); }
+
+    private static synchronized SpecSnapshot ensureLoaded() {
+        if (snapshot == null) {
+            bundled = load();
+            snapshot = compose();
+        }
+        return snapshot;
+    }
 
-            // keywords: 聚合所有类别
-            Object kroot = root.get("keywords");
-            if (kroot instanceof Map) {
-                Map<?,?> km = (Map<?,?>) kroot;
-                for (Object v : km.values()) {
-                    if (v instanceof List) {
-                        for (Object kw : (List<?>) v) {
-                            if (kw != null) keywords.add(String.valueOf(kw).toLowerCase());
-                        }
-                    }
-                }
-            }
+    /**
+     * 设置或移除一个覆盖表，并发布新的快照
+     * 与上一个快照相同的表沿用原实例，只有受影响的派生缓存会重建。
+     * @param path 覆盖表文件路径
+     * @param overlay 解析结果，null 表示移除
+     * @return 被替换的快照
+     */
+    static synchronized SpecSnapshot setOverlay(String path, SpecSnapshot overlay) {
+        SpecSnapshot previous = ensureLoaded();
+        if (overlay != null) {
+            overlays.put(path, overlay);
+        } else if (overlays.remove(path) == null) {
+            return previous;
+        }
+        snapshot = compose().reuseTables(previous);
+        return previous;
+    }
 
-            // sys_functions
-            Object sf = root.get("sys_functions");
-            if (sf instanceof List) {
-                for (Object fn : (List<?>) sf) {
-                    if (fn != null) {
-                        String proper = String.valueOf(fn);
-                        String lower = proper.toLowerCase();
-                        sysFunctions.add(lower);
-                        sysFunctionCase.put(lower, proper);
-                    }
-                }
-            }
+    private static SpecSnapshot compose() {
+        SpecSnapshot result = bundled;
+        for (SpecSnapshot overlay : overlays.values()) {
+            result = result.withOverlay(overlay);
+        }
+        return result;
+    }
 
-            // formatting: operators_with_spaces / keywords_with_spaces
-            Object formatting = root.get("formatting");
-            if (formatting instanceof Map) {
-                Map<?,?> fmt = (Map<?,?>) formatting;
-                // collect operators map for symbols
-                Map<String, Object> operators = new HashMap<>();
-                Object ops = root.get("operators");
-                if (ops instanceof Map) {
-                    for (Map.Entry<?,?> e : ((Map<?,?>) ops).entrySet()) {
-                        operators.put(String.valueOf(e.getKey()), e.getValue());
-                    }
-                }
-                // operators_with_spaces: list of group keys
-                Object ows = fmt.get("operators_with_spaces");
-                if (ows instanceof List) {
-                    for (Object g : (List<?>) ows) {
-                        String group = String.valueOf(g);
-                        Object val = operators.get(group);
-                        if (val instanceof Map) {
-                            // map of TOKEN->symbol
-                            for (Object sym : ((Map<?,?>) val).values()) {
-                                if (sym != null) operatorSymbolsWithSpaces.add(String.valueOf(sym));
-                            }
-                        } else if (val instanceof List) {
-                            // list of keywords (ignore here)
-                        }
-                    }
-                }
-                // keywords_with_spaces
-                Object kws = fmt.get("keywords_with_spaces");
-                if (kws instanceof List) {
-                    for (Object kw : (List<?>) kws) {
-                        if (kw != null) keywordOpsWithSpaces.add(String.valueOf(kw).toLowerCase());
-                    }
-                }
+    private static SpecSnapshot load() {
+        long start = System.nanoTime();
+        try {
+            byte[] yaml = readResource(YAML_RESOURCE);
+            if (yaml == null) {
+                LOG.warn(YAML_RESOURCE + " not found, falling back to built-in tables");
+                return builtin();
             }
 
-            loaded = true;
-            System.out.println("[ASP][Spec] keywords.yaml loaded: caseMap=" + caseMap.size() + ", objects=" + objectToMethods.size() + ", sysFns=" + sysFunctions.size());
+            // 优先读取构建时编译的二进制表；它记录了源 YAML 的校验和，YAML 被替换后自动失效
+            long checksum = SpecSnapshot.checksum(yaml);
+            byte[] compiled = readResource(COMPILED_RESOURCE);
+            SpecSnapshot result = compiled != null ? SpecSnapshot.read(compiled, checksum) : null;
+            String source = COMPILED_RESOURCE;
+            if (result == null) {
+                result = SpecYamlParser.parse(new ByteArrayInputStream(yaml));
+                source = YAML_RESOURCE;
+            }
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(source + " loaded in " + (System.nanoTime() - start) / 1_000_000 + "ms: caseMap="
+                        + result.getCaseMap().size() + ", objects=" + result.getObjectToMethods().size()
+                        + ", sysFns=" + result.getSysFunctions().size());
+            }
+            return result;
         } catch (Throwable t) {
-            fallbackToBuiltin("[SpecRegistry] load error, fallback: " + t.getMessage());
+            LOG.warn("Failed to load spec tables, falling back to built-in tables", t);
+            return builtin();
+        }
+    }
+
+    private static byte[] readResource(String name) throws IOException {
+        try (InputStream in = SpecRegistry.class.getClassLoader().getResourceAsStream(name)) {
+            return in != null ? in.readAllBytes() : null;
         }
     }
 
-    private static void fallbackToBuiltin(String reason) {
-        System.out.println(reason);
+    private static SpecSnapshot builtin() {
+        Map<String, String> caseMap;
         try { caseMap = VBScriptKeywords.getCaseMap(); } catch (Throwable ignored) { caseMap = Collections.emptyMap(); }
-        objectToMethods = new HashMap<>();
-        objectMethodCase = new HashMap<>();
-        sysFunctions = new HashSet<>();
-        sysFunctionCase = new HashMap<>();
-        operatorSymbolsWithSpaces = new ArrayList<>();
-        keywordOpsWithSpaces = new HashSet<>();
-        loaded = true;
+        return new SpecSnapshot(caseMap, Collections.emptyMap(), Collections.emptyMap(), Collections.emptySet(),
+                Collections.emptyMap(), Collections.emptySet(), Collections.emptyList(), Collections.emptySet());
     }
 }
@@ -0,0 +1,274 @@
+package com.ferock.classicasp;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+/**
+ * keywords.yaml 的不可变快照
+ * 构建时把全部表复制为不可变集合（Map.copyOf / Set.copyOf 为紧凑的开放寻址哈希表），
+ * 之后只读，可在高亮、格式化与补全线程间无锁共享。
+ * 各表实例在快照生命周期内不变，调用方可按引用判断派生缓存是否需要重建；
+ * 已是不可变集合的表不再复制，叠加与重新加载时未改变的表沿用原实例，相应的缓存不会失效。
+ * 可序列化为紧凑的二进制表（keywords.spec），由构建时的 SpecCompiler 生成、运行时直接读取。
+ */
+public final class SpecSnapshot {
+
+    // 二进制表格式："ASPS" + 版本号 + 源 YAML 的 CRC32
+    private static final int MAGIC = 0x41535053;
+    private static final int FORMAT_VERSION = 1;
+
+    private final Map<String, String> caseMap;                        // 小写 -> 正确大小写
+    private final Map<String, Set<String>> objectToMethods;           // 对象名(小写) -> 方法集合(小写)
+    private final Map<String, Map<String, String>> objectMethodCase;  // 对象名(小写) -> (方法小写 -> 方法正确大小写)
+    private final Set<String> sysFunctions;                           // 内置函数名集合(小写)
+    private final Map<String, String> sysFunctionCase;                // 内置函数 小写->正确大小写
+    private final Set<String> keywords;                               // YAML 中声明的关键词（小写聚合）
+    private final List<String> operatorSymbolsWithSpaces;             // 需要空格的符号运算符
+    private final Set<String> keywordOpsWithSpaces;                   // 需要空格的关键字运算符（小写）
+
+    SpecSnapshot(Map<String, String> caseMap,
+                 Map<String, Set<String>> objectToMethods,
+                 Map<String, Map<String, String>> objectMethodCase,
+                 Set<String> sysFunctions,
+                 Map<String, String> sysFunctionCase,
+                 Set<String> keywords,
+                 List<String> operatorSymbolsWithSpaces,
+                 Set<String> keywordOpsWithSpaces) {
+        this.caseMap = Map.copyOf(caseMap);
+        this.objectToMethods = copyNested(objectToMethods);
+        this.objectMethodCase = copyNestedMap(objectMethodCase);
+        this.sysFunctions = Set.copyOf(sysFunctions);
+        this.sysFunctionCase = Map.copyOf(sysFunctionCase);
+        this.keywords = Set.copyOf(keywords);
+        this.operatorSymbolsWithSpaces = List.copyOf(operatorSymbolsWithSpaces);
+        this.keywordOpsWithSpaces = Set.copyOf(keywordOpsWithSpaces);
+    }
+
+    public Map<String, String> getCaseMap() { return caseMap; }
+    public Map<String, Set<String>> getObjectToMethods() { return objectToMethods; }
+    public Map<String, Map<String, String>> getObjectMethodCase() { return objectMethodCase; }
+    public Set<String> getSysFunctions() { return sysFunctions; }
+    public Map<String, String> getSysFunctionCase() { return sysFunctionCase; }
+    public Set<String> getKeywords() { return keywords; }
+    public List<String> getOperatorSymbolsWithSpaces() { return operatorSymbolsWithSpaces; }
+    public Set<String> getKeywordOpsWithSpaces() { return keywordOpsWithSpaces; }
+
+    // Map.copyOf / Set.copyOf 对不可变集合直接返回原实例；外层映射仅在有值被复制时重建
+    private static Map<String, Set<String>> copyNested(Map<String, Set<String>> source) {
+        Map<String, Set<String>> copy = new HashMap<>(source.size() * 2);
+        boolean copied = false;
+        for (Map.Entry<String, Set<String>> e : source.entrySet()) {
+            Set<String> value = Set.copyOf(e.getValue());
+            copied |= value != e.getValue();
+            copy.put(e.getKey(), value);
+        }
+        return Map.copyOf(copied ? copy : source);
+    }
+
+    private static Map<String, Map<String, String>> copyNestedMap(Map<String, Map<String, String>> source) {
+        Map<String, Map<String, String>> copy = new HashMap<>(source.size() * 2);
+        boolean copied = false;
+        for (Map.Entry<String, Map<String, String>> e : source.entrySet()) {
+            Map<String, String> value = Map.copyOf(e.getValue());
+            copied |= value != e.getValue();
+            copy.put(e.getKey(), value);
+        }
+        return Map.copyOf(copied ? copy : source);
+    }
+
+    /**
+     * 把项目级覆盖表叠加到当前快照上：大小写表与方法表按键覆盖，集合取并集，运算符按顺序追加
+     * 覆盖表中为空的部分沿用本快照的表实例。
+     * @param overlay 覆盖表
+     * @return 叠加后的快照
+     */
+    SpecSnapshot withOverlay(SpecSnapshot overlay) {
+        return new SpecSnapshot(
+                mergeMap(caseMap, overlay.caseMap),
+                mergeNested(objectToMethods, overlay.objectToMethods),
+                mergeNestedMap(objectMethodCase, overlay.objectMethodCase),
+                mergeSet(sysFunctions, overlay.sysFunctions),
+                mergeMap(sysFunctionCase, overlay.sysFunctionCase),
+                mergeSet(keywords, overlay.keywords),
+                mergeList(operatorSymbolsWithSpaces, overlay.operatorSymbolsWithSpaces),
+                mergeSet(keywordOpsWithSpaces, overlay.keywordOpsWithSpaces));
+    }
+
+    /**
+     * 与上一个快照内容相同的表改用上一个快照的实例，
+     * 使按引用比较的派生缓存（高亮、格式化、补全）只在对应的表真正改变时重建。
+     * @param previous 上一个快照
+     * @return 新快照
+     */
+    SpecSnapshot reuseTables(SpecSnapshot previous) {
+        return new SpecSnapshot(
+                same(caseMap, previous.caseMap),
+                same(objectToMethods, previous.objectToMethods),
+                same(objectMethodCase, previous.objectMethodCase),
+                same(sysFunctions, previous.sysFunctions),
+                same(sysFunctionCase, previous.sysFunctionCase),
+                same(keywords, previous.keywords),
+                same(operatorSymbolsWithSpaces, previous.operatorSymbolsWithSpaces),
+                same(keywordOpsWithSpaces, previous.keywordOpsWithSpaces));
+    }
+
+    private static <T> T same(T current, T previous) {
+        return current.equals(previous) ? previous : current;
+    }
+
+    private static <V> Map<String, V> mergeMap(Map<String, V> base, Map<String, V> overlay) {
+        if (overlay.isEmpty()) return base;
+        Map<String, V> merged = new HashMap<>(base);
+        merged.putAll(overlay);
+        return merged;
+    }
+
+    private static Set<String> mergeSet(Set<String> base, Set<String> overlay) {
+        if (base.containsAll(overlay)) return base;
+        Set<String> merged = new HashSet<>(base);
+        merged.addAll(overlay);
+        return merged;
+    }
+
+    private static List<String> mergeList(List<String> base, List<String> overlay) {
+        if (base.containsAll(overlay)) return base;
+        List<String> merged = new ArrayList<>(base);
+        for (String value : overlay) {
+            if (!merged.contains(value)) merged.add(value);
+        }
+        return merged;
+    }
+
+    private static Map<String, Set<String>> mergeNested(Map<String, Set<String>> base, Map<String, Set<String>> overlay) {
+        if (overlay.isEmpty()) return base;
+        Map<String, Set<String>> merged = new HashMap<>(base);
+        for (Map.Entry<String, Set<String>> e : overlay.entrySet()) {
+            Set<String> existing = base.get(e.getKey());
+            merged.put(e.getKey(), existing != null ? mergeSet(existing, e.getValue()) : e.getValue());
+        }
+        return merged;
+    }
+
+    private static Map<String, Map<String, String>> mergeNestedMap(Map<String, Map<String, String>> base,
+                                                                  Map<String, Map<String, String>> overlay) {
+        if (overlay.isEmpty()) return base;
+        Map<String, Map<String, String>> merged = new HashMap<>(base);
+        for (Map.Entry<String, Map<String, String>> e : overlay.entrySet()) {
+            Map<String, String> existing = base.get(e.getKey());
+            merged.put(e.getKey(), existing != null ? mergeMap(existing, e.getValue()) : e.getValue());
+        }
+        return merged;
+    }
+
+    /**
+     * @return 源 YAML 内容的校验和（写入二进制表，用于判断是否过期）
+     */
+    static long checksum(byte[] yaml) {
+        CRC32 crc = new CRC32();
+        crc.update(yaml);
+        return crc.getValue();
+    }
+
+    /**
+     * 写出二进制表；键按字典序写出，相同的 YAML 总是生成相同的文件
+     * 方法集合与内置函数集合由对应的大小写表得出，不单独保存。
+     */
+    void write(DataOutputStream out, long sourceChecksum) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(sourceChecksum);
+        writeMap(out, caseMap);
+        Map<String, Map<String, String>> objects = new TreeMap<>(objectMethodCase);
+        out.writeInt(objects.size());
+        for (Map.Entry<String, Map<String, String>> e : objects.entrySet()) {
+            out.writeUTF(e.getKey());
+            writeMap(out, e.getValue());
+        }
+        writeMap(out, sysFunctionCase);
+        writeStrings(out, new TreeSet<>(keywords));
+        writeStrings(out, operatorSymbolsWithSpaces);
+        writeStrings(out, new TreeSet<>(keywordOpsWithSpaces));
+    }
+
+    /**
+     * 读取二进制表
+     * @param data 文件内容
+     * @param expectedChecksum 当前 YAML 的校验和
+     * @return 快照；格式不符、文件损坏或 YAML 已改变（校验和不同）时返回 null
+     */
+    static SpecSnapshot read(byte[] data, long expectedChecksum) {
+        try {
+            return read(new DataInputStream(new ByteArrayInputStream(data)), expectedChecksum);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static SpecSnapshot read(DataInputStream in, long expectedChecksum) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readLong() != expectedChecksum) {
+            return null;
+        }
+        Map<String, String> caseMap = readMap(in);
+        int objectCount = in.readInt();
+        Map<String, Set<String>> objectToMethods = new HashMap<>(objectCount * 2);
+        Map<String, Map<String, String>> objectMethodCase = new HashMap<>(objectCount * 2);
+        for (int i = 0; i < objectCount; i++) {
+            String object = in.readUTF();
+            Map<String, String> methods = readMap(in);
+            objectMethodCase.put(object, methods);
+            objectToMethods.put(object, methods.keySet());
+        }
+        Map<String, String> sysFunctionCase = readMap(in);
+        Set<String> keywords = new HashSet<>(readStrings(in));
+        List<String> operatorSymbolsWithSpaces = readStrings(in);
+        Set<String> keywordOpsWithSpaces = new HashSet<>(readStrings(in));
+        return new SpecSnapshot(caseMap, objectToMethods, objectMethodCase, sysFunctionCase.keySet(), sysFunctionCase,
+                keywords, operatorSymbolsWithSpaces, keywordOpsWithSpaces);
+    }
+
+    private static void writeMap(DataOutputStream out, Map<String, String> map) throws IOException {
+        Map<String, String> sorted = new TreeMap<>(map);
+        out.writeInt(sorted.size());
+        for (Map.Entry<String, String> e : sorted.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeUTF(e.getValue());
+        }
+    }
+
+    private static Map<String, String> readMap(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        Map<String, String> map = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            map.put(in.readUTF(), in.readUTF());
+        }
+        return map;
+    }
+
+    private static void writeStrings(DataOutputStream out, Collection<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(in.readUTF());
+        }
+        return values;
+    }
+}
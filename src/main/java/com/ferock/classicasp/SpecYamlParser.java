@@ -0,0 +1,145 @@
+package com.ferock.classicasp;
+
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * keywords.yaml 的解析
+ * 运行时只在编译后的 keywords.spec 缺失或过期时使用；构建时由 SpecCompiler 调用。
+ */
+final class SpecYamlParser {
+
+    private SpecYamlParser() {}
+
+    /**
+     * @param in YAML 内容
+     * @return 解析得到的快照
+     * @throws IllegalArgumentException YAML 根节点不是映射
+     */
+    static SpecSnapshot parse(InputStream in) {
+        Map<String, String> caseMap = new HashMap<>();
+        Map<String, Set<String>> objectToMethods = new HashMap<>();
+        Map<String, Map<String, String>> objectMethodCase = new HashMap<>();
+        Set<String> sysFunctions = new HashSet<>();
+        Map<String, String> sysFunctionCase = new HashMap<>();
+        Set<String> keywords = new HashSet<>();
+        List<String> operatorSymbolsWithSpaces = new ArrayList<>();
+        Set<String> keywordOpsWithSpaces = new HashSet<>();
+
+        Yaml yaml = new Yaml();
+        Object data = yaml.load(in);
+        if (!(data instanceof Map)) throw new IllegalArgumentException("YAML root is not a map");
+        Map<?,?> root = (Map<?,?>) data;
+
+        // case_map
+        Object cm = root.get("case_map");
+        if (cm instanceof Map) {
+            Map<?,?> m = (Map<?,?>) cm;
+            for (Map.Entry<?,?> e : m.entrySet()) {
+                if (e.getKey() != null && e.getValue() != null) {
+                    caseMap.put(String.valueOf(e.getKey()).toLowerCase(), String.valueOf(e.getValue()));
+                }
+            }
+        }
+
+        // objects.methods
+        Object objects = root.get("objects");
+        if (objects instanceof Map) {
+            Map<?,?> objMap = (Map<?,?>) objects;
+            for (Map.Entry<?,?> e : objMap.entrySet()) {
+                String objectName = String.valueOf(e.getKey());
+                Object def = e.getValue();
+                if (def instanceof Map) {
+                    Object methods = ((Map<?,?>) def).get("methods");
+                    Set<String> methodSet = new HashSet<>();
+                    Map<String, String> methodCase = new HashMap<>();
+                    if (methods instanceof List) {
+                        for (Object m : (List<?>) methods) {
+                            if (m != null) {
+                                String proper = String.valueOf(m);
+                                String lower = proper.toLowerCase();
+                                methodSet.add(lower);
+                                methodCase.put(lower, proper);
+                            }
+                        }
+                    }
+                    objectToMethods.put(objectName.toLowerCase(), methodSet);
+                    objectMethodCase.put(objectName.toLowerCase(), methodCase);
+                }
+            }
+        }
+
+        // keywords: 聚合所有类别
+        Object kroot = root.get("keywords");
+        if (kroot instanceof Map) {
+            Map<?,?> km = (Map<?,?>) kroot;
+            for (Object v : km.values()) {
+                if (v instanceof List) {
+                    for (Object kw : (List<?>) v) {
+                        if (kw != null) keywords.add(String.valueOf(kw).toLowerCase());
+                    }
+                }
+            }
+        }
+
+        // sys_functions
+        Object sf = root.get("sys_functions");
+        if (sf instanceof List) {
+            for (Object fn : (List<?>) sf) {
+                if (fn != null) {
+                    String proper = String.valueOf(fn);
+                    String lower = proper.toLowerCase();
+                    sysFunctions.add(lower);
+                    sysFunctionCase.put(lower, proper);
+                }
+            }
+        }
+
+        // formatting: operators_with_spaces / keywords_with_spaces
+        Object formatting = root.get("formatting");
+        if (formatting instanceof Map) {
+            Map<?,?> fmt = (Map<?,?>) formatting;
+            // collect operators map for symbols
+            Map<String, Object> operators = new HashMap<>();
+            Object ops = root.get("operators");
+            if (ops instanceof Map) {
+                for (Map.Entry<?,?> e : ((Map<?,?>) ops).entrySet()) {
+                    operators.put(String.valueOf(e.getKey()), e.getValue());
+                }
+            }
+            // operators_with_spaces: list of group keys
+            Object ows = fmt.get("operators_with_spaces");
+            if (ows instanceof List) {
+                for (Object g : (List<?>) ows) {
+                    String group = String.valueOf(g);
+                    Object val = operators.get(group);
+                    if (val instanceof Map) {
+                        // map of TOKEN->symbol
+                        for (Object sym : ((Map<?,?>) val).values()) {
+                            if (sym != null) operatorSymbolsWithSpaces.add(String.valueOf(sym));
+                        }
+                    } else if (val instanceof List) {
+                        // list of keywords (ignore here)
+                    }
+                }
+            }
+            // keywords_with_spaces
+            Object kws = fmt.get("keywords_with_spaces");
+            if (kws instanceof List) {
+                for (Object kw : (List<?>) kws) {
+                    if (kw != null) keywordOpsWithSpaces.add(String.valueOf(kw).toLowerCase());
+                }
+            }
+        }
+
+        return new SpecSnapshot(caseMap, objectToMethods, objectMethodCase, sysFunctions, sysFunctionCase,
+                keywords, operatorSymbolsWithSpaces, keywordOpsWithSpaces);
+    }
+}
@@ -0,0 +1,130 @@
+package com.ferock.classicasp;
+
+import com.intellij.lexer.Lexer;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.util.text.CharSequenceSubSequence;
+
+import java.util.Arrays;
+
+/**
+ * 紧凑的 token 序列（struct-of-arrays）
+ * 用并行的 int[] 起止偏移和 short[] 类型索引（IElementType.getIndex()）代替逐个 token 的对象，
+ * token 文本是原始缓冲区上的视图而非拷贝。高亮与验证可共享同一份 token 数组。
+ */
+public final class TokenStream {
+
+    private final CharSequence buffer;
+    private final int[] starts;
+    private final int[] ends;
+    private final short[] types;
+    private final int size;
+
+    private TokenStream(CharSequence buffer, int[] starts, int[] ends, short[] types, int size) {
+        this.buffer = buffer;
+        this.starts = starts;
+        this.ends = ends;
+        this.types = types;
+        this.size = size;
+    }
+
+    /**
+     * 用词法器对整个缓冲区做一次词法分析
+     * @param lexer 词法器
+     * @param buffer 文本
+     * @return token 序列
+     */
+    public static TokenStream lex(Lexer lexer, CharSequence buffer) {
+        return lex(lexer, buffer, null);
+    }
+
+    /**
+     * 在耗时预算内对缓冲区做词法分析
+     * 预算用完时停止，返回已得到的前缀 token；被取消时抛出 ProcessCanceledException。
+     * @param lexer 词法器
+     * @param buffer 文本
+     * @param budget 耗时预算，为 null 时不限制
+     * @return token 序列
+     */
+    public static TokenStream lex(Lexer lexer, CharSequence buffer, SafetyLimits.Budget budget) {
+        int capacity = Math.max(16, buffer.length() / 4);
+        int[] starts = new int[capacity];
+        int[] ends = new int[capacity];
+        short[] types = new short[capacity];
+        int size = 0;
+
+        lexer.start(buffer, 0, buffer.length(), 0);
+        IElementType type;
+        while ((type = lexer.getTokenType()) != null) {
+            if (budget != null && budget.exhausted()) {
+                break;
+            }
+            if (size == starts.length) {
+                int grown = size + (size >> 1);
+                starts = Arrays.copyOf(starts, grown);
+                ends = Arrays.copyOf(ends, grown);
+                types = Arrays.copyOf(types, grown);
+            }
+            starts[size] = lexer.getTokenStart();
+            ends[size] = lexer.getTokenEnd();
+            types[size] = type.getIndex();
+            size++;
+            lexer.advance();
+        }
+
+        // 初始容量按文本长度估算，可能远大于实际 token 数；缓存前裁剪到实际大小
+        if (size < starts.length) {
+            starts = Arrays.copyOf(starts, size);
+            ends = Arrays.copyOf(ends, size);
+            types = Arrays.copyOf(types, size);
+        }
+        return new TokenStream(buffer, starts, ends, types, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public CharSequence getBuffer() {
+        return buffer;
+    }
+
+    public IElementType getType(int index) {
+        return IElementType.find(types[index]);
+    }
+
+    public int getStart(int index) {
+        return starts[index];
+    }
+
+    public int getEnd(int index) {
+        return ends[index];
+    }
+
+    /**
+     * @return token 文本（原始缓冲区上的视图，不复制字符）
+     */
+    public CharSequence getText(int index) {
+        return new CharSequenceSubSequence(buffer, starts[index], ends[index]);
+    }
+
+    /**
+     * 二分查找包含指定偏移的 token
+     * @param offset 偏移
+     * @return token 下标，偏移不在任何 token 内时返回 -1
+     */
+    public int indexAt(int offset) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (ends[mid] <= offset) {
+                low = mid + 1;
+            } else if (starts[mid] > offset) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+}
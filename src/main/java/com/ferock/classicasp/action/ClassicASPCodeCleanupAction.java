@@ -1,5 +1,6 @@
 package com.ferock.classicasp.action;
 
+import com.ferock.classicasp.LineDiff;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.CommonDataKeys;
@@ -34,8 +35,9 @@ public class ClassicASPCodeCleanupAction extends AnAction {
 
         // 如果文本有变化，则应用更改
         if (!originalText.equals(cleanedText)) {
+            // 只替换发生变化的行，保留其余区域的标记、折叠与高亮
             WriteCommandAction.runWriteCommandAction(project, () -> {
-                document.setText(cleanedText);
+                LineDiff.apply(document, cleanedText);
             });
         }
     }
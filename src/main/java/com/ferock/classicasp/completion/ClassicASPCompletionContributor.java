@@ -3,19 +3,28 @@ package com.ferock.classicasp.completion;
 import com.intellij.codeInsight.completion.*;
 import com.intellij.codeInsight.lookup.LookupElement;
 import com.intellij.codeInsight.lookup.LookupElementBuilder;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.patterns.PlatformPatterns;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.util.ProcessingContext;
 import org.jetbrains.annotations.NotNull;
-import com.ferock.classicasp.SpecRegistry;
 import com.ferock.classicasp.ASPSectionDetector;
+import com.ferock.classicasp.AspSectionIndex;
+import com.ferock.classicasp.index.AspIncludeGraph;
+import com.ferock.classicasp.index.VBScriptSymbol;
+import com.ferock.classicasp.index.VBScriptSymbolIndex;
 
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class ClassicASPCompletionContributor extends CompletionContributor {
 
+    // 候选的展示顺序：按查找字符串大小写不敏感排序
+    static final Comparator<LookupElement> LOOKUP_ORDER =
+            Comparator.comparing(LookupElement::getLookupString, String.CASE_INSENSITIVE_ORDER);
+
     public ClassicASPCompletionContributor() {
         // 不限定语言，避免无解析树/语言标记时无法触发
         extend(CompletionType.BASIC,
@@ -24,13 +33,17 @@ public class ClassicASPCompletionContributor extends CompletionContributor {
     }
 
     private static class ClassicASPCompletionProvider extends CompletionProvider<CompletionParameters> {
+        // 每次补全从项目索引加入的符号名上限
+        private static final int MAX_PROJECT_SYMBOLS = 500;
+
         @Override
         protected void addCompletions(@NotNull CompletionParameters parameters,
                                       @NotNull ProcessingContext context,
                                       @NotNull CompletionResultSet result) {
             PsiFile file = parameters.getOriginalFile();
             int offset = parameters.getOffset();
-            String text = file.getText();
+            Document document = parameters.getEditor().getDocument();
+            CharSequence text = document.getImmutableCharSequence();
             String fileName = file.getName();
 
             log("[ASP][CC] enter file=" + fileName + ", offset=" + offset
@@ -44,90 +57,76 @@ public class ClassicASPCompletionContributor extends CompletionContributor {
                 return;
             }
 
-            boolean inAsp = ASPSectionDetector.containsASPCode(text) && ASPSectionDetector.isInASPSection(text, offset);
+            // 区域索引按文档修改时间戳缓存，连续补全无需重新扫描
+            AspSectionIndex sectionIndex = ASPSectionDetector.getIndex(document);
+            boolean inAsp = sectionIndex.isInASPSection(offset);
             if (!inAsp) {
                 log("[ASP][CC] skip: not in ASP section");
                 return;
             }
 
             String objectCtx = detectObjectBeforeDot(text, offset);
-            List<LookupElement> suggestions = new ArrayList<>();
+            String prefix = extractTypedPrefix(text, offset);
+            SpecLookupElements spec = SpecLookupElements.get();
+            List<LookupElement> suggestions;
 
             if (objectCtx != null) {
-                Map<String, Map<String, String>> omc = SpecRegistry.getObjectMethodCase();
-                Map<String, String> methodCase = omc.get(objectCtx.toLowerCase(Locale.ROOT));
-                if (methodCase != null && !methodCase.isEmpty()) {
-                    for (Map.Entry<String, String> e : methodCase.entrySet()) {
-                        String proper = e.getValue();
-                        suggestions.add(withParens(LookupElementBuilder.create(proper)
-                                .withTypeText("方法")));
-                    }
-                }
+                // 对象方法候选已预先排序
+                suggestions = spec.getObjectMethods(objectCtx.toLowerCase(Locale.ROOT));
                 log("[ASP][CC] ctx object=" + objectCtx + ", proposals=" + suggestions.size());
             } else {
-                // 先加入本页定义的变量/方法/属性
-                LocalSymbols local = collectLocalSymbols(text);
+                List<LookupElement> symbols = new ArrayList<>();
+                // 先加入本页定义的变量/方法/属性（来自符号索引）
+                LocalSymbols local = collectLocalSymbols(file, text);
                 int localAdded = 0;
                 for (String v : local.variables) {
-                    suggestions.add(LookupElementBuilder.create(v).withTypeText("变量(本页)"));
+                    symbols.add(LookupElementBuilder.create(v).withTypeText("变量(本页)"));
                     localAdded++;
                 }
                 for (String f : local.functions) {
-                    suggestions.add(withParens(LookupElementBuilder.create(f).withTypeText("方法(本页)")));
+                    symbols.add(SpecLookupElements.withParens(LookupElementBuilder.create(f).withTypeText("方法(本页)")));
                     localAdded++;
                 }
                 for (String p : local.properties) {
-                    suggestions.add(LookupElementBuilder.create(p).withTypeText("属性(本页)"));
+                    symbols.add(LookupElementBuilder.create(p).withTypeText("属性(本页)"));
                     localAdded++;
                 }
-                log("[ASP][CC] 本页符号: 变量=" + local.variables.size() + ", 方法=" + local.functions.size() + ", 属性=" + local.properties.size() + ", 已加入=" + localAdded);
+                for (String c : local.classes) {
+                    symbols.add(LookupElementBuilder.create(c).withTypeText("类(本页)"));
+                    localAdded++;
+                }
+                log("[ASP][CC] 本页符号: 变量=" + local.variables.size() + ", 方法=" + local.functions.size() + ", 属性=" + local.properties.size() + ", 类=" + local.classes.size() + ", 已加入=" + localAdded);
 
-                // YAML 驱动（关键词/内置函数/对象）
+                // 与本地符号重名的关键字/内置函数不再提示（大小写不敏感）
                 Set<String> seen = new HashSet<>();
-                // 避免与本地符号重名的重复（大小写不敏感）
                 for (String v : local.variables) seen.add(v.toLowerCase(Locale.ROOT));
                 for (String f : local.functions) seen.add(f.toLowerCase(Locale.ROOT));
                 for (String p : local.properties) seen.add(p.toLowerCase(Locale.ROOT));
+                for (String c : local.classes) seen.add(c.toLowerCase(Locale.ROOT));
 
-                Map<String, String> caseMap = SpecRegistry.getCaseMap();
-                int kwCount = 0;
-                for (Map.Entry<String, String> e : caseMap.entrySet()) {
-                    String proper = e.getValue();
-                    String key = proper.toLowerCase(Locale.ROOT);
-                    if (seen.add(key)) {
-                        suggestions.add(LookupElementBuilder.create(proper).withTypeText("关键字/函数"));
-                        kwCount++;
-                    }
-                }
+                // #include 引入的文件中的全局定义（包含闭包已缓存）
+                int includedCount = addIncludedSymbols(file, seen, symbols);
 
-                Map<String, String> sysFnCase = SpecRegistry.getSysFunctionCase();
-                int fnCount = 0;
-                for (Map.Entry<String, String> e : sysFnCase.entrySet()) {
-                    String proper = e.getValue();
-                    String key = proper.toLowerCase(Locale.ROOT);
-                    if (seen.add(key)) {
-                        suggestions.add(withParens(LookupElementBuilder.create(proper).withTypeText("内置函数")));
-                        fnCount++;
-                    }
-                }
+                // 项目中其它 .asp/.inc 文件的全局定义（按已输入前缀从索引查询）
+                int projectCount = addProjectSymbols(file, prefix, seen, symbols);
 
-                Map<String, Map<String, String>> omc = SpecRegistry.getObjectMethodCase();
-                int objCount = 0;
-                for (String objLower : omc.keySet()) {
-                    if (objLower == null || objLower.isEmpty()) continue;
-                    String properObj = Character.toUpperCase(objLower.charAt(0)) + objLower.substring(1);
-                    if (seen.add("obj:" + objLower)) {
-                        suggestions.add(LookupElementBuilder.create(properObj).withTypeText("对象"));
-                        objCount++;
+                // YAML 驱动（关键词/内置函数/对象）：从前缀树取出匹配前缀的预建候选，已排序
+                List<LookupElement> specMatches = new ArrayList<>();
+                int[] counts = new int[3];
+                spec.candidates.forEachWithPrefix(prefix, candidate -> {
+                    if (candidate.shadowKey == null || !seen.contains(candidate.shadowKey)) {
+                        specMatches.add(candidate.element);
+                        counts[candidate.category]++;
                     }
-                }
+                });
 
-                log("[ASP][CC] kw/sysfn/obj proposals=" + kwCount + "/" + fnCount + "/" + objCount + ", total=" + suggestions.size());
+                symbols.sort(LOOKUP_ORDER);
+                suggestions = mergeSorted(symbols, specMatches);
+                log("[ASP][CC] include/project/kw/sysfn/obj proposals=" + includedCount + "/" + projectCount + "/"
+                        + counts[SpecLookupElements.KEYWORD] + "/" + counts[SpecLookupElements.FUNCTION] + "/"
+                        + counts[SpecLookupElements.OBJECT] + ", total=" + suggestions.size());
             }
 
-            suggestions.sort(Comparator.comparing(LookupElement::getLookupString, String.CASE_INSENSITIVE_ORDER));
-
-            String prefix = extractTypedPrefix(text, offset);
             CompletionResultSet base = result.caseInsensitive();
             CompletionResultSet filtered = prefix.isEmpty() ? base : base.withPrefixMatcher(prefix);
             filtered.addAllElements(suggestions);
@@ -135,10 +134,29 @@ public class ClassicASPCompletionContributor extends CompletionContributor {
             log("[ASP][CC] done prefix='" + prefix + "', proposals=" + suggestions.size());
         }
 
-        private String detectObjectBeforeDot(String text, int offset) {
+        /**
+         * 合并两个已按 LOOKUP_ORDER 排序的列表（相等时 first 在前）
+         */
+        private static List<LookupElement> mergeSorted(List<LookupElement> first, List<LookupElement> second) {
+            List<LookupElement> merged = new ArrayList<>(first.size() + second.size());
+            int i = 0;
+            int j = 0;
+            while (i < first.size() && j < second.size()) {
+                if (LOOKUP_ORDER.compare(first.get(i), second.get(j)) <= 0) {
+                    merged.add(first.get(i++));
+                } else {
+                    merged.add(second.get(j++));
+                }
+            }
+            merged.addAll(first.subList(i, first.size()));
+            merged.addAll(second.subList(j, second.size()));
+            return merged;
+        }
+
+        private String detectObjectBeforeDot(CharSequence text, int offset) {
             if (text == null || offset <= 0) return null;
             int start = Math.max(0, offset - 64);
-            String left = text.substring(start, Math.min(text.length(), offset));
+            CharSequence left = text.subSequence(start, Math.min(text.length(), offset));
             java.util.regex.Matcher m = java.util.regex.Pattern.compile("([A-Za-z][A-Za-z0-9_]*)\\s*\\.\\s*[$A-Za-z0-9_]*$").matcher(left);
             if (m.find()) {
                 return m.group(1);
@@ -146,7 +164,7 @@ public class ClassicASPCompletionContributor extends CompletionContributor {
             return null;
         }
 
-        private String extractTypedPrefix(String text, int offset) {
+        private String extractTypedPrefix(CharSequence text, int offset) {
             if (text == null || offset <= 0) return "";
             int i = offset - 1;
             while (i >= 0) {
@@ -155,7 +173,7 @@ public class ClassicASPCompletionContributor extends CompletionContributor {
                     i--;
                 } else break;
             }
-            return text.substring(i + 1, offset);
+            return text.subSequence(i + 1, offset).toString();
         }
 
         private static void log(String msg) {
@@ -163,73 +181,114 @@ public class ClassicASPCompletionContributor extends CompletionContributor {
             System.out.println(msg);
         }
 
-        private static LookupElementBuilder withParens(LookupElementBuilder builder) {
-            return builder.withInsertHandler((context, item) -> {
-                int tail = context.getTailOffset();
-                CharSequence seq = context.getDocument().getCharsSequence();
-                if (!(tail < seq.length() && seq.charAt(tail) == '(')) {
-                    context.getDocument().insertString(tail, "()");
-                    context.getEditor().getCaretModel().moveToOffset(tail + 1);
+        // 收集当前页面（仅 ASP 区域）定义的变量、方法、属性、类
+        private LocalSymbols collectLocalSymbols(PsiFile file, CharSequence text) {
+            LocalSymbols ls = new LocalSymbols();
+            VirtualFile virtualFile = file.getVirtualFile();
+            Map<String, List<VBScriptSymbol>> symbols = VBScriptSymbolIndex.getFileSymbols(file.getProject(), virtualFile, text);
+            for (List<VBScriptSymbol> definitions : symbols.values()) {
+                for (VBScriptSymbol symbol : definitions) {
+                    switch (symbol.kind) {
+                        case FUNCTION:
+                        case SUB:
+                            ls.functions.add(symbol.name);
+                            break;
+                        case PROPERTY:
+                            ls.properties.add(symbol.name);
+                            break;
+                        case CLASS:
+                            ls.classes.add(symbol.name);
+                            break;
+                        default:
+                            ls.variables.add(symbol.name);
+                            break;
+                    }
                 }
-            });
+            }
+            return ls;
         }
 
-        // 收集当前页面（仅 ASP 区域）定义的变量、方法、属性
-        private LocalSymbols collectLocalSymbols(String text) {
-            LocalSymbols ls = new LocalSymbols();
-            int[][] sections = ASPSectionDetector.getASPSections(text);
-            if (sections == null || sections.length == 0) return ls;
-
-            // 正则
-            Pattern dimLine = Pattern.compile("(?im)\\bDim\\b\\s+([^'\\r\\n]+)");
-            Pattern classField = Pattern.compile("(?im)\\b(Public|Private)\\b\\s+([A-Za-z_][A-Za-z0-9_]*)\\b(?!\\s*\\()");
-            Pattern funcDecl = Pattern.compile("(?im)\\b(Function|Sub)\\s+([A-Za-z_][A-Za-z0-9_]*)\\b");
-            Pattern propDecl = Pattern.compile("(?im)\\bProperty\\s+(Get|Let|Set)\\s+([A-Za-z_][A-Za-z0-9_]*)\\b");
-
-            for (int[] sec : sections) {
-                int start = Math.max(0, sec[0]);
-                int end = Math.min(text.length(), sec[1]);
-                if (start >= end) continue;
-                String asp = text.substring(start, end);
-
-                // Dim a, b, c
-                Matcher mDim = dimLine.matcher(asp);
-                while (mDim.find()) {
-                    String list = mDim.group(1);
-                    if (list == null) continue;
-                    for (String raw : list.split(",")) {
-                        String name = raw.trim();
-                        if (name.matches("[A-Za-z_][A-Za-z0-9_]*")) {
-                            ls.variables.add(name);
+        /**
+         * 加入被当前文件直接或间接 #include 的文件中的全局定义（近的包含优先）
+         * @return 加入的数量
+         */
+        private int addIncludedSymbols(PsiFile file, Set<String> seen, List<LookupElement> suggestions) {
+            Project project = file.getProject();
+            int before = suggestions.size();
+            for (VirtualFile included : AspIncludeGraph.getIncludeClosure(file)) {
+                for (Map.Entry<String, List<VBScriptSymbol>> entry : VBScriptSymbolIndex.getFileSymbols(project, included).entrySet()) {
+                    for (VBScriptSymbol symbol : entry.getValue()) {
+                        if (symbol.isGlobal() && seen.add(entry.getKey())) {
+                            LookupElementBuilder builder = LookupElementBuilder.create(symbol.name)
+                                    .withTypeText(symbolTypeText(symbol) + "(" + included.getName() + ")");
+                            suggestions.add(symbol.isCallable() ? SpecLookupElements.withParens(builder) : builder);
+                            break;
                         }
                     }
                 }
-                // Public/Private foo  (避免 Public Function ... 被匹配，通过(?!\s*\() 排除方法)
-                Matcher mField = classField.matcher(asp);
-                while (mField.find()) {
-                    String name = mField.group(2);
-                    if (name != null) ls.variables.add(name);
-                }
-                // Function/Sub 名称
-                Matcher mFn = funcDecl.matcher(asp);
-                while (mFn.find()) {
-                    String name = mFn.group(2);
-                    if (name != null) ls.functions.add(name);
-                }
-                // Property Get/Let/Set 名称
-                Matcher mProp = propDecl.matcher(asp);
-                while (mProp.find()) {
-                    String name = mProp.group(2);
-                    if (name != null) ls.properties.add(name);
+            }
+            return suggestions.size() - before;
+        }
+
+        /**
+         * 从符号索引加入其它文件中以 prefix 开头的全局定义
+         * 前缀为空时不查询，避免在大型站点上列出全部符号。
+         * @return 加入的数量
+         */
+        private int addProjectSymbols(PsiFile file, String prefix, Set<String> seen, List<LookupElement> suggestions) {
+            if (prefix.isEmpty()) return 0;
+            Project project = file.getProject();
+            VirtualFile current = file.getVirtualFile();
+            GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+            String prefixLower = prefix.toLowerCase(Locale.ROOT);
+
+            List<String> names = new ArrayList<>();
+            VBScriptSymbolIndex.processNames(project, scope, name -> {
+                if (name.startsWith(prefixLower) && !seen.contains(name)) {
+                    names.add(name);
                 }
+                return names.size() < MAX_PROJECT_SYMBOLS;
+            });
+
+            int before = suggestions.size();
+            for (String name : names) {
+                VBScriptSymbolIndex.processDefinitions(project, name, scope, (candidate, definitions) -> {
+                    if (candidate.equals(current)) return true;
+                    for (VBScriptSymbol symbol : definitions) {
+                        if (symbol.isGlobal() && seen.add(name)) {
+                            LookupElementBuilder builder = LookupElementBuilder.create(symbol.name)
+                                    .withTypeText(symbolTypeText(symbol) + "(" + candidate.getName() + ")");
+                            suggestions.add(symbol.isCallable() ? SpecLookupElements.withParens(builder) : builder);
+                            return false;
+                        }
+                    }
+                    return true;
+                });
+            }
+            return suggestions.size() - before;
+        }
+
+        private static String symbolTypeText(VBScriptSymbol symbol) {
+            switch (symbol.kind) {
+                case FUNCTION:
+                case SUB:
+                    return "方法";
+                case PROPERTY:
+                    return "属性";
+                case CLASS:
+                    return "类";
+                case CONST:
+                    return "常量";
+                default:
+                    return "变量";
             }
-            return ls;
         }
 
         private static class LocalSymbols {
             final Set<String> variables = new LinkedHashSet<>();
             final Set<String> functions = new LinkedHashSet<>();
             final Set<String> properties = new LinkedHashSet<>();
+            final Set<String> classes = new LinkedHashSet<>();
         }
     }
-}
\ No newline at end of file
+}
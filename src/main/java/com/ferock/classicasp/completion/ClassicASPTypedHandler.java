@@ -21,10 +21,10 @@ public class ClassicASPTypedHandler extends TypedHandlerDelegate {
             return Result.CONTINUE;
         }
 
-        CharSequence text = editor.getDocument().getCharsSequence();
         int offset = editor.getCaretModel().getOffset();
 
-        boolean inAsp = ASPSectionDetector.containsASPCode(text.toString()) && ASPSectionDetector.isInASPSection(text.toString(), offset);
+        // 区域索引按文档修改时间戳缓存，无需每次按键都复制并扫描全文
+        boolean inAsp = ASPSectionDetector.getIndex(editor.getDocument()).isInASPSection(offset);
         if (!inAsp) {
             log("[ASP][Typed] skip (not in ASP): offset=" + offset);
             return Result.CONTINUE;
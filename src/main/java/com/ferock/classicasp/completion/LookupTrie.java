@@ -0,0 +1,121 @@
+package com.ferock.classicasp.completion;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * 大小写不敏感的前缀树
+ * 构建后只读：子节点按 String.CASE_INSENSITIVE_ORDER 的字符顺序排列，
+ * 因此按前缀遍历得到的值已按键排序，无需再排序。
+ * @param <T> 值类型
+ */
+final class LookupTrie<T> {
+
+    /**
+     * 与 String.CASE_INSENSITIVE_ORDER 一致的单字符顺序（比较先转大写再转小写后的字符）
+     */
+    private static final Comparator<Character> CHAR_ORDER =
+            Comparator.comparing(c -> Character.toLowerCase(Character.toUpperCase(c)));
+
+    private final Node<T> root;
+
+    private LookupTrie(Node<T> root) {
+        this.root = root;
+    }
+
+    /**
+     * 遍历键以 prefix 开头（大小写不敏感）的所有值，按键排序；同键的值保持加入顺序
+     * @param prefix 前缀，空串表示全部
+     * @param consumer 值的处理
+     */
+    void forEachWithPrefix(CharSequence prefix, Consumer<? super T> consumer) {
+        Node<T> node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(Character.toLowerCase(prefix.charAt(i)));
+        }
+        if (node != null) {
+            node.forEach(consumer);
+        }
+    }
+
+    /**
+     * @param prefix 前缀
+     * @return 键以 prefix 开头的值（已排序）
+     */
+    List<T> withPrefix(CharSequence prefix) {
+        List<T> result = new ArrayList<>();
+        forEachWithPrefix(prefix, result::add);
+        return result;
+    }
+
+    private static final class Node<T> {
+        private final char[] labels;
+        private final Node<T>[] children;
+        private final Object[] values;
+
+        @SuppressWarnings("unchecked")
+        private Node(char[] labels, Node<?>[] children, Object[] values) {
+            this.labels = labels;
+            this.children = (Node<T>[]) children;
+            this.values = values;
+        }
+
+        private Node<T> child(char lower) {
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i] == lower) return children[i];
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void forEach(Consumer<? super T> consumer) {
+            for (Object value : values) {
+                consumer.accept((T) value);
+            }
+            for (Node<T> child : children) {
+                child.forEach(consumer);
+            }
+        }
+    }
+
+    /**
+     * 构建器：加入全部键值后调用 build 冻结为只读前缀树
+     */
+    static final class Builder<T> {
+        private final MutableNode root = new MutableNode();
+
+        Builder<T> add(String key, T value) {
+            MutableNode node = root;
+            for (int i = 0; i < key.length(); i++) {
+                node = node.children.computeIfAbsent(Character.toLowerCase(key.charAt(i)), c -> new MutableNode());
+            }
+            node.values.add(value);
+            return this;
+        }
+
+        LookupTrie<T> build() {
+            return new LookupTrie<>(root.freeze());
+        }
+
+        private static final class MutableNode {
+            private final Map<Character, MutableNode> children = new TreeMap<>(CHAR_ORDER);
+            private final List<Object> values = new ArrayList<>(1);
+
+            private <T> Node<T> freeze() {
+                char[] labels = new char[children.size()];
+                Node<?>[] frozen = new Node<?>[children.size()];
+                int i = 0;
+                for (Map.Entry<Character, MutableNode> entry : children.entrySet()) {
+                    labels[i] = entry.getKey();
+                    frozen[i] = entry.getValue().freeze();
+                    i++;
+                }
+                return new Node<>(labels, frozen, values.toArray());
+            }
+        }
+    }
+}
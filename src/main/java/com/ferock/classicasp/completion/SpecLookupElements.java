@@ -0,0 +1,134 @@
+package com.ferock.classicasp.completion;
+
+import com.ferock.classicasp.SpecRegistry;
+import com.intellij.codeInsight.lookup.LookupElement;
+import com.intellij.codeInsight.lookup.LookupElementBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 由 SpecRegistry 预先构建的补全候选
+ * 关键字、内置函数与对象的 LookupElement 只创建一次并存入前缀树，
+ * 每次补全只取出匹配已输入前缀的元素（已排序）；对象方法按对象预先排序。
+ * YAML 表被替换（引用变化）时自动重建。
+ */
+final class SpecLookupElements {
+
+    static final int KEYWORD = 0;
+    static final int FUNCTION = 1;
+    static final int OBJECT = 2;
+
+    /**
+     * 前缀树中的候选
+     */
+    static final class Candidate {
+        final LookupElement element;
+        final int category;
+        // 与本页/包含/项目符号同名时隐藏（小写名称）；对象候选为 null，不会被隐藏
+        final String shadowKey;
+
+        private Candidate(LookupElement element, int category, String shadowKey) {
+            this.element = element;
+            this.category = category;
+            this.shadowKey = shadowKey;
+        }
+    }
+
+    private static volatile SpecLookupElements current;
+
+    private final Map<String, String> caseSource;
+    private final Map<String, String> sysFunctionSource;
+    private final Map<String, Map<String, String>> objectMethodSource;
+
+    final LookupTrie<Candidate> candidates;
+    private final Map<String, List<LookupElement>> objectMethods;
+
+    private SpecLookupElements(Map<String, String> caseSource, Map<String, String> sysFunctionSource,
+                               Map<String, Map<String, String>> objectMethodSource) {
+        this.caseSource = caseSource;
+        this.sysFunctionSource = sysFunctionSource;
+        this.objectMethodSource = objectMethodSource;
+
+        LookupTrie.Builder<Candidate> builder = new LookupTrie.Builder<>();
+        // 关键字优先，同名的内置函数不再重复
+        Set<String> seen = new HashSet<>();
+        for (String proper : caseSource.values()) {
+            String key = proper.toLowerCase(Locale.ROOT);
+            if (seen.add(key)) {
+                builder.add(proper, new Candidate(LookupElementBuilder.create(proper).withTypeText("关键字/函数"), KEYWORD, key));
+            }
+        }
+        for (String proper : sysFunctionSource.values()) {
+            String key = proper.toLowerCase(Locale.ROOT);
+            if (seen.add(key)) {
+                builder.add(proper, new Candidate(withParens(LookupElementBuilder.create(proper).withTypeText("内置函数")), FUNCTION, key));
+            }
+        }
+
+        Map<String, List<LookupElement>> methods = new HashMap<>();
+        for (Map.Entry<String, Map<String, String>> entry : objectMethodSource.entrySet()) {
+            String objLower = entry.getKey();
+            if (objLower == null || objLower.isEmpty()) continue;
+            String properObj = Character.toUpperCase(objLower.charAt(0)) + objLower.substring(1);
+            builder.add(properObj, new Candidate(LookupElementBuilder.create(properObj).withTypeText("对象"), OBJECT, null));
+
+            Map<String, String> methodCase = entry.getValue();
+            if (methodCase == null || methodCase.isEmpty()) continue;
+            List<LookupElement> elements = new ArrayList<>(methodCase.size());
+            for (String proper : methodCase.values()) {
+                elements.add(withParens(LookupElementBuilder.create(proper).withTypeText("方法")));
+            }
+            elements.sort(ClassicASPCompletionContributor.LOOKUP_ORDER);
+            methods.put(objLower, Collections.unmodifiableList(elements));
+        }
+
+        this.candidates = builder.build();
+        this.objectMethods = methods;
+    }
+
+    /**
+     * @return 与当前 SpecRegistry 表对应的候选（必要时重建）
+     */
+    static SpecLookupElements get() {
+        Map<String, String> caseMap = SpecRegistry.getCaseMap();
+        Map<String, String> sysFunctionCase = SpecRegistry.getSysFunctionCase();
+        Map<String, Map<String, String>> objectMethodCase = SpecRegistry.getObjectMethodCase();
+        SpecLookupElements c = current;
+        if (c == null || c.caseSource != caseMap || c.sysFunctionSource != sysFunctionCase
+                || c.objectMethodSource != objectMethodCase) {
+            c = new SpecLookupElements(caseMap, sysFunctionCase, objectMethodCase);
+            current = c;
+        }
+        return c;
+    }
+
+    /**
+     * @param objectLower 小写对象名
+     * @return 对象的方法候选（已排序），未知对象返回空列表
+     */
+    List<LookupElement> getObjectMethods(String objectLower) {
+        List<LookupElement> methods = objectMethods.get(objectLower);
+        return methods != null ? methods : Collections.emptyList();
+    }
+
+    /**
+     * 方法类候选：插入后补全括号并把光标放在括号内（后面已有括号时不重复）
+     */
+    static LookupElementBuilder withParens(LookupElementBuilder builder) {
+        return builder.withInsertHandler((context, item) -> {
+            int tail = context.getTailOffset();
+            CharSequence seq = context.getDocument().getCharsSequence();
+            if (!(tail < seq.length() && seq.charAt(tail) == '(')) {
+                context.getDocument().insertString(tail, "()");
+                context.getEditor().getCaretModel().moveToOffset(tail + 1);
+            }
+        });
+    }
+}
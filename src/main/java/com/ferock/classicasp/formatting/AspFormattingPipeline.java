@@ -0,0 +1,564 @@
+package com.ferock.classicasp.formatting;
+
+import com.ferock.classicasp.AspSectionIndex;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.psi.codeStyle.CodeStyleSettings;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Classic ASP 格式化流水线
+ * 阶段：区域检测 -> 分词 -> 缩进 -> 大小写与运算符空格 -> 空行。
+ * 所有阶段共享同一份行模型（AspSectionIndex 的行偏移与 AspIndentProcessor.CodeLine），
+ * 在一次逐行遍历中完成；除区域检测与分词外，每个阶段都可在代码样式设置中单独关闭。
+ * 处理是流式的：只暂存连续的注释段与一行预读，没有文件大小上限。
+ */
+final class AspFormattingPipeline {
+
+    private static final Logger LOG = Logger.getInstance(AspFormattingPipeline.class);
+
+    // 需要前置空行的关键字
+    private static final String[] KEYWORDS_NEEDING_BLANK_LINE_BEFORE = {
+        "If", "For", "While", "Do", "Function", "Sub", "Select", "Property"
+    };
+
+    // 需要后置空行的关键字
+    private static final String[] KEYWORDS_NEEDING_BLANK_LINE_AFTER = {
+        "End If", "Next", "Wend", "Loop", "End Function", "End Sub", "End Select", "End Property"
+    };
+
+    private AspFormattingPipeline() {}
+
+    /**
+     * 各阶段开关
+     */
+    static final class Stages {
+        static final Stages ALL = new Stages(true, true, true, true);
+
+        final boolean indent;
+        final boolean keywordCase;
+        final boolean operatorSpacing;
+        final boolean blankLines;
+
+        Stages(boolean indent, boolean keywordCase, boolean operatorSpacing, boolean blankLines) {
+            this.indent = indent;
+            this.keywordCase = keywordCase;
+            this.operatorSpacing = operatorSpacing;
+            this.blankLines = blankLines;
+        }
+
+        /**
+         * 从代码样式设置读取开关；未创建 Classic ASP 设置时全部开启
+         */
+        static Stages from(CodeStyleSettings settings) {
+            ClassicASPLangCodeStyleSettingsProvider custom = settings == null ? null
+                    : settings.getCustomSettingsIfCreated(ClassicASPLangCodeStyleSettingsProvider.class);
+            if (custom == null) {
+                return ALL;
+            }
+            return new Stages(custom.INDENT_CODE_BLOCKS, custom.NORMALIZE_KEYWORD_CASE,
+                    custom.SPACE_AROUND_OPERATORS, custom.BLANK_LINES_AROUND_BLOCKS);
+        }
+
+        boolean any() {
+            return indent || keywordCase || operatorSpacing || blankLines;
+        }
+    }
+
+    /**
+     * 行区间的替换结果
+     */
+    static final class RangeEdit {
+        final int startLine;
+        final int endLine;
+        final String text;
+
+        RangeEdit(int startLine, int endLine, String text) {
+            this.startLine = startLine;
+            this.endLine = endLine;
+            this.text = text;
+        }
+    }
+
+    /**
+     * 格式化指定的行区间
+     * 缩进与 ASP 区域按整个文件计算，但只有扩展到顶层代码块边界后的区间会被重写。
+     * 逐行流式处理，不复制整份行数组，因此没有文件大小上限；格式化可被取消，但不设时限（半途的结果不能应用）。
+     * @param text 整个文件内容
+     * @param index text 的 ASP 区域索引
+     * @param startLine 起始行（含）
+     * @param endLine 结束行（含）
+     * @param stages 启用的阶段
+     * @return 区间的替换结果，无需格式化时返回 null
+     */
+    static RangeEdit run(CharSequence text, AspSectionIndex index, int startLine, int endLine, Stages stages) {
+        // 区域检测：没有 ASP 代码的文件不做任何处理
+        if (!index.hasASPSections() || !stages.any()) {
+            return null;
+        }
+
+        int last = index.getLineCount() - 1;
+        int from;
+        int to;
+        if (startLine <= 0 && endLine >= last) {
+            from = 0;
+            to = last;
+        } else {
+            int[] span = expandToBlockBoundaries(text, index, startLine, endLine);
+            from = span[0];
+            to = span[1];
+        }
+
+        // 文件末尾的空行会被整体折叠：区间之后只剩空白时扩展到最后一个非空行至文件末尾
+        if (to == last || isBlank(text, index.getLineEndOffset(to), text.length())) {
+            int lastContentLine = to;
+            while (lastContentLine > 0 && isBlankLine(text, index, lastContentLine)) {
+                lastContentLine--;
+            }
+            to = last;
+            from = Math.min(from, lastContentLine);
+        }
+
+        StringBuilder out = new StringBuilder();
+        Emitter emitter = new Emitter(out, from, to, stages);
+        AspIndentProcessor.LineAnalyzer analyzer = new AspIndentProcessor.LineAnalyzer(emitter);
+        for (int i = 0; i <= last && !emitter.isDone(); i++) {
+            ProgressManager.checkCanceled();
+            analyzer.accept(line(text, index, i));
+        }
+        analyzer.finish();
+        emitter.finish();
+        return new RangeEdit(from, to, out.toString());
+    }
+
+    /**
+     * 流式格式化整个输入：逐行读取、逐行写出，结果与对整个文件调用 run 相同
+     * 只暂存当前行、一行预读与连续的注释段，适用于很大的文件。
+     * 与 run 一样，不含 ASP 代码的输入原样输出：第一个 <% 之前的原文先暂存，读到 <% 后才送入流水线。
+     * @param in 输入
+     * @param out 输出
+     * @param stages 启用的阶段
+     */
+    static void format(Reader in, Appendable out, Stages stages) throws IOException {
+        char[] buffer = new char[8192];
+        int read;
+        if (!stages.any()) {
+            while ((read = in.read(buffer)) != -1) {
+                out.append(CharBuffer.wrap(buffer, 0, read));
+            }
+            return;
+        }
+        try {
+            Emitter emitter = new Emitter(out, 0, Integer.MAX_VALUE, stages);
+            AspIndentProcessor.LineAnalyzer analyzer = new AspIndentProcessor.LineAnalyzer(emitter);
+            StringBuilder line = new StringBuilder();
+            // 区域检测：读到第一个 <% 之前保留原文
+            StringBuilder held = new StringBuilder();
+            while ((read = in.read(buffer)) != -1) {
+                CharBuffer chunk = CharBuffer.wrap(buffer, 0, read);
+                if (held != null) {
+                    int from = Math.max(0, held.length() - 1);
+                    held.append(chunk);
+                    if (held.indexOf("<%", from) < 0) {
+                        continue;
+                    }
+                    chunk = CharBuffer.wrap(held);
+                    held = null;
+                }
+                feedLines(chunk, line, analyzer);
+            }
+            if (held != null) {
+                out.append(held);
+                return;
+            }
+            analyzer.accept(line.toString());
+            analyzer.finish();
+            emitter.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 按换行切分并逐行送入分析器；不完整的最后一行留在 line 中
+     */
+    private static void feedLines(CharSequence chars, StringBuilder line, AspIndentProcessor.LineAnalyzer analyzer) {
+        for (int i = 0; i < chars.length(); i++) {
+            char c = chars.charAt(i);
+            if (c == '\n') {
+                ProgressManager.checkCanceled();
+                analyzer.accept(line.toString());
+                line.setLength(0);
+            } else {
+                line.append(c);
+            }
+        }
+    }
+
+    /**
+     * 将行区间向外扩展到顶层代码块边界，使区间内的缩进只依赖区间本身
+     * 只向后分析到区间结束后第一个顶层行为止。
+     * @return {扩展后的起始行, 扩展后的结束行}
+     */
+    private static int[] expandToBlockBoundaries(CharSequence text, AspSectionIndex index, int startLine, int endLine) {
+        int last = index.getLineCount() - 1;
+        int start = Math.max(0, Math.min(startLine, last));
+        int end = Math.max(start, Math.min(endLine, last));
+
+        int[] span = {0, last};
+        AspIndentProcessor.LineAnalyzer analyzer = new AspIndentProcessor.LineAnalyzer(line -> { });
+        for (int i = 0; i <= last; i++) {
+            // 行首嵌套深度在读入该行之前即已确定，不受注释暂存的影响
+            int depth = analyzer.depth();
+            analyzer.accept(line(text, index, i));
+            if (i <= start && depth == 0) {
+                span[0] = i;
+            }
+            if (i > end && depth == 0) {
+                span[1] = i - 1;
+                break;
+            }
+        }
+        return span;
+    }
+
+    private static String line(CharSequence text, AspSectionIndex index, int lineNumber) {
+        return text.subSequence(index.getLineStartOffset(lineNumber), index.getLineEndOffset(lineNumber)).toString();
+    }
+
+    private static boolean isBlankLine(CharSequence text, AspSectionIndex index, int lineNumber) {
+        return isBlank(text, index.getLineStartOffset(lineNumber), index.getLineEndOffset(lineNumber));
+    }
+
+    /**
+     * 与 String.trim().isEmpty() 的判定一致
+     */
+    private static boolean isBlank(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 逐行执行各阶段并输出区间文本
+     * 接收 LineAnalyzer 按原顺序输出的行；区间前的行只参与 Select/Case 状态推进，
+     * 区间后的第一行只用于空行判断。区间结尾不带分隔换行，到达文件末尾时按整文件规则处理末尾换行。
+     */
+    private static final class Emitter implements Consumer<AspIndentProcessor.CodeLine> {
+        private final int from;
+        private final int to;
+        private final Stages stages;
+        private final BlankLineWriter out;
+        private final AspSectionIndex.LineTracker sections = new AspSectionIndex.LineTracker();
+
+        private int lineNumber = 0;
+        private boolean insideCaseBlock = false;
+        private boolean terminated = false;
+        private boolean done = false;
+        private String next = null;
+        private boolean nextAsp = false;
+        private int skippedHtmlLines = 0;
+        private int insertedBlankBefore = 0;
+
+        Emitter(Appendable out, int from, int to, Stages stages) {
+            this.from = from;
+            this.to = to;
+            this.stages = stages;
+            this.out = new BlankLineWriter(stages.blankLines, out);
+        }
+
+        boolean isDone() {
+            return done;
+        }
+
+        @Override
+        public void accept(AspIndentProcessor.CodeLine line) {
+            int i = lineNumber++;
+            if (i > to) {
+                // 下一行（区间外）仍参与空行判断
+                if (i == to + 1) {
+                    next = line.original;
+                    nextAsp = line.isAsp;
+                    done = true;
+                }
+                return;
+            }
+            boolean inSection = sections.next(line.original);
+            boolean inRange = i >= from;
+            if (i == from - 1) {
+                out.setPrevious(line.original);
+            }
+
+            // 分词 + 大小写 + 运算符空格（ASP 标签行保持原样）
+            if (inRange && inSection) {
+                String trimmed = line.content.trim();
+                if (!trimmed.startsWith("<%") && !trimmed.endsWith("%>")) {
+                    line.content = formatCode(line.content, stages);
+                }
+            }
+
+            // 非ASP区域：完全保留原始内容（含缩进与空白）
+            if (!line.isAsp) {
+                if (inRange) {
+                    out.line(line.content, false);
+                    skippedHtmlLines++;
+                }
+                terminated = false;
+                return;
+            }
+
+            String trimmedLower = line.content.trim().toLowerCase();
+            if (trimmedLower.startsWith("select ")) { insideCaseBlock = false; }
+            else if (trimmedLower.startsWith("case ")) { insideCaseBlock = true; }
+            else if (trimmedLower.equals("end select")) { insideCaseBlock = false; }
+
+            if (!inRange) {
+                return;
+            }
+
+            // 空行：代码块（Sub/Function/Property）开始前
+            if (stages.blankLines && line.needBlankBefore) {
+                out.line("", true);
+                insertedBlankBefore++;
+            }
+
+            // 缩进
+            String formatted = "";
+            if (!line.content.isEmpty()) {
+                String indent;
+                if (stages.indent) {
+                    int caseOffset = insideCaseBlock ? 1 : 0;
+                    indent = "    ".repeat(Math.max(0, line.indentLevel + caseOffset));
+                } else {
+                    indent = leadingWhitespace(line.original);
+                }
+                formatted = indent + line.content.trim();
+            }
+            out.line(formatted, true);
+            terminated = !line.content.isEmpty();
+        }
+
+        /**
+         * 输入结束或已读到区间后一行时调用
+         */
+        void finish() {
+            // 没有读到区间后一行说明区间到达了文件末尾
+            out.finish(next, nextAsp, !done, terminated);
+
+            if (skippedHtmlLines > 0) {
+                LOG.debug("Non-ASP lines kept: " + skippedHtmlLines);
+            }
+            if (insertedBlankBefore > 0) {
+                LOG.debug("Blank lines inserted before blocks: " + insertedBlankBefore);
+            }
+        }
+    }
+
+    /**
+     * 分词后对代码部分做大小写与运算符空格处理；字符串与注释保持原样
+     */
+    private static String formatCode(String line, Stages stages) {
+        if (line.trim().isEmpty()) return line;
+        if (line.trim().startsWith("'")) return line;
+        if (!stages.keywordCase && !stages.operatorSpacing) return line;
+
+        List<String> strings = new ArrayList<>();
+        String protectedLine = protectStrings(line, strings);
+
+        String codePart = protectedLine;
+        String commentPart = "";
+        int commentIdx = protectedLine.indexOf('\'');
+        if (commentIdx >= 0) {
+            codePart = protectedLine.substring(0, commentIdx);
+            commentPart = protectedLine.substring(commentIdx);
+        }
+
+        String formatted = codePart;
+        if (stages.keywordCase) {
+            formatted = KeywordCaseNormalizer.normalize(formatted);
+        }
+        if (stages.operatorSpacing) {
+            formatted = OperatorSpacer.apply(formatted);
+        }
+        formatted = restoreStrings(formatted, strings);
+        return formatted + commentPart;
+    }
+
+    private static String protectStrings(String line, List<String> strings) {
+        String result = line;
+        int stringIndex = 0;
+        int startQuote = result.indexOf('"');
+        while (startQuote != -1) {
+            int endQuote = result.indexOf('"', startQuote + 1);
+            if (endQuote != -1) {
+                String stringContent = result.substring(startQuote, endQuote + 1);
+                String placeholder = "___STRING_" + stringIndex + "___";
+                strings.add(stringContent);
+                result = result.substring(0, startQuote) + placeholder + result.substring(endQuote + 1);
+                stringIndex++;
+                startQuote = result.indexOf('"', startQuote + placeholder.length());
+            } else { break; }
+        }
+        return result;
+    }
+
+    private static String restoreStrings(String line, List<String> strings) {
+        String result = line;
+        for (int i = 0; i < strings.size(); i++) {
+            String placeholder = "___STRING_" + i + "___";
+            String stringContent = strings.get(i);
+            result = result.replace(placeholder, stringContent);
+        }
+        return result;
+    }
+
+    private static String leadingWhitespace(String line) {
+        int end = 0;
+        while (end < line.length() && Character.isWhitespace(line.charAt(end))) {
+            end++;
+        }
+        return line.substring(0, end);
+    }
+
+    /**
+     * 空行阶段：按行接收输出，向后看一行决定块开始前、块结束后是否补空行
+     * 块开始关键字所在行之前、块结束关键字所在行之后需要空行；
+     * 结束关键字的下一行若已在其前面补了空行，则不再重复添加。只处理 ASP 代码行。
+     * 换行延后写出，以便在文件末尾把连续换行折叠为一个。
+     */
+    private static final class BlankLineWriter {
+        private final boolean enabled;
+        private final Appendable out;
+
+        private int newlines;              // 尚未写出的换行
+        private String previous;           // 上一行（区间前一行或已写出的行）
+        private String pending;            // 等待下一行才能确定后置空行的行
+        private boolean pendingAsp;
+        private boolean pendingBlankBefore;
+
+        BlankLineWriter(boolean enabled, Appendable out) {
+            this.enabled = enabled;
+            this.out = out;
+        }
+
+        void setPrevious(String line) {
+            previous = line;
+        }
+
+        void line(String text, boolean asp) {
+            boolean blankBefore = needsBlankLineBefore(previous, text, asp);
+            if (pending != null) {
+                flush(text, blankBefore);
+                newlines++;  // 正常换行
+            }
+            pending = text;
+            pendingAsp = asp;
+            pendingBlankBefore = blankBefore;
+            previous = text;
+        }
+
+        /**
+         * @param next 区间后的下一行，没有时为 null
+         * @param nextAsp 下一行是否为 ASP 代码
+         * @param atEnd 区间是否到达文件末尾
+         * @param terminated 最后一行是否以换行结束
+         */
+        void finish(String next, boolean nextAsp, boolean atEnd, boolean terminated) {
+            if (pending != null) {
+                flush(next, next != null && needsBlankLineBefore(pending, next, nextAsp));
+                pending = null;
+            }
+            if (atEnd) {
+                if (terminated) {
+                    newlines++;
+                }
+                // 文件末尾的连续换行折叠为一个
+                newlines = Math.min(newlines, 1);
+            }
+            while (newlines > 0) {
+                append("\n");
+                newlines--;
+            }
+        }
+
+        private void flush(String next, boolean nextBlankBefore) {
+            if (pendingBlankBefore) {
+                newlines++;  // 添加空行
+            }
+            write(pending);
+            if (!nextBlankBefore && needsBlankLineAfter(pending, pendingAsp, next)) {
+                newlines++;  // 添加空行
+            }
+        }
+
+        private void write(String text) {
+            if (text.isEmpty()) {
+                return;
+            }
+            while (newlines > 0) {
+                append("\n");
+                newlines--;
+            }
+            append(text);
+        }
+
+        private void append(String text) {
+            try {
+                out.append(text);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private boolean needsBlankLineBefore(String prevLine, String line, boolean asp) {
+            // 检查是否是目标关键字开头的行，并且不是文件开头
+            if (!enabled || !asp || prevLine == null ||
+                !startsWithKeyword(line.trim(), KEYWORDS_NEEDING_BLANK_LINE_BEFORE)) {
+                return false;
+            }
+            String prev = prevLine.trim();
+            // 如果前一行不为空，且不是ASP标签或注释，则需要空行
+            return !prev.isEmpty() &&
+                   !prev.startsWith("<%") &&
+                   !prev.endsWith("%>") &&
+                   !prev.startsWith("'");
+        }
+
+        private boolean needsBlankLineAfter(String line, boolean asp, String nextLine) {
+            // 检查是否是目标结束关键字的行，并且不是文件末尾
+            if (!enabled || !asp || nextLine == null ||
+                !startsWithKeyword(line.trim(), KEYWORDS_NEEDING_BLANK_LINE_AFTER)) {
+                return false;
+            }
+            String next = nextLine.trim();
+            // 如果下一行不为空，且不是ASP标签结束或另一个结束关键字，则需要空行
+            return !next.isEmpty() &&
+                   !next.startsWith("%>") &&
+                   !next.toLowerCase().startsWith("end ") &&
+                   !next.toLowerCase().equals("wend") &&
+                   !next.toLowerCase().equals("loop") &&
+                   !next.toLowerCase().equals("next");
+        }
+
+        private static boolean startsWithKeyword(String trimmedLine, String[] keywords) {
+            String lower = trimmedLine.toLowerCase();
+            for (String keyword : keywords) {
+                String lowerKeyword = keyword.toLowerCase();
+                if (lower.equals(lowerKeyword) || lower.startsWith(lowerKeyword + " ")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package com.ferock.classicasp.formatting;
 
-import com.ferock.classicasp.SafetyLimits;
 import com.ferock.classicasp.VBScriptKeywords;
+import com.intellij.openapi.diagnostic.Logger;
+
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * ASP代码缩进处理器
@@ -15,11 +18,14 @@ import java.util.Set;
  */
 public class AspIndentProcessor {
 
+    private static final Logger LOG = Logger.getInstance(AspIndentProcessor.class);
+
     /**
      * 代码行信息
      */
     public static class CodeLine {
         public String content;           // 行内容
+        public String original;          // 原始行内容（格式化前）
         public int indentLevel;         // 缩进层级
         public boolean needBlankBefore; // 前面需要空行
         public boolean needBlankAfter;  // 后面需要空行
@@ -28,9 +34,11 @@ public class AspIndentProcessor {
         public String blockType;        // 代码块类型（sub, if, for等）
         public boolean dedentOne;       // 本行需要回退一级缩进（用于 Else/ElseIf 与 If 对齐）
         public boolean isAsp;           // 是否在 ASP 区域（非ASP区域完全不格式化）
+        public int depth;               // 行首所处的代码块嵌套深度（0 表示顶层）
 
         public CodeLine(String content) {
             this.content = content;
+            this.original = content;
             this.indentLevel = 0;
             this.needBlankBefore = false;
             this.needBlankAfter = false;
@@ -52,96 +60,152 @@ public class AspIndentProcessor {
             return new ArrayList<>();
         }
 
-        int maxLines = Math.min(lines.length, SafetyLimits.MAX_FILE_LINES);
-        List<CodeLine> codeLines = new ArrayList<>();
+        List<CodeLine> codeLines = new ArrayList<>(lines.length);
 
         try {
-            int currentIndentLevel = 0;
-            boolean inASPSection = false;
-
-            for (int i = 0; i < maxLines; i++) {
-                String line = lines[i];
-                String trimmed = line.trim();
-
-                CodeLine codeLine = new CodeLine(line);
-
-                // ASP 边界
-                if (trimmed.startsWith("<%")) {
-                    inASPSection = true;
-                    codeLine.indentLevel = 0;
-                    codeLine.isAsp = true; // ASP标签行
-                    codeLines.add(codeLine);
-                    continue;
-                } else if (trimmed.endsWith("%>")) {
-                    inASPSection = false;
-                    codeLine.indentLevel = 0;
-                    codeLine.isAsp = true; // ASP标签行
-                    codeLines.add(codeLine);
-                    continue;
-                }
+            LineAnalyzer analyzer = new LineAnalyzer(codeLines::add);
+            for (String line : lines) {
+                analyzer.accept(line);
+            }
+            analyzer.finish();
+            return codeLines;
 
-                // 空行
-                if (trimmed.isEmpty()) {
-                    codeLine.indentLevel = 0;
-                    codeLine.isAsp = inASPSection; // 空行也标记归属，用于生成阶段原样输出
-                    codeLines.add(codeLine);
-                    continue;
-                }
+        } catch (Exception e) {
+            LOG.warn("Indentation analysis failed", e);
+            return new ArrayList<>();
+        }
+    }
 
-                if (inASPSection) {
-                    codeLine.isAsp = true;
-                    boolean isComment = trimmed.startsWith("'");
-                    if (isComment) {
-                        codeLine.indentLevel = -1;
-                    } else {
-                        analyzeCodeBlock(codeLine);
-
-                        if (codeLine.isBlockEnd) {
-                            currentIndentLevel = Math.max(0, currentIndentLevel - 1);
-                        }
-
-                        int baseIndent = currentIndentLevel;
-                        if (codeLine.dedentOne) {
-                            baseIndent = Math.max(0, baseIndent - 1);
-                        }
-                        codeLine.indentLevel = baseIndent;
-
-                        if (codeLine.isBlockStart) {
-                            currentIndentLevel++;
-                        }
-                    }
-                } else {
-                    // 非ASP区域：不做任何缩进/内容分析，仅记录归属
-                    codeLine.indentLevel = 0;
-                    codeLine.isAsp = false;
+    /**
+     * 逐行缩进分析器
+     * 按顺序接收原始行，按原顺序输出已确定缩进与空行标记的 CodeLine。
+     * 注释的缩进取决于其后第一行代码，因此注释及其后的行会暂存到该行出现为止；
+     * 占用的内存只与连续注释段的长度有关，与文件大小无关。
+     */
+    public static final class LineAnalyzer {
+        private final Consumer<CodeLine> sink;
+        private final ArrayDeque<CodeLine> pending = new ArrayDeque<>(); // 首行为等待缩进的注释
+
+        private int currentIndentLevel = 0;
+        private boolean inASPSection = false;
+        private String previousTrimmed = null;
+
+        public LineAnalyzer(Consumer<CodeLine> sink) {
+            this.sink = sink;
+        }
+
+        /**
+         * 接收下一行
+         * @param line 原始行（不含换行符）
+         */
+        public void accept(String line) {
+            CodeLine codeLine = analyze(line);
+            String trimmed = codeLine.content.trim();
+            boolean isComment = codeLine.isAsp && trimmed.startsWith("'");
+            if (isComment) {
+                codeLine.content = trimmed;
+            }
+
+            // 注释对齐（仅 ASP 区域）：跳过空行、注释与 <% 开头的行，取下一行代码的缩进
+            if (!pending.isEmpty()) {
+                if (trimmed.isEmpty() || trimmed.startsWith("'") || trimmed.startsWith("<%")) {
+                    pending.add(codeLine);
+                    return;
                 }
+                resolve(trimmed.equals("%>") ? 0 : Math.max(0, codeLine.indentLevel));
+            }
 
-                codeLines.add(codeLine);
+            if (isComment) {
+                pending.add(codeLine);
+            } else {
+                sink.accept(codeLine);
             }
+        }
+
+        /**
+         * @return 下一行行首所处的代码块嵌套深度
+         */
+        public int depth() {
+            return currentIndentLevel;
+        }
+
+        /**
+         * 输入结束：其后没有代码的注释按顶层缩进
+         */
+        public void finish() {
+            resolve(0);
+        }
 
-            // 注释对齐（仅 ASP 区域）
-            for (int i = 0; i < codeLines.size(); i++) {
-                CodeLine codeLine = codeLines.get(i);
-                String trimmed = codeLine.content.trim();
-                if (codeLine.isAsp && trimmed.startsWith("'")) {
-                    int commentIndentLevel = findCommentIndentLevel(codeLines, i);
+        private void resolve(int commentIndentLevel) {
+            CodeLine codeLine;
+            while ((codeLine = pending.poll()) != null) {
+                if (codeLine.isAsp && codeLine.content.startsWith("'")) {
                     codeLine.indentLevel = commentIndentLevel;
-                    codeLine.content = trimmed;
                 }
+                sink.accept(codeLine);
             }
+        }
 
-            // 空行处理（仅 ASP 区域）
-            for (int i = 0; i < codeLines.size(); i++) {
-                if (codeLines.get(i).isAsp) {
-                    processBlankLines(codeLines.get(i), codeLines, i);
-                }
+        private CodeLine analyze(String line) {
+            String trimmed = line.trim();
+            String prevTrim = previousTrimmed;
+            previousTrimmed = trimmed;
+
+            CodeLine codeLine = new CodeLine(line);
+            codeLine.depth = currentIndentLevel;
+
+            // ASP 边界
+            if (trimmed.startsWith("<%")) {
+                inASPSection = true;
+                codeLine.indentLevel = 0;
+                codeLine.isAsp = true; // ASP标签行
+                return codeLine;
+            } else if (trimmed.endsWith("%>")) {
+                inASPSection = false;
+                codeLine.indentLevel = 0;
+                codeLine.isAsp = true; // ASP标签行
+                return codeLine;
             }
 
-            return codeLines;
+            // 空行
+            if (trimmed.isEmpty()) {
+                codeLine.indentLevel = 0;
+                codeLine.isAsp = inASPSection; // 空行也标记归属，用于生成阶段原样输出
+                return codeLine;
+            }
 
-        } catch (Exception e) {
-            System.err.println("AspIndentProcessor error: " + e.getMessage());
-            return new ArrayList<>();
+            if (inASPSection) {
+                codeLine.isAsp = true;
+                boolean isComment = trimmed.startsWith("'");
+                if (isComment) {
+                    codeLine.indentLevel = -1;
+                } else {
+                    analyzeCodeBlock(codeLine);
+
+                    if (codeLine.isBlockEnd) {
+                        currentIndentLevel = Math.max(0, currentIndentLevel - 1);
+                    }
+
+                    int baseIndent = currentIndentLevel;
+                    if (codeLine.dedentOne) {
+                        baseIndent = Math.max(0, baseIndent - 1);
+                    }
+                    codeLine.indentLevel = baseIndent;
+
+                    if (codeLine.isBlockStart) {
+                        currentIndentLevel++;
+                    }
+
+                    // 空行处理（仅 ASP 区域）
+                    processBlankLines(codeLine, prevTrim);
+                }
+            } else {
+                // 非ASP区域：不做任何缩进/内容分析，仅记录归属
+                codeLine.indentLevel = 0;
+                codeLine.isAsp = false;
+            }
+
+            return codeLine;
         }
     }
 
@@ -162,13 +226,13 @@ public class AspIndentProcessor {
             codeLine.isBlockStart = true; codeLine.blockType = "property";
         } else if (lowerContent.startsWith("public function ") || lowerContent.startsWith("private function ")) {
             codeLine.isBlockStart = true; codeLine.blockType = "function";
-            System.out.println("[FORMAT][Class] access-modified Function start");
+            LOG.debug("Access-modified Function start");
         } else if (lowerContent.startsWith("public sub ") || lowerContent.startsWith("private sub ")) {
             codeLine.isBlockStart = true; codeLine.blockType = "sub";
-            System.out.println("[FORMAT][Class] access-modified Sub start");
+            LOG.debug("Access-modified Sub start");
         } else if (lowerContent.startsWith("public property ") || lowerContent.startsWith("private property ")) {
             codeLine.isBlockStart = true; codeLine.blockType = "property";
-            System.out.println("[FORMAT][Class] access-modified Property start");
+            LOG.debug("Access-modified Property start");
         } else if (lowerContent.startsWith("if ")) {
             if (lowerContent.matches("^if .+ then\\s*$")) {
                 codeLine.isBlockStart = true;
@@ -177,11 +241,11 @@ public class AspIndentProcessor {
         } else if (lowerContent.startsWith("elseif ") || lowerContent.startsWith("else if ")) {
             codeLine.blockType = "elseif";
             codeLine.dedentOne = true;
-            System.out.println("[FORMAT][IfChain] ElseIf dedent");
+            LOG.debug("ElseIf dedent");
         } else if (lowerContent.equals("else")) {
             codeLine.blockType = "else";
             codeLine.dedentOne = true;
-            System.out.println("[FORMAT][IfChain] Else dedent");
+            LOG.debug("Else dedent");
         } else if (lowerContent.startsWith("select ")) {
             codeLine.isBlockStart = true; codeLine.blockType = "select";
         } else if (lowerContent.startsWith("for ")) {
@@ -215,12 +279,10 @@ public class AspIndentProcessor {
         }
     }
 
-    private static void processBlankLines(CodeLine currentLine, List<CodeLine> existingLines, int currentIndex) {
+    private static void processBlankLines(CodeLine currentLine, String prevTrim) {
         // 仅在块开始前插入空行；如果上一行已经是空行（或仅空白），则不插入
         if (isBlockNeedingBlankBefore(currentLine)) {
-            if (currentIndex > 0) {
-                CodeLine prev = existingLines.get(currentIndex - 1);
-                String prevTrim = prev.content == null ? "" : prev.content.trim();
+            if (prevTrim != null) {
                 if (!prevTrim.isEmpty() && !prevTrim.startsWith("'")) {
                     currentLine.needBlankBefore = true;
                 }
@@ -240,68 +302,4 @@ public class AspIndentProcessor {
     private static boolean isBlockNeedingBlankAfter(CodeLine line) {
         return false; // 禁用结束后空行策略
     }
-
-    public static String generateFormattedText(List<CodeLine> codeLines) {
-        StringBuilder result = new StringBuilder();
-        boolean insideSelect = false;
-        boolean insideCaseBlock = false;
-        int skippedHtmlLines = 0;
-        int insertedBlankBefore = 0;
-
-        for (int i = 0; i < codeLines.size(); i++) {
-            CodeLine line = codeLines.get(i);
-            String trimmedLower = line.content.trim().toLowerCase();
-
-            // 非ASP区域：完全保留原始内容（含缩进与空白）
-            if (!line.isAsp) {
-                result.append(line.content);
-                if (i < codeLines.size() - 1) result.append("\n");
-                skippedHtmlLines++;
-                continue;
-            }
-
-            if (trimmedLower.startsWith("select ")) { insideSelect = true; insideCaseBlock = false; }
-            else if (trimmedLower.startsWith("case ")) { insideCaseBlock = true; }
-            else if (trimmedLower.equals("end select")) { insideCaseBlock = false; insideSelect = false; }
-
-            if (line.needBlankBefore) { result.append("\n"); insertedBlankBefore++; }
-
-            int caseOffset = 0;
-            if (insideCaseBlock) { caseOffset = 1; }
-
-            if (!line.content.isEmpty()) {
-                String indent = "    ".repeat(Math.max(0, line.indentLevel + caseOffset));
-                result.append(indent).append(line.content.trim());
-            }
-
-            if (i < codeLines.size() - 1 || !line.content.isEmpty()) {
-                result.append("\n");
-            }
-
-            // 已禁用“结束后空行”的策略
-        }
-
-        String formatted = result.toString();
-        formatted = formatted.replaceAll("\n+$", "\n");
-        if (skippedHtmlLines > 0) {
-            System.out.println("[FORMAT][SkipHTML] non-ASP lines kept: " + skippedHtmlLines);
-        }
-        if (insertedBlankBefore > 0) {
-            System.out.println("[FORMAT][BlankLines] inserted before blocks: " + insertedBlankBefore);
-        }
-        return formatted;
-    }
-
-    private static int findCommentIndentLevel(List<CodeLine> lines, int commentIndex) {
-        for (int i = commentIndex + 1; i < lines.size(); i++) {
-            CodeLine codeLine = lines.get(i);
-            String trimmed = codeLine.content.trim();
-            if (trimmed.isEmpty()) continue;
-            if (trimmed.startsWith("'")) continue;
-            if (trimmed.equals("%>")) return 0;
-            if (trimmed.startsWith("<%")) continue;
-            return Math.max(0, codeLine.indentLevel);
-        }
-        return 0;
-    }
-}
\ No newline at end of file
+}
@@ -2,10 +2,12 @@ package com.ferock.classicasp.formatting;
 
 import com.intellij.formatting.*;
 import com.intellij.lang.ASTNode;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.psi.TokenType;
 import com.intellij.psi.formatter.common.AbstractBlock;
 import com.intellij.psi.impl.source.tree.LeafPsiElement;
 import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.tree.IFileElementType;
 import com.ferock.classicasp.highlighter.ClassicASPTokenTypes;
 import com.ferock.classicasp.ASPSectionDetector;
 import org.jetbrains.annotations.NotNull;
@@ -34,6 +36,11 @@ public class ClassicASPBlock extends AbstractBlock {
 
         @Override
     protected List<Block> buildChildren() {
+        // 缩进、空格与空行由后置格式化流水线处理；声明解析生成的树只用于导航与结构视图，
+        // 格式化模型不向下展开，整个文件作为一个块
+        if (isFileNode()) {
+            return new ArrayList<>();
+        }
         return com.ferock.classicasp.SafetyLimits.safeExecute(() -> {
             List<Block> blocks = new ArrayList<>();
             ASTNode child = myNode.getFirstChildNode();
@@ -41,11 +48,9 @@ public class ClassicASPBlock extends AbstractBlock {
 
 
 
-            // 安全限制：防止死循环
-            int iterations = 0;
-
-            while (child != null && iterations < com.ferock.classicasp.SafetyLimits.MAX_LOOP_ITERATIONS) {
-                iterations++;
+            while (child != null) {
+                // 树节点有限，只需响应取消
+                ProgressManager.checkCanceled();
 
                 if (child.getElementType() != TokenType.WHITE_SPACE) {
                     // 如果当前节点是控制结构，其子元素需要缩进
@@ -66,7 +71,6 @@ public class ClassicASPBlock extends AbstractBlock {
                 child = child.getTreeNext();
             }
 
-            com.ferock.classicasp.SafetyLimits.checkLoopLimit(iterations, "ClassicASPBlock.buildChildren");
             return blocks;
         }, "ClassicASPBlock.buildChildren", new ArrayList<>());
     }
@@ -167,13 +171,10 @@ public class ClassicASPBlock extends AbstractBlock {
         // 更简单的方法：检查当前节点是否在Case和下一个Case/End Select之间
         ASTNode current = myNode;
 
-        // 安全限制：防止死循环
-        int iterations = 0;
-
         // 向前查找，直到找到Case语句
         ASTNode searchNode = current.getTreePrev();
-        while (searchNode != null && iterations < com.ferock.classicasp.SafetyLimits.MAX_LOOP_ITERATIONS) {
-            iterations++;
+        while (searchNode != null) {
+            ProgressManager.checkCanceled();
             IElementType type = searchNode.getElementType();
 
             if (type == ClassicASPTokenTypes.CASE) {
@@ -190,8 +191,6 @@ public class ClassicASPBlock extends AbstractBlock {
             searchNode = searchNode.getTreePrev();
         }
 
-        com.ferock.classicasp.SafetyLimits.checkLoopLimit(iterations, "ClassicASPBlock.isInsideCaseStatement");
-
         return false;
     }
 
@@ -203,6 +202,10 @@ public class ClassicASPBlock extends AbstractBlock {
 
     @Override
     public boolean isLeaf() {
-        return myNode.getFirstChildNode() == null;
+        return isFileNode() || myNode.getFirstChildNode() == null;
+    }
+
+    private boolean isFileNode() {
+        return myNode.getElementType() instanceof IFileElementType;
     }
 }
\ No newline at end of file
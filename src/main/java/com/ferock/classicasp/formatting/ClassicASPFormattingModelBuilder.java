@@ -42,7 +42,7 @@ public class ClassicASPFormattingModelBuilder implements FormattingModelBuilder
                 // 注释间距 - 强制换行
                 .after(ClassicASPTokenTypes.COMMENT)
                 .lineBreakInCode()
-                // 空行处理现在由BlankLineProcessor专门处理
+                // 空行处理由格式化流水线（AspFormattingPipeline）完成
                 // Then 前只有一个空格
                 .before(ClassicASPTokenTypes.THEN)
                 .spacing(1, 1, 0, false, 1)
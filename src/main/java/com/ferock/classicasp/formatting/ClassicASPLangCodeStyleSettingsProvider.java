@@ -7,6 +7,26 @@ import com.ferock.classicasp.ClassicASPLanguage;
 
 public class ClassicASPLangCodeStyleSettingsProvider extends CustomCodeStyleSettings {
 
+    /**
+     * 按代码块层级重新缩进 ASP 代码
+     */
+    public boolean INDENT_CODE_BLOCKS = true;
+
+    /**
+     * 关键字与 对象.方法 的大小写规范化
+     */
+    public boolean NORMALIZE_KEYWORD_CASE = true;
+
+    /**
+     * 运算符两侧空格
+     */
+    public boolean SPACE_AROUND_OPERATORS = true;
+
+    /**
+     * 代码块前后空行
+     */
+    public boolean BLANK_LINES_AROUND_BLOCKS = true;
+
     public ClassicASPLangCodeStyleSettingsProvider(CodeStyleSettings settings) {
         super(ClassicASPLanguage.INSTANCE.getID(), settings);
     }
@@ -17,4 +37,4 @@ public class ClassicASPLangCodeStyleSettingsProvider extends CustomCodeStyleSett
     public Language getLanguage() {
         return ClassicASPLanguage.INSTANCE;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,84 @@
+package com.ferock.classicasp.formatting;
+
+import com.ferock.classicasp.ClassicASPLanguage;
+import com.intellij.application.options.CodeStyleAbstractConfigurable;
+import com.intellij.application.options.CodeStyleAbstractPanel;
+import com.intellij.application.options.TabbedLanguageCodeStylePanel;
+import com.intellij.lang.Language;
+import com.intellij.psi.codeStyle.CodeStyleConfigurable;
+import com.intellij.psi.codeStyle.CodeStyleSettings;
+import com.intellij.psi.codeStyle.CodeStyleSettingsCustomizable;
+import com.intellij.psi.codeStyle.CustomCodeStyleSettings;
+import com.intellij.psi.codeStyle.LanguageCodeStyleSettingsProvider;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Classic ASP 代码样式设置页
+ * 格式化流水线的各阶段（缩进、大小写、运算符空格、空行）在这里单独开关。
+ */
+public class ClassicASPLanguageCodeStyleSettingsProvider extends LanguageCodeStyleSettingsProvider {
+
+    private static final String GROUP = "Classic ASP";
+
+    private static final String CODE_SAMPLE =
+        "<%\n" +
+        "dim total\n" +
+        "total=0\n" +
+        "for i=1 to 10\n" +
+        "if i mod 2=0 then\n" +
+        "total=total+i\n" +
+        "end if\n" +
+        "next\n" +
+        "response.write \"Total: \"&total\n" +
+        "function add(a,b)\n" +
+        "add=a+b\n" +
+        "end function\n" +
+        "%>\n";
+
+    @Override
+    public @NotNull Language getLanguage() {
+        return ClassicASPLanguage.INSTANCE;
+    }
+
+    @Override
+    public CustomCodeStyleSettings createCustomSettings(@NotNull CodeStyleSettings settings) {
+        return new ClassicASPLangCodeStyleSettingsProvider(settings);
+    }
+
+    @Override
+    public @NotNull CodeStyleConfigurable createConfigurable(@NotNull CodeStyleSettings baseSettings,
+                                                             @NotNull CodeStyleSettings modelSettings) {
+        return new CodeStyleAbstractConfigurable(baseSettings, modelSettings, getConfigurableDisplayName()) {
+            @Override
+            protected @NotNull CodeStyleAbstractPanel createPanel(@NotNull CodeStyleSettings settings) {
+                return new TabbedLanguageCodeStylePanel(getLanguage(), getCurrentSettings(), settings) {
+                    @Override
+                    protected void initTabs(CodeStyleSettings settings) {
+                        addSpacesTab(settings);
+                        addWrappingAndBracesTab(settings);
+                    }
+                };
+            }
+        };
+    }
+
+    @Override
+    public void customizeSettings(@NotNull CodeStyleSettingsCustomizable consumer, @NotNull SettingsType settingsType) {
+        if (settingsType == SettingsType.SPACING_SETTINGS) {
+            consumer.showCustomOption(ClassicASPLangCodeStyleSettingsProvider.class,
+                "SPACE_AROUND_OPERATORS", "Around operators", GROUP);
+        } else if (settingsType == SettingsType.WRAPPING_AND_BRACES_SETTINGS) {
+            consumer.showCustomOption(ClassicASPLangCodeStyleSettingsProvider.class,
+                "INDENT_CODE_BLOCKS", "Indent code blocks", GROUP);
+            consumer.showCustomOption(ClassicASPLangCodeStyleSettingsProvider.class,
+                "NORMALIZE_KEYWORD_CASE", "Normalize keyword case", GROUP);
+            consumer.showCustomOption(ClassicASPLangCodeStyleSettingsProvider.class,
+                "BLANK_LINES_AROUND_BLOCKS", "Blank lines around blocks", GROUP);
+        }
+    }
+
+    @Override
+    public String getCodeSample(@NotNull SettingsType settingsType) {
+        return CODE_SAMPLE;
+    }
+}
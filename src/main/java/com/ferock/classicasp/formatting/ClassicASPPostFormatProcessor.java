@@ -1,17 +1,24 @@
 package com.ferock.classicasp.formatting;
 
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.codeStyle.CodeStyleSettings;
 import com.intellij.psi.impl.source.codeStyle.PostFormatProcessor;
-import com.ferock.classicasp.VBScriptKeywords;
 import com.ferock.classicasp.ASPSectionDetector;
+import com.ferock.classicasp.AspSectionIndex;
 import org.jetbrains.annotations.NotNull;
-import java.util.Map;
 
-public class CaseFormatProcessor implements PostFormatProcessor {
+/**
+ * Classic ASP 格式化后处理器
+ * 缩进、大小写、运算符空格与空行由同一条格式化流水线一次完成，文档只读取、写回各一次。
+ */
+public class ClassicASPPostFormatProcessor implements PostFormatProcessor {
+
+    private static final Logger LOG = Logger.getInstance(ClassicASPPostFormatProcessor.class);
 
     // 添加标志防止重复处理
     private static final ThreadLocal<Boolean> PROCESSING = new ThreadLocal<Boolean>() {
@@ -55,33 +62,35 @@ public class CaseFormatProcessor implements PostFormatProcessor {
                 return rangeToReformat;
             }
 
-            // 获取要格式化的文本范围
-            String text = document.getText(rangeToReformat);
-
-            // 检查这个范围是否包含ASP代码
-            if (!ASPSectionDetector.containsASPCode(text)) {
+            // 检查文档是否包含ASP代码
+            AspSectionIndex index = ASPSectionDetector.getIndex(document);
+            if (!index.hasASPSections()) {
                 // 如果不包含ASP代码，直接返回原范围，不进行格式化
                 return rangeToReformat;
             }
 
-            String processedText = SimpleAspFormatter.format(text);
+            // 缩进依赖上下文，按整个文件分析，但只重写扩展到代码块边界后的行区间
+            int[] lines = FormattingRanges.toLines(index, rangeToReformat);
+            AspFormattingPipeline.RangeEdit edit = AspFormattingPipeline.run(
+                document.getImmutableCharSequence(), index, lines[0], lines[1],
+                AspFormattingPipeline.Stages.from(settings));
 
             // 如果有变化，应用更改
-            if (!text.equals(processedText)) {
-                // 再次验证范围，因为文档可能已被修改
-                if (rangeToReformat.getEndOffset() <= document.getTextLength()) {
-                    document.replaceString(rangeToReformat.getStartOffset(), rangeToReformat.getEndOffset(), processedText);
-
+            if (edit != null) {
+                TextRange changed = FormattingRanges.replaceLines(document, index, edit.startLine, edit.endLine, edit.text);
+                if (changed != null) {
                     // 返回新的范围（可能长度改变了）
-                    int newEndOffset = rangeToReformat.getStartOffset() + processedText.length();
-                    return new TextRange(rangeToReformat.getStartOffset(), newEndOffset);
+                    return changed;
                 }
             }
 
             return rangeToReformat;
+        } catch (ProcessCanceledException e) {
+            // 取消必须继续向上传递
+            throw e;
         } catch (Exception e) {
             // 记录错误但不抛出，避免干扰格式化过程
-            System.err.println("CaseFormatProcessor error: " + e.getMessage());
+            LOG.warn("Post-format processing failed, range left unchanged", e);
             return rangeToReformat;
         } finally {
             PROCESSING.set(false);
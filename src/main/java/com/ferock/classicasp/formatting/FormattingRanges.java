@@ -0,0 +1,48 @@
+package com.ferock.classicasp.formatting;
+
+import com.ferock.classicasp.AspSectionIndex;
+import com.ferock.classicasp.LineDiff;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.TextRange;
+
+/**
+ * 后置格式化处理器共用的行区间工具
+ * 把 rangeToReformat 换算为整行区间，并只替换这些行，区间外的文本保持不动。
+ */
+final class FormattingRanges {
+
+    private FormattingRanges() {}
+
+    /**
+     * 将偏移区间换算为覆盖它的行区间
+     * @param index 文档的 ASP 区域索引（提供行偏移）
+     * @param range 偏移区间
+     * @return {起始行, 结束行}（均含）
+     */
+    static int[] toLines(AspSectionIndex index, TextRange range) {
+        int startLine = index.getLineNumber(range.getStartOffset());
+        // 结束偏移是开区间：恰好落在行首时不包含该行
+        int endOffset = Math.max(range.getStartOffset(), range.getEndOffset() - 1);
+        int endLine = index.getLineNumber(endOffset);
+        return new int[]{startLine, Math.max(startLine, endLine)};
+    }
+
+    /**
+     * 用新文本替换文档中的整行区间（不含结束行后的换行符）
+     * 通过 LineDiff 只写入真正变化的行，区间内未变化的行同样保持不动。
+     * @param document 文档
+     * @param index 替换前文档的 ASP 区域索引
+     * @param startLine 起始行（含）
+     * @param endLine 结束行（含）
+     * @param replacement 新文本
+     * @return 替换后新文本所在区间；内容未变化时返回 null
+     */
+    static TextRange replaceLines(Document document, AspSectionIndex index, int startLine, int endLine, String replacement) {
+        int start = index.getLineStartOffset(startLine);
+        int end = index.getLineEndOffset(endLine);
+        if (LineDiff.apply(document, start, end, replacement) == 0) {
+            return null;
+        }
+        return new TextRange(start, start + replacement.length());
+    }
+}
@@ -0,0 +1,221 @@
+package com.ferock.classicasp.formatting;
+
+import com.ferock.classicasp.CaseInsensitiveLookup;
+import com.ferock.classicasp.SpecRegistry;
+import com.ferock.classicasp.VBScriptKeywords;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 关键字与 对象.方法 的大小写规范化
+ * 查找表按 SpecRegistry 的数据预先构建一次；格式化时对每行只做一次扫描，
+ * 逐个标识符查表，替代逐条关键字/方法拼接正则并 replaceAll 的做法。
+ */
+final class KeywordCaseNormalizer {
+
+    private static volatile Tables tables;
+
+    private KeywordCaseNormalizer() {}
+
+    /**
+     * 规范化一行代码（字符串需已替换为占位符，注释需已剥离）
+     * @param line 代码
+     * @return 规范化后的代码，无变化时返回原字符串
+     */
+    static String normalize(String line) {
+        Tables t = tables();
+        int length = line.length();
+        StringBuilder out = null;
+        int copied = 0;
+
+        int pos = 0;
+        while (pos < length) {
+            if (!isWordChar(line.charAt(pos))) {
+                pos++;
+                continue;
+            }
+            int wordEnd = wordEnd(line, pos);
+
+            // 对象.方法 优先：方法名按所属对象的定义规范化
+            String replacement = null;
+            int replaceEnd = wordEnd;
+            CaseInsensitiveLookup<String> methods = t.methodsOfPrecedingObject(line, pos);
+            if (methods != null) {
+                replacement = methods.get(line, pos, wordEnd);
+            }
+            if (replacement == null) {
+                // 多词关键字（如 "end if"）取最长匹配，否则按单词查找
+                int phraseEnd = t.longestPhraseEnd(line, pos, wordEnd);
+                if (phraseEnd > wordEnd) {
+                    replacement = t.phrases.get(line, pos, phraseEnd);
+                    replaceEnd = phraseEnd;
+                } else {
+                    replacement = t.words.get(line, pos, wordEnd);
+                }
+            }
+
+            if (replacement != null && (replacement.length() != replaceEnd - pos
+                    || !line.regionMatches(pos, replacement, 0, replacement.length()))) {
+                if (out == null) {
+                    out = new StringBuilder(length);
+                }
+                out.append(line, copied, pos).append(replacement);
+                copied = replaceEnd;
+            }
+            pos = replaceEnd;
+        }
+
+        String result = out == null ? line : out.append(line, copied, length).toString();
+        return t.irregular.isEmpty() ? result : t.applyIrregular(result);
+    }
+
+    private static Tables tables() {
+        Map<String, String> caseMap = SpecRegistry.getCaseMap();
+        Map<String, Map<String, String>> objectMethodCase = SpecRegistry.getObjectMethodCase();
+        Tables t = tables;
+        if (t == null || t.caseSource != caseMap || t.methodSource != objectMethodCase) {
+            t = new Tables(caseMap, objectMethodCase);
+            tables = t;
+        }
+        return t;
+    }
+
+    /**
+     * 与正则 \b 一致的单词字符
+     */
+    private static boolean isWordChar(char c) {
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 0x0B;
+    }
+
+    private static int wordEnd(CharSequence text, int pos) {
+        int end = pos;
+        while (end < text.length() && isWordChar(text.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    private static final class Tables {
+        private final Map<String, String> caseSource;
+        private final Map<String, Map<String, String>> methodSource;
+
+        private final CaseInsensitiveLookup<String> words;
+        private final CaseInsensitiveLookup<String> phrases;
+        private final int maxPhraseWords;
+        private final CaseInsensitiveLookup<CaseInsensitiveLookup<String>> objectMethods;
+
+        // 含有非单词字符的键（YAML 中目前没有），仍用预编译正则处理
+        private final List<Pattern> irregular = new ArrayList<>();
+        private final List<String> irregularProper = new ArrayList<>();
+
+        private Tables(Map<String, String> caseSource, Map<String, Map<String, String>> methodSource) {
+            this.caseSource = caseSource;
+            this.methodSource = methodSource;
+
+            Map<String, String> caseMap = caseSource;
+            if (caseMap == null || caseMap.isEmpty()) {
+                caseMap = VBScriptKeywords.getCaseMap();
+            }
+            Map<String, String> wordMap = new HashMap<>();
+            Map<String, String> phraseMap = new HashMap<>();
+            int maxWords = 1;
+            for (Map.Entry<String, String> e : caseMap.entrySet()) {
+                String key = e.getKey();
+                if (key == null || key.isEmpty() || e.getValue() == null) continue;
+                int words = countWords(key);
+                if (words == 1) {
+                    wordMap.put(key, e.getValue());
+                } else if (words > 1) {
+                    phraseMap.put(key, e.getValue());
+                    maxWords = Math.max(maxWords, words);
+                } else {
+                    irregular.add(Pattern.compile("(?i)\\b" + Pattern.quote(key) + "\\b"));
+                    irregularProper.add(e.getValue());
+                }
+            }
+            this.words = CaseInsensitiveLookup.of(wordMap);
+            this.phrases = CaseInsensitiveLookup.of(phraseMap);
+            this.maxPhraseWords = maxWords;
+
+            Map<String, CaseInsensitiveLookup<String>> objects = new HashMap<>();
+            if (methodSource != null) {
+                for (Map.Entry<String, Map<String, String>> e : methodSource.entrySet()) {
+                    if (e.getKey() != null && e.getValue() != null && !e.getValue().isEmpty()) {
+                        objects.put(e.getKey(), CaseInsensitiveLookup.of(e.getValue()));
+                    }
+                }
+            }
+            this.objectMethods = CaseInsensitiveLookup.of(objects);
+        }
+
+        /**
+         * @return 键由几个以单个空格分隔的单词组成；含其他字符时返回 0
+         */
+        private static int countWords(String key) {
+            int words = 0;
+            for (int i = 0; i < key.length(); ) {
+                if (!isWordChar(key.charAt(i))) return 0;
+                i = wordEnd(key, i);
+                words++;
+                if (i < key.length()) {
+                    if (key.charAt(i) != ' ') return 0;
+                    i++;
+                    if (i == key.length()) return 0;
+                }
+            }
+            return words;
+        }
+
+        /**
+         * 从 start 开始按 “单词 空格 单词…” 向后匹配多词关键字
+         * @return 最长匹配的结束位置，无匹配时返回 wordEnd
+         */
+        private int longestPhraseEnd(String line, int start, int wordEnd) {
+            int best = wordEnd;
+            int end = wordEnd;
+            for (int w = 2; w <= maxPhraseWords; w++) {
+                if (end + 1 >= line.length() || line.charAt(end) != ' ' || !isWordChar(line.charAt(end + 1))) {
+                    break;
+                }
+                end = wordEnd(line, end + 1);
+                if (phrases.contains(line, start, end)) {
+                    best = end;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * 若 pos 处的标识符形如 obj . name，且 obj 为已知对象，返回该对象的方法表
+         */
+        private CaseInsensitiveLookup<String> methodsOfPrecedingObject(String line, int pos) {
+            if (objectMethods.size() == 0) return null;
+            int i = pos - 1;
+            while (i >= 0 && isSpace(line.charAt(i))) i--;
+            if (i < 0 || line.charAt(i) != '.') return null;
+            i--;
+            while (i >= 0 && isSpace(line.charAt(i))) i--;
+            int objectEnd = i + 1;
+            while (i >= 0 && isWordChar(line.charAt(i))) i--;
+            int objectStart = i + 1;
+            if (objectStart == objectEnd) return null;
+            return objectMethods.get(line, objectStart, objectEnd);
+        }
+
+        private String applyIrregular(String line) {
+            String result = line;
+            for (int i = 0; i < irregular.size(); i++) {
+                result = irregular.get(i).matcher(result).replaceAll(irregularProper.get(i));
+            }
+            return result;
+        }
+    }
+}
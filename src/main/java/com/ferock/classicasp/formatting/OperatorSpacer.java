@@ -0,0 +1,206 @@
+package com.ferock.classicasp.formatting;
+
+import com.ferock.classicasp.CaseInsensitiveLookup;
+import com.ferock.classicasp.SpecRegistry;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 基于 token 的运算符空格处理
+ * 单次扫描把一行代码切分为空白、单词与运算符，复合运算符（<>、<=、>=）按字符直接识别，
+ * 每个 token 只向后看一个 token 决定空格；同时完成空白折叠与一元负号紧缩。
+ */
+final class OperatorSpacer {
+
+    /**
+     * YAML 未配置 formatting 段时的兜底运算符
+     */
+    private static final List<String> FALLBACK_SYMBOLS = Arrays.asList("<>", "<=", ">=", "=", "<", ">", "&");
+
+    /**
+     * 其后出现的负号视为一元负号（与原 fixUnaryMinus 的判定一致）
+     */
+    private static final String UNARY_PREFIX = "(=,+*^/\\<>";
+
+    private static volatile Rules rules;
+
+    private OperatorSpacer() {}
+
+    /**
+     * 处理一行代码（字符串需已替换为占位符，注释需已剥离）
+     * 连续空白折叠为一个空格并去掉首尾空白；需要空格的运算符两侧恰好一个空格；
+     * 紧跟数字的一元负号与数字相连。
+     * @param line 代码
+     * @return 处理后的代码
+     */
+    static String apply(String line) {
+        Rules r = rules();
+        int length = line.length();
+        StringBuilder out = new StringBuilder(length + 16);
+        boolean space = false;
+
+        int pos = 0;
+        while (pos < length) {
+            char c = line.charAt(pos);
+            if (isSpace(c)) {
+                space = true;
+                pos++;
+                continue;
+            }
+
+            if (isWordChar(c)) {
+                int end = pos + 1;
+                while (end < length && isWordChar(line.charAt(end))) end++;
+                if (r.wordOperators.contains(line, pos, end)) {
+                    appendSpaced(out, line, pos, end);
+                    space = true;
+                } else {
+                    appendPlain(out, space, line, pos, end);
+                    space = false;
+                }
+                pos = end;
+                continue;
+            }
+
+            // 复合运算符：<>、<=、>=；中间夹空白的 "< >"、"< ="、"> =" 同样合并
+            // 直接比较两个字符，运算符文本取常量，不为每个符号构造字符串
+            int opEnd = pos + 1;
+            String operator = null;
+            if (c == '<' || c == '>') {
+                int next = skipSpaces(line, pos + 1);
+                if (next < length) {
+                    char n = line.charAt(next);
+                    if (n == '=' || (c == '<' && n == '>')) {
+                        operator = c == '<' ? (n == '=' ? "<=" : "<>") : ">=";
+                        opEnd = next + 1;
+                    }
+                }
+            }
+
+            if (operator == null && c == '-' && isUnaryPosition(out)) {
+                int next = skipSpaces(line, pos + 1);
+                if (next < length && Character.isDigit(line.charAt(next))) {
+                    // 一元负号：与数字相连，前面的空格按前一个 token 的规则保留
+                    appendPlain(out, space, line, pos, pos + 1);
+                    space = false;
+                    pos = next;
+                    continue;
+                }
+            }
+
+            boolean spaced = operator != null ? r.symbols.contains(operator) : c < 0x80 && r.singleSymbols[c];
+            if (spaced) {
+                if (operator != null) {
+                    appendSpaced(out, operator, 0, operator.length());
+                } else {
+                    appendSpaced(out, line, pos, opEnd);
+                }
+                space = true;
+            } else {
+                if (operator != null) {
+                    appendPlain(out, space, operator, 0, operator.length());
+                } else {
+                    appendPlain(out, space, line, pos, opEnd);
+                }
+                space = false;
+            }
+            pos = opEnd;
+        }
+
+        return out.toString();
+    }
+
+    private static void appendPlain(StringBuilder out, boolean space, CharSequence text, int start, int end) {
+        if (space && out.length() > 0) {
+            out.append(' ');
+        }
+        out.append(text, start, end);
+    }
+
+    private static void appendSpaced(StringBuilder out, CharSequence text, int start, int end) {
+        if (out.length() > 0) {
+            out.append(' ');
+        }
+        out.append(text, start, end);
+    }
+
+    private static boolean isUnaryPosition(StringBuilder out) {
+        // out 中不含连续空格，回看一个字符即可越过分隔空格
+        int last = out.length() - 1;
+        if (last >= 0 && out.charAt(last) == ' ') last--;
+        return last < 0 || UNARY_PREFIX.indexOf(out.charAt(last)) >= 0;
+    }
+
+    private static int skipSpaces(String line, int pos) {
+        while (pos < line.length() && isSpace(line.charAt(pos))) pos++;
+        return pos;
+    }
+
+    private static boolean isWordChar(char c) {
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 0x0B;
+    }
+
+    private static Rules rules() {
+        List<String> symbols = SpecRegistry.getOperatorSymbolsWithSpaces();
+        Set<String> keywordOps = SpecRegistry.getKeywordOpsWithSpaces();
+        Rules r = rules;
+        if (r == null || r.symbolSource != symbols || r.keywordSource != keywordOps) {
+            r = new Rules(symbols, keywordOps);
+            rules = r;
+        }
+        return r;
+    }
+
+    /**
+     * 由 YAML formatting 段预先构建的空格规则
+     */
+    private static final class Rules {
+        private final List<String> symbolSource;
+        private final Set<String> keywordSource;
+
+        // 需要两侧空格的单字符运算符（ASCII）与复合运算符
+        private final boolean[] singleSymbols = new boolean[128];
+        private final Set<String> symbols = new HashSet<>();
+        // 需要两侧空格的关键字运算符（Mod、Is 等），按整词匹配
+        private final CaseInsensitiveLookup<Boolean> wordOperators;
+
+        private Rules(List<String> symbolSource, Set<String> keywordSource) {
+            this.symbolSource = symbolSource;
+            this.keywordSource = keywordSource;
+
+            boolean usedYaml = (symbolSource != null && !symbolSource.isEmpty())
+                    || (keywordSource != null && !keywordSource.isEmpty());
+            List<String> configured = !usedYaml ? FALLBACK_SYMBOLS
+                    : symbolSource != null ? symbolSource : Collections.emptyList();
+
+            Map<String, Boolean> words = new HashMap<>();
+            for (String symbol : configured) {
+                if (symbol == null || symbol.isEmpty()) continue;
+                if (isWordChar(symbol.charAt(0))) {
+                    words.put(symbol, Boolean.TRUE);
+                } else if (symbol.length() == 1 && symbol.charAt(0) < 0x80) {
+                    singleSymbols[symbol.charAt(0)] = true;
+                    symbols.add(symbol);
+                } else {
+                    symbols.add(symbol);
+                }
+            }
+            if (usedYaml && keywordSource != null) {
+                for (String keyword : keywordSource) {
+                    if (keyword != null && !keyword.isEmpty()) words.put(keyword, Boolean.TRUE);
+                }
+            }
+            this.wordOperators = CaseInsensitiveLookup.of(words);
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.intellij.lexer.LexerBase;
 import com.intellij.lexer.FlexAdapter;
 import com.intellij.psi.tree.IElementType;
 import com.intellij.psi.TokenType;
+import com.ferock.classicasp.CaseInsensitiveLookup;
 import com.ferock.classicasp.VBScriptKeywords;
 import com.ferock.classicasp.VBScriptOperators;
 import org.jetbrains.annotations.NotNull;
@@ -12,8 +13,16 @@ import org.jetbrains.annotations.NotNull;
 // 引入 Flex 生成的 ASP 词法器
 import com.ferock.classicasp.ClassicASPLexer;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public class ClassicASPMergingLexer extends LexerBase {
 
+    // 关键字表：直接在缓冲区区间上做大小写不敏感查找，不创建中间字符串
+    private static final CaseInsensitiveLookup<IElementType> KEYWORDS = CaseInsensitiveLookup.of(keywordTokens());
+    // "End xxx" 组合中 End 之后的单词
+    private static final CaseInsensitiveLookup<IElementType> END_KEYWORDS = CaseInsensitiveLookup.of(endKeywordTokens());
+
     private Lexer htmlLexer;
     private Lexer aspLexer;
     private Lexer currentLexer;
@@ -81,15 +90,11 @@ public class ClassicASPMergingLexer extends LexerBase {
             // 🔍 增加详细调试日志
                     // 移除调试日志以提升性能
 
-        // 跳过空白字符
+        // 跳过空白字符（每个 token 都以 end 为界，长度不设上限）
         if (Character.isWhitespace(currentChar)) {
-            int iterations = 0;
-            while (currentPosition < end && Character.isWhitespace(buffer.charAt(currentPosition)) &&
-                   iterations < com.ferock.classicasp.SafetyLimits.MAX_LOOP_ITERATIONS) {
+            while (currentPosition < end && Character.isWhitespace(buffer.charAt(currentPosition))) {
                 currentPosition++;
-                iterations++;
             }
-            com.ferock.classicasp.SafetyLimits.checkLoopLimit(iterations, "ClassicASPMergingLexer.processHTMLToken whitespace");
             currentTokenType = TokenType.WHITE_SPACE;
             return;
         }
@@ -156,15 +161,9 @@ public class ClassicASPMergingLexer extends LexerBase {
         // 处理注释
         if (currentChar == '\'') {
             currentPosition++;
-            StringBuilder comment = new StringBuilder();
-            int iterations = 0;
-            while (currentPosition < end && buffer.charAt(currentPosition) != '\n' &&
-                   iterations < com.ferock.classicasp.SafetyLimits.MAX_LOOP_ITERATIONS) {
-                comment.append(buffer.charAt(currentPosition));
+            while (currentPosition < end && buffer.charAt(currentPosition) != '\n') {
                 currentPosition++;
-                iterations++;
             }
-            com.ferock.classicasp.SafetyLimits.checkLoopLimit(iterations, "ClassicASPMergingLexer.processASPToken comment");
             currentTokenType = ClassicASPTokenTypes.COMMENT;
             // System.out.println("Token: COMMENT -> " + comment.toString());
             return;
@@ -209,26 +208,16 @@ public class ClassicASPMergingLexer extends LexerBase {
 
         // 处理关键字和标识符
         if (Character.isLetter(currentChar) || currentChar == '_') {
-            StringBuilder identifier = new StringBuilder();
-            int iterations = 0;
+            int wordStart = currentPosition;
             while (currentPosition < end &&
                    (Character.isLetterOrDigit(buffer.charAt(currentPosition)) ||
                     buffer.charAt(currentPosition) == '_' ||
-                    buffer.charAt(currentPosition) == '.') &&
-                   iterations < com.ferock.classicasp.SafetyLimits.MAX_LOOP_ITERATIONS) {
-                identifier.append(buffer.charAt(currentPosition));
+                    buffer.charAt(currentPosition) == '.')) {
                 currentPosition++;
-                iterations++;
             }
-            com.ferock.classicasp.SafetyLimits.checkLoopLimit(iterations, "ClassicASPMergingLexer.processASPToken identifier");
-
-                        String word = identifier.toString();
-
-            // 大驼峰转换：将关键词转换为正确的大小写格式
-            String normalizedWord = normalizeKeyword(word);
 
             // 特殊处理所有 "End xxx" 组合
-            if (normalizedWord.equalsIgnoreCase("end") && currentPosition < end) {
+            if (currentPosition - wordStart == 3 && isEndWord(wordStart) && currentPosition < end) {
                 // 跳过空白字符
                 int tempPos = currentPosition;
                 while (tempPos < end && Character.isWhitespace(buffer.charAt(tempPos))) {
@@ -237,73 +226,32 @@ public class ClassicASPMergingLexer extends LexerBase {
 
                 // 检查下一个单词
                 if (tempPos < end && Character.isLetter(buffer.charAt(tempPos))) {
-                    StringBuilder nextWord = new StringBuilder();
+                    int nextStart = tempPos;
                     while (tempPos < end && Character.isLetterOrDigit(buffer.charAt(tempPos))) {
-                        nextWord.append(buffer.charAt(tempPos));
                         tempPos++;
                     }
 
-                    String nextWordStr = nextWord.toString().toLowerCase();
-                    IElementType endTokenType = null;
-
                     // 检查所有可能的 End 组合
-                    switch (nextWordStr) {
-                        case "if":
-                            endTokenType = ClassicASPTokenTypes.END_IF;
-                            break;
-                        case "function":
-                            endTokenType = ClassicASPTokenTypes.END_FUNCTION;
-                            break;
-                        case "sub":
-                            endTokenType = ClassicASPTokenTypes.END_SUB;
-                            break;
-                        case "for":
-                            endTokenType = ClassicASPTokenTypes.END_FOR;
-                            break;
-                        case "while":
-                            endTokenType = ClassicASPTokenTypes.END_WHILE;
-                            break;
-                        case "do":
-                            endTokenType = ClassicASPTokenTypes.END_DO;
-                            break;
-                        case "loop":
-                            endTokenType = ClassicASPTokenTypes.END_LOOP;
-                            break;
-                        case "select":
-                            endTokenType = ClassicASPTokenTypes.END_SELECT;
-                            break;
-                        case "property":
-                            endTokenType = ClassicASPTokenTypes.END_PROPERTY;
-                            break;
-                        case "class":
-                            endTokenType = ClassicASPTokenTypes.END_CLASS;
-                            break;
-                    }
-
+                    IElementType endTokenType = END_KEYWORDS.get(buffer, nextStart, tempPos);
                     if (endTokenType != null) {
                         // 这是一个 "End xxx" 组合
                         currentPosition = tempPos;
                         currentTokenType = endTokenType;
-                        // System.out.println("Token: " + endTokenType + " (End " + nextWordStr + ")");
                         return;
                     }
                 }
             }
 
-            currentTokenType = getKeywordTokenType(normalizedWord);
-            // System.out.println("Token: " + normalizedWord + " -> " + currentTokenType);
+            IElementType keywordType = KEYWORDS.get(buffer, wordStart, currentPosition);
+            currentTokenType = keywordType != null ? keywordType : ClassicASPTokenTypes.IDENTIFIER;
             return;
         }
 
         // 处理数字
         if (Character.isDigit(currentChar)) {
-            int iterations = 0;
-            while (currentPosition < end && Character.isDigit(buffer.charAt(currentPosition)) &&
-                   iterations < com.ferock.classicasp.SafetyLimits.MAX_LOOP_ITERATIONS) {
+            while (currentPosition < end && Character.isDigit(buffer.charAt(currentPosition))) {
                 currentPosition++;
-                iterations++;
             }
-            com.ferock.classicasp.SafetyLimits.checkLoopLimit(iterations, "ClassicASPMergingLexer.processASPToken number");
             currentTokenType = ClassicASPTokenTypes.NUMBER;
             // System.out.println("Token: NUMBER");
             return;
@@ -360,18 +308,14 @@ public class ClassicASPMergingLexer extends LexerBase {
 
         // 处理HTML属性
         if (Character.isLetter(currentChar) || currentChar == '_') {
-            StringBuilder identifier = new StringBuilder();
             while (currentPosition < end &&
                    (Character.isLetterOrDigit(buffer.charAt(currentPosition)) ||
                     buffer.charAt(currentPosition) == '_' ||
                     buffer.charAt(currentPosition) == '-')) {
-                identifier.append(buffer.charAt(currentPosition));
                 currentPosition++;
             }
 
-            String word = identifier.toString();
             currentTokenType = ClassicASPTokenTypes.HTML_ATTRIBUTE;
-            // System.out.println("Token: HTML_ATTRIBUTE -> " + word);
             return;
         }
 
@@ -399,15 +343,12 @@ public class ClassicASPMergingLexer extends LexerBase {
 
         // 处理HTML文本内容
         if (Character.isLetterOrDigit(currentChar) || currentChar == ' ') {
-            StringBuilder text = new StringBuilder();
             while (currentPosition < end &&
                    buffer.charAt(currentPosition) != '<' &&
                    buffer.charAt(currentPosition) != '>') {
-                text.append(buffer.charAt(currentPosition));
                 currentPosition++;
             }
             currentTokenType = ClassicASPTokenTypes.HTML_TEXT;
-            // System.out.println("Token: HTML_TEXT -> " + text.toString().trim());
             return;
         }
 
@@ -417,43 +358,61 @@ public class ClassicASPMergingLexer extends LexerBase {
         // System.out.println("Token: BAD_CHARACTER -> " + currentChar);
     }
 
-    private IElementType getKeywordTokenType(String word) {
-        String lowerWord = word.toLowerCase();
-
-        switch (lowerWord) {
-            case "dim": return ClassicASPTokenTypes.DIM;
-            case "set": return ClassicASPTokenTypes.SET;
-            case "if": return ClassicASPTokenTypes.IF;
-            case "then": return ClassicASPTokenTypes.THEN;
-            case "else": return ClassicASPTokenTypes.ELSE;
-            case "for": return ClassicASPTokenTypes.FOR;
-            case "next": return ClassicASPTokenTypes.NEXT;
-            case "while": return ClassicASPTokenTypes.WHILE;
-            case "wend": return ClassicASPTokenTypes.WEND;
-            case "do": return ClassicASPTokenTypes.DO;
-            case "loop": return ClassicASPTokenTypes.LOOP;
-            case "function": return ClassicASPTokenTypes.FUNCTION;
-            case "sub": return ClassicASPTokenTypes.SUB;
-            case "class": return ClassicASPTokenTypes.CLASS;
-            case "public": return ClassicASPTokenTypes.PUBLIC;
-            case "private": return ClassicASPTokenTypes.PRIVATE;
-            case "response.write": return ClassicASPTokenTypes.RESPONSE_WRITE;
-            case "request.form": return ClassicASPTokenTypes.REQUEST_FORM;
-            case "request.querystring": return ClassicASPTokenTypes.REQUEST_QUERYSTRING;
-            case "server.createobject": return ClassicASPTokenTypes.SERVER_CREATEOBJECT;
-            case "session": return ClassicASPTokenTypes.SESSION;
-            case "application": return ClassicASPTokenTypes.APPLICATION;
-            case "array": return ClassicASPTokenTypes.ARRAY;
-            case "each": return ClassicASPTokenTypes.EACH;
-            case "in": return ClassicASPTokenTypes.IN;
-            case "response": return ClassicASPTokenTypes.RESPONSE;
-            case "request": return ClassicASPTokenTypes.REQUEST;
-            case "server": return ClassicASPTokenTypes.SERVER;
-            case "select": return ClassicASPTokenTypes.SELECT;
-            case "case": return ClassicASPTokenTypes.CASE;
-            case "property": return ClassicASPTokenTypes.PROPERTY;
-            default: return ClassicASPTokenTypes.IDENTIFIER;
-        }
+    private boolean isEndWord(int wordStart) {
+        return (buffer.charAt(wordStart) | 0x20) == 'e' &&
+               (buffer.charAt(wordStart + 1) | 0x20) == 'n' &&
+               (buffer.charAt(wordStart + 2) | 0x20) == 'd';
+    }
+
+    private static Map<String, IElementType> keywordTokens() {
+        Map<String, IElementType> map = new HashMap<>();
+        map.put("dim", ClassicASPTokenTypes.DIM);
+        map.put("set", ClassicASPTokenTypes.SET);
+        map.put("if", ClassicASPTokenTypes.IF);
+        map.put("then", ClassicASPTokenTypes.THEN);
+        map.put("else", ClassicASPTokenTypes.ELSE);
+        map.put("for", ClassicASPTokenTypes.FOR);
+        map.put("next", ClassicASPTokenTypes.NEXT);
+        map.put("while", ClassicASPTokenTypes.WHILE);
+        map.put("wend", ClassicASPTokenTypes.WEND);
+        map.put("do", ClassicASPTokenTypes.DO);
+        map.put("loop", ClassicASPTokenTypes.LOOP);
+        map.put("function", ClassicASPTokenTypes.FUNCTION);
+        map.put("sub", ClassicASPTokenTypes.SUB);
+        map.put("class", ClassicASPTokenTypes.CLASS);
+        map.put("public", ClassicASPTokenTypes.PUBLIC);
+        map.put("private", ClassicASPTokenTypes.PRIVATE);
+        map.put("response.write", ClassicASPTokenTypes.RESPONSE_WRITE);
+        map.put("request.form", ClassicASPTokenTypes.REQUEST_FORM);
+        map.put("request.querystring", ClassicASPTokenTypes.REQUEST_QUERYSTRING);
+        map.put("server.createobject", ClassicASPTokenTypes.SERVER_CREATEOBJECT);
+        map.put("session", ClassicASPTokenTypes.SESSION);
+        map.put("application", ClassicASPTokenTypes.APPLICATION);
+        map.put("array", ClassicASPTokenTypes.ARRAY);
+        map.put("each", ClassicASPTokenTypes.EACH);
+        map.put("in", ClassicASPTokenTypes.IN);
+        map.put("response", ClassicASPTokenTypes.RESPONSE);
+        map.put("request", ClassicASPTokenTypes.REQUEST);
+        map.put("server", ClassicASPTokenTypes.SERVER);
+        map.put("select", ClassicASPTokenTypes.SELECT);
+        map.put("case", ClassicASPTokenTypes.CASE);
+        map.put("property", ClassicASPTokenTypes.PROPERTY);
+        return map;
+    }
+
+    private static Map<String, IElementType> endKeywordTokens() {
+        Map<String, IElementType> map = new HashMap<>();
+        map.put("if", ClassicASPTokenTypes.END_IF);
+        map.put("function", ClassicASPTokenTypes.END_FUNCTION);
+        map.put("sub", ClassicASPTokenTypes.END_SUB);
+        map.put("for", ClassicASPTokenTypes.END_FOR);
+        map.put("while", ClassicASPTokenTypes.END_WHILE);
+        map.put("do", ClassicASPTokenTypes.END_DO);
+        map.put("loop", ClassicASPTokenTypes.END_LOOP);
+        map.put("select", ClassicASPTokenTypes.END_SELECT);
+        map.put("property", ClassicASPTokenTypes.END_PROPERTY);
+        map.put("class", ClassicASPTokenTypes.END_CLASS);
+        return map;
     }
 
     private IElementType getSingleCharTokenType(char c) {
@@ -488,45 +447,4 @@ public class ClassicASPMergingLexer extends LexerBase {
     public int getBufferEnd() {
         return end;
     }
-
-    /**
-     * 将关键词转换为大驼峰格式
-     * 例如：end if -> End If
-     */
-    private String normalizeKeyword(String word) {
-        String lowerWord = word.toLowerCase();
-
-                    // 检查是否是关键词
-            switch (lowerWord) {
-                case "if":
-                case "then":
-                case "else":
-                case "end":
-                case "for":
-                case "next":
-                case "while":
-                case "wend":
-                case "do":
-                case "loop":
-                case "function":
-                case "sub":
-                case "dim":
-                case "set":
-                case "select":
-                case "case":
-                case "property":
-                case "each":
-                case "in":
-                case "response":
-                case "request":
-                case "server":
-                case "session":
-                case "application":
-                case "array":
-                    // 转换为大驼峰格式
-                    return word.substring(0, 1).toUpperCase() + word.substring(1).toLowerCase();
-                default:
-                    return word; // 非关键词保持原样
-            }
-    }
-}
\ No newline at end of file
+}
@@ -1,21 +1,45 @@
 package com.ferock.classicasp.highlighter;
 
+import com.ferock.classicasp.CaseInsensitiveLookup;
 import com.ferock.classicasp.SpecRegistry;
 import com.intellij.lexer.FlexAdapter;
 import com.intellij.lexer.Lexer;
 import com.intellij.lexer.LexerBase;
+import com.intellij.lexer.RestartableLexer;
+import com.intellij.lexer.TokenIterator;
 import com.intellij.psi.TokenType;
 import com.intellij.psi.tree.IElementType;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 /**
  * 轻量级语义包装词法器：
  * 将 DOT 后紧邻的 IDENTIFIER/WRITE 在满足对象方法或系统函数的情况下重写为 OBJECT_METHOD。
+ *
+ * 重写所需的上下文全部编码进 getState()，编辑器可在任意 token 边界重新开始词法分析：
+ * <pre>
+ *   bit 0-7   委托 Flex 词法器状态
+ *   bit 8     上一个显著 token 是否为 DOT
+ *   bit 9-    上一个标识符：0=无，1=非已知对象，2+k=已知对象表中的第 k 个对象
+ * </pre>
  */
-public class MethodAwareLexer extends LexerBase {
+public class MethodAwareLexer extends LexerBase implements RestartableLexer {
+    private static final int DELEGATE_STATE_MASK = 0xFF;
+    private static final int AFTER_DOT_BIT = 1 << 8;
+    private static final int IDENTIFIER_SHIFT = 9;
+
+    private static final int NO_IDENTIFIER = 0;
+    private static final int UNKNOWN_IDENTIFIER = 1;
+    private static final int FIRST_OBJECT_ID = 2;
+
+    private static volatile Tables tables;
+
     private final Lexer delegate;
 
     private CharSequence buffer;
@@ -25,11 +49,12 @@ public class MethodAwareLexer extends LexerBase {
     private int tokenEnd;
     private IElementType tokenType;
 
-    private IElementType lastSignificantTokenType;
     private boolean rewriteLogEmitted = false;
 
-    // 为了判定对象名，记录上一个标识符内容
-    private String lastIdentifierText = null;
+    // 当前 token 之前的上下文（均可由状态恢复）
+    private boolean afterDot = false;
+    // 为了判定对象名，记录上一个标识符：见 NO_IDENTIFIER / UNKNOWN_IDENTIFIER / FIRST_OBJECT_ID
+    private int lastIdentifierId = NO_IDENTIFIER;
 
     public MethodAwareLexer() {
         this.delegate = new FlexAdapter(new com.ferock.classicasp.ClassicASPLexer(null));
@@ -39,16 +64,35 @@ public class MethodAwareLexer extends LexerBase {
     public void start(@NotNull CharSequence buffer, int startOffset, int endOffset, int initialState) {
         this.buffer = buffer;
         this.endOffset = endOffset;
-        this.lastSignificantTokenType = null;
         this.rewriteLogEmitted = false;
-        this.lastIdentifierText = null;
+        this.afterDot = (initialState & AFTER_DOT_BIT) != 0;
+        this.lastIdentifierId = initialState >>> IDENTIFIER_SHIFT;
 
-        delegate.start(buffer, startOffset, endOffset, initialState);
+        delegate.start(buffer, startOffset, endOffset, initialState & DELEGATE_STATE_MASK);
         pullAndRewrite();
     }
 
     @Override
-    public int getState() { return delegate.getState(); }
+    public void start(@NotNull CharSequence buffer, int startOffset, int endOffset, int initialState, TokenIterator tokenIterator) {
+        // 状态已完整描述上下文，无需回看之前的 token
+        start(buffer, startOffset, endOffset, initialState);
+    }
+
+    @Override
+    public int getStartState() { return 0; }
+
+    @Override
+    public boolean isRestartableState(int state) {
+        // 所有上下文都已编码进状态，任意 token 边界都可以重新开始
+        return true;
+    }
+
+    @Override
+    public int getState() {
+        int state = delegate.getState() & DELEGATE_STATE_MASK;
+        if (afterDot) state |= AFTER_DOT_BIT;
+        return state | (lastIdentifierId << IDENTIFIER_SHIFT);
+    }
 
     @Override
     public IElementType getTokenType() { return tokenType; }
@@ -62,7 +106,7 @@ public class MethodAwareLexer extends LexerBase {
     @Override
     public void advance() {
         if (tokenType != null && !isWhitespaceOrComment(tokenType)) {
-            lastSignificantTokenType = tokenType;
+            afterDot = tokenType == com.ferock.classicasp.psi.ClassicASTypes.DOT;
             // 记录最近一次可作为“对象名”的文本
             if (tokenType == com.ferock.classicasp.psi.ClassicASTypes.IDENTIFIER ||
                 tokenType == com.ferock.classicasp.psi.ClassicASTypes.WRITE ||
@@ -72,7 +116,7 @@ public class MethodAwareLexer extends LexerBase {
                 tokenType == com.ferock.classicasp.psi.ClassicASTypes.SESSION ||
                 tokenType == com.ferock.classicasp.psi.ClassicASTypes.APPLICATION ||
                 tokenType == ClassicASPTokenTypes.ERR) {
-                lastIdentifierText = buffer.subSequence(tokenStart, tokenEnd).toString();
+                lastIdentifierId = tables().idOf(buffer, tokenStart, tokenEnd);
             }
         }
         delegate.advance();
@@ -95,26 +139,12 @@ public class MethodAwareLexer extends LexerBase {
         tokenStart = delegate.getTokenStart();
         tokenEnd = delegate.getTokenEnd();
 
-        // 规则A：将 On / Error / Resume / Err / Goto 等识别为关键字（词法层）
+        // 规则A：将 On / Error / Resume / Err / Goto 以及 YAML keywords.* 中的词识别为关键字（词法层）
+        // 查询直接作用于缓冲区区间，不为每个 token 创建字符串
         if (tokenType == com.ferock.classicasp.psi.ClassicASTypes.IDENTIFIER) {
-            String text = buffer.subSequence(tokenStart, tokenEnd).toString();
-            String lower = text.toLowerCase();
-            if ("on".equals(lower)) {
-                tokenType = ClassicASPTokenTypes.ON;
-            } else if ("error".equals(lower)) {
-                tokenType = ClassicASPTokenTypes.ERROR;
-            } else if ("resume".equals(lower)) {
-                tokenType = ClassicASPTokenTypes.RESUME;
-            } else if ("err".equals(lower)) {
-                tokenType = ClassicASPTokenTypes.ERR;
-            } else if ("goto".equals(lower)) {
-                tokenType = ClassicASPTokenTypes.GOTO;
-            } else {
-                // YAML 驱动：若存在于 keywords.* 任一分组，则作为通用关键字高亮
-                Set<String> yamlKeywords = SpecRegistry.getKeywords();
-                if (yamlKeywords != null && yamlKeywords.contains(lower)) {
-                    tokenType = ClassicASPTokenTypes.KEYWORD_GENERIC;
-                }
+            IElementType keyword = tables().keywords.get(buffer, tokenStart, tokenEnd);
+            if (keyword != null) {
+                tokenType = keyword;
             }
         }
 
@@ -128,22 +158,16 @@ public class MethodAwareLexer extends LexerBase {
     }
 
     private boolean isAfterDotWithKnownObject() {
-        if (lastSignificantTokenType != com.ferock.classicasp.psi.ClassicASTypes.DOT) return false;
-        // DOT 之前应当是对象名；我们已在 advance 时记录了上一个标识符文本
-        // 这里需要再往前取一次：在 DOT 之前的上一个显著 token 应该是 IDENTIFIER（对象名）
-        // 简化：使用 lastIdentifierText 作为对象名候选
-        String methodName = buffer.subSequence(tokenStart, tokenEnd).toString();
-        String objectName = lastIdentifierText != null ? lastIdentifierText : "";
-        if (objectName.isEmpty()) return false;
-
-        Map<String, Set<String>> objMethods = SpecRegistry.getObjectToMethods();
-        Set<String> sysFns = SpecRegistry.getSysFunctions();
-        Set<String> methods = objMethods.get(objectName.toLowerCase());
-        if (methods != null && methods.contains(methodName.toLowerCase())) {
+        if (!afterDot) return false;
+        // DOT 之前应当是对象名；我们已在 advance 时记录了上一个标识符
+        // 简化：使用 lastIdentifierId 作为对象名候选
+        if (lastIdentifierId == NO_IDENTIFIER) return false;
+        Tables t = tables();
+        if (t.isMethodOf(lastIdentifierId, buffer, tokenStart, tokenEnd)) {
             return true;
         }
         // 兜底：允许系统函数在 DOT 后也着成方法名（例如自定义对象也可能调用内置函数名）
-        return sysFns != null && sysFns.contains(methodName.toLowerCase());
+        return t.sysFunctions.contains(buffer, tokenStart, tokenEnd);
     }
 
     private boolean isMethodNameCandidate(IElementType type) {
@@ -156,4 +180,84 @@ public class MethodAwareLexer extends LexerBase {
                 || type == com.ferock.classicasp.psi.ClassicASTypes.WHITE_SPACE
                 || type == com.ferock.classicasp.psi.ClassicASTypes.COMMENT;
     }
+
+    private static Tables tables() {
+        Set<String> keywords = SpecRegistry.getKeywords();
+        Map<String, Set<String>> objMethods = SpecRegistry.getObjectToMethods();
+        Set<String> sysFns = SpecRegistry.getSysFunctions();
+        Tables t = tables;
+        if (t == null || t.keywordSource != keywords || t.objectSource != objMethods || t.sysFunctionSource != sysFns) {
+            t = new Tables(keywords, objMethods, sysFns);
+            tables = t;
+        }
+        return t;
+    }
+
+    /**
+     * 由 SpecRegistry 表预先构建的大小写不敏感查找表，按表实例缓存
+     * 已知对象按对象名排序编号，用于把“上一个标识符”压缩进 int 状态。
+     */
+    private static final class Tables {
+        private final Set<String> keywordSource;
+        private final Map<String, Set<String>> objectSource;
+        private final Set<String> sysFunctionSource;
+
+        // 标识符 -> 重写后的关键字类型
+        private final CaseInsensitiveLookup<IElementType> keywords;
+        // 对象名 -> 编号
+        private final CaseInsensitiveLookup<Integer> objectIds;
+        // 编号 - FIRST_OBJECT_ID -> 该对象的方法
+        private final List<CaseInsensitiveLookup<Boolean>> objectMethods;
+        private final CaseInsensitiveLookup<Boolean> sysFunctions;
+
+        private Tables(Set<String> keywordSource, Map<String, Set<String>> objectSource, Set<String> sysFunctionSource) {
+            this.keywordSource = keywordSource;
+            this.objectSource = objectSource;
+            this.sysFunctionSource = sysFunctionSource;
+
+            Map<String, IElementType> keywordTypes = new HashMap<>();
+            for (String keyword : keywordSource) {
+                keywordTypes.put(keyword, ClassicASPTokenTypes.KEYWORD_GENERIC);
+            }
+            keywordTypes.put("on", ClassicASPTokenTypes.ON);
+            keywordTypes.put("error", ClassicASPTokenTypes.ERROR);
+            keywordTypes.put("resume", ClassicASPTokenTypes.RESUME);
+            keywordTypes.put("err", ClassicASPTokenTypes.ERR);
+            keywordTypes.put("goto", ClassicASPTokenTypes.GOTO);
+            this.keywords = CaseInsensitiveLookup.of(keywordTypes);
+
+            String[] names = objectSource.keySet().toArray(new String[0]);
+            Arrays.sort(names);
+            Map<String, Integer> ids = new HashMap<>();
+            List<CaseInsensitiveLookup<Boolean>> methods = new ArrayList<>(names.length);
+            for (int i = 0; i < names.length; i++) {
+                ids.put(names[i], FIRST_OBJECT_ID + i);
+                methods.add(CaseInsensitiveLookup.of(asLookupSource(objectSource.get(names[i]))));
+            }
+            this.objectIds = CaseInsensitiveLookup.of(ids);
+            this.objectMethods = methods;
+            this.sysFunctions = CaseInsensitiveLookup.of(asLookupSource(sysFunctionSource));
+        }
+
+        int idOf(CharSequence text, int start, int end) {
+            if (start >= end) return NO_IDENTIFIER;
+            Integer id = objectIds.get(text, start, end);
+            return id != null ? id : UNKNOWN_IDENTIFIER;
+        }
+
+        boolean isMethodOf(int id, CharSequence text, int start, int end) {
+            int index = id - FIRST_OBJECT_ID;
+            return index >= 0 && index < objectMethods.size() && objectMethods.get(index).contains(text, start, end);
+        }
+
+        private static Map<String, Boolean> asLookupSource(Set<String> values) {
+            Map<String, Boolean> map = new HashMap<>();
+            if (values != null) {
+                for (String value : values) {
+                    map.put(value, Boolean.TRUE);
+                }
+            }
+            return map;
+        }
+    }
 }
@@ -0,0 +1,167 @@
+package com.ferock.classicasp.index;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.IndexNotReadyException;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.util.indexing.FileBasedIndex;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * #include 包含关系图
+ * 直接包含来自 AspIncludeIndex；传递闭包按广度优先计算（近的包含在前），
+ * 以 CachedValue 缓存在 PsiFile 上，依赖闭包内每个文件的修改时间戳，
+ * 因此只有闭包中某个文件变化（或文件增删）时才重新计算。
+ * 环形包含通过已访问集合自然终止，深层链按队列迭代，不会递归。
+ */
+public final class AspIncludeGraph {
+
+    private static final Key<CachedValue<List<VirtualFile>>> CLOSURE_KEY = Key.create("com.ferock.classicasp.includeClosure");
+
+    private AspIncludeGraph() {}
+
+    /**
+     * 获取文件直接或间接包含的所有文件（不含自身）
+     * @param file 文件
+     * @return 按广度优先顺序排列的被包含文件
+     */
+    @NotNull
+    public static List<VirtualFile> getIncludeClosure(@NotNull PsiFile file) {
+        PsiFile original = file.getOriginalFile();
+        if (original.getVirtualFile() == null) return Collections.emptyList();
+        return CachedValuesManager.getCachedValue(original, CLOSURE_KEY, () -> computeClosure(original));
+    }
+
+    private static CachedValueProvider.Result<List<VirtualFile>> computeClosure(@NotNull PsiFile file) {
+        Project project = file.getProject();
+        VirtualFile root = file.getVirtualFile();
+
+        List<Object> dependencies = new ArrayList<>();
+        // 新建、删除、移动文件可能让原本无法解析的包含变为可解析
+        dependencies.add(VirtualFileManager.VFS_STRUCTURE_MODIFICATIONS);
+        // 索引就绪前使用的是文本扫描结果
+        dependencies.add(DumbService.getInstance(project).getModificationTracker());
+
+        Set<VirtualFile> visited = new LinkedHashSet<>();
+        ArrayDeque<VirtualFile> queue = new ArrayDeque<>();
+        visited.add(root);
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            VirtualFile current = queue.poll();
+            addFileDependency(dependencies, current);
+            for (VirtualFile included : getDirectIncludes(project, current)) {
+                if (visited.add(included)) {
+                    queue.add(included);
+                }
+            }
+        }
+
+        visited.remove(root);
+        List<VirtualFile> closure = Collections.unmodifiableList(new ArrayList<>(visited));
+        return CachedValueProvider.Result.create(closure, dependencies.toArray());
+    }
+
+    private static void addFileDependency(List<Object> dependencies, VirtualFile file) {
+        // 已打开的文档可能有未保存的修改，时间戳以文档为准
+        Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+        dependencies.add(document != null ? document : file);
+    }
+
+    /**
+     * 获取文件直接包含的文件（按指令在文件中出现的顺序，无法解析的路径被忽略）
+     * @param project 项目
+     * @param file 文件
+     * @return 被包含文件
+     */
+    @NotNull
+    public static List<VirtualFile> getDirectIncludes(@NotNull Project project, @NotNull VirtualFile file) {
+        Map<String, Integer> includes = readIncludes(project, file);
+        if (includes.isEmpty()) return Collections.emptyList();
+
+        List<Map.Entry<String, Integer>> ordered = new ArrayList<>(includes.entrySet());
+        ordered.sort(Map.Entry.comparingByValue());
+        List<VirtualFile> result = new ArrayList<>(ordered.size());
+        for (Map.Entry<String, Integer> entry : ordered) {
+            VirtualFile target = resolve(project, file, entry.getKey());
+            if (target != null) {
+                result.add(target);
+            }
+        }
+        return result;
+    }
+
+    private static Map<String, Integer> readIncludes(Project project, VirtualFile file) {
+        if (!VBScriptSymbolIndex.isIndexedFile(file)) return Collections.emptyMap();
+        if (!DumbService.isDumb(project)) {
+            try {
+                return FileBasedIndex.getInstance().getFileData(AspIncludeIndex.NAME, file, project);
+            } catch (IndexNotReadyException e) {
+                // 回退到文本扫描
+            }
+        }
+        Document document = FileDocumentManager.getInstance().getDocument(file);
+        return document != null ? AspIncludeIndex.scan(document.getImmutableCharSequence()) : Collections.emptyMap();
+    }
+
+    /**
+     * 解析包含目标
+     * file="..." 相对于当前文件所在目录；virtual="/..." 相对于站点根目录（文件所在的内容根），
+     * 不以 / 开头的 virtual 路径同样相对于当前目录。路径按 IIS 的习惯大小写不敏感。
+     * @param project 项目
+     * @param from 包含指令所在文件
+     * @param key AspIncludeIndex 的键
+     * @return 目标文件；无法解析时返回 null
+     */
+    @Nullable
+    public static VirtualFile resolve(@NotNull Project project, @NotNull VirtualFile from, @NotNull String key) {
+        boolean virtual = key.startsWith(AspIncludeIndex.VIRTUAL_PREFIX);
+        String path = key.substring(virtual ? AspIncludeIndex.VIRTUAL_PREFIX.length() : AspIncludeIndex.FILE_PREFIX.length());
+
+        VirtualFile base = from.getParent();
+        if (virtual && path.startsWith("/")) {
+            VirtualFile contentRoot = ProjectFileIndex.getInstance(project).getContentRootForFile(from);
+            if (contentRoot != null) base = contentRoot;
+        }
+        if (base == null) return null;
+
+        VirtualFile current = base;
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) continue;
+            if (segment.equals("..")) {
+                current = current.getParent();
+            } else {
+                current = findChildIgnoreCase(current, segment);
+            }
+            if (current == null) return null;
+        }
+        return current.isDirectory() ? null : current;
+    }
+
+    @Nullable
+    private static VirtualFile findChildIgnoreCase(@NotNull VirtualFile dir, @NotNull String name) {
+        VirtualFile child = dir.findChild(name);
+        if (child != null || !dir.isDirectory()) return child;
+        for (VirtualFile candidate : dir.getChildren()) {
+            if (candidate.getName().equalsIgnoreCase(name)) return candidate;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,140 @@
+package com.ferock.classicasp.index;
+
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileBasedIndexExtension;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorIntegerDescriptor;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * #include 指令索引
+ * 键为文件直接包含的目标（"file:" 或 "virtual:" 前缀加原始路径，反斜杠统一为 /），
+ * 值为路径在文件中首次出现的偏移。包含关系图与传递闭包由 AspIncludeGraph 基于此索引构建。
+ */
+public class AspIncludeIndex extends FileBasedIndexExtension<String, Integer> {
+
+    public static final ID<String, Integer> NAME = ID.create("com.ferock.classicasp.AspIncludeIndex");
+
+    public static final String FILE_PREFIX = "file:";
+    public static final String VIRTUAL_PREFIX = "virtual:";
+
+    @NotNull
+    @Override
+    public ID<String, Integer> getName() {
+        return NAME;
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, Integer, FileContent> getIndexer() {
+        return inputData -> scan(inputData.getContentAsText());
+    }
+
+    @NotNull
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @NotNull
+    @Override
+    public DataExternalizer<Integer> getValueExternalizer() {
+        return EnumeratorIntegerDescriptor.INSTANCE;
+    }
+
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return VBScriptSymbolIndex::isIndexedFile;
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    /**
+     * 扫描 <!--#include file="..."--> 与 <!--#include virtual="..."--> 指令
+     * 指令名与属性名大小写不敏感，引号可为单引号、双引号或省略。
+     * @param text 文件内容
+     * @return 包含目标键 -> 首次出现的偏移
+     */
+    public static Map<String, Integer> scan(CharSequence text) {
+        Map<String, Integer> includes = new HashMap<>();
+        int length = text.length();
+        int pos = 0;
+        while ((pos = indexOf(text, "<!--", pos)) >= 0) {
+            pos += 4;
+            int p = skipSpaces(text, pos);
+            if (!regionMatches(text, p, "#include")) continue;
+            p = skipSpaces(text, p + 8);
+
+            String prefix;
+            if (regionMatches(text, p, "file")) {
+                prefix = FILE_PREFIX;
+                p += 4;
+            } else if (regionMatches(text, p, "virtual")) {
+                prefix = VIRTUAL_PREFIX;
+                p += 7;
+            } else {
+                continue;
+            }
+            p = skipSpaces(text, p);
+            if (p >= length || text.charAt(p) != '=') continue;
+            p = skipSpaces(text, p + 1);
+            if (p >= length) break;
+
+            char quote = text.charAt(p);
+            int start;
+            int end;
+            if (quote == '"' || quote == '\'') {
+                start = p + 1;
+                end = start;
+                while (end < length && text.charAt(end) != quote && text.charAt(end) != '\n') end++;
+            } else {
+                start = p;
+                end = start;
+                while (end < length && !Character.isWhitespace(text.charAt(end)) && !regionMatches(text, end, "-->")) end++;
+            }
+            String path = text.subSequence(start, end).toString().trim().replace('\\', '/');
+            if (!path.isEmpty()) {
+                includes.putIfAbsent(prefix + path, start);
+            }
+            pos = end;
+        }
+        return includes;
+    }
+
+    private static int indexOf(CharSequence text, String needle, int from) {
+        for (int i = from, last = text.length() - needle.length(); i <= last; i++) {
+            if (regionMatches(text, i, needle)) return i;
+        }
+        return -1;
+    }
+
+    private static boolean regionMatches(CharSequence text, int pos, String lower) {
+        if (pos < 0 || pos + lower.length() > text.length()) return false;
+        for (int i = 0; i < lower.length(); i++) {
+            if (Character.toLowerCase(text.charAt(pos + i)) != lower.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static int skipSpaces(CharSequence text, int pos) {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+        return pos;
+    }
+}
@@ -0,0 +1,67 @@
+package com.ferock.classicasp.index;
+
+import java.util.Objects;
+
+/**
+ * VBScript 符号定义（Function、Sub、Property、Class、Const、Dim 等）
+ * 作为符号索引的值保存：名称保留定义处的大小写，偏移指向名称的首字符。
+ */
+public final class VBScriptSymbol {
+
+    public enum Kind {
+        FUNCTION,
+        SUB,
+        PROPERTY,
+        CLASS,
+        CONST,
+        // Dim 或顶层 Public/Private 声明的变量
+        VARIABLE,
+        // 类内（过程外）Dim/Public/Private 声明的成员
+        FIELD
+    }
+
+    public final String name;
+    public final Kind kind;
+    public final int offset;
+    // 是否定义在过程（Function/Sub/Property）或类内部，即不在文件顶层
+    public final boolean local;
+
+    public VBScriptSymbol(String name, Kind kind, int offset, boolean local) {
+        this.name = name;
+        this.kind = kind;
+        this.offset = offset;
+        this.local = local;
+    }
+
+    /**
+     * @return 是否可被其它文件（通过 #include）直接引用：过程内的局部定义与类成员除外
+     */
+    public boolean isGlobal() {
+        return !local;
+    }
+
+    /**
+     * @return 是否为可调用的方法（补全时追加括号）
+     */
+    public boolean isCallable() {
+        return kind == Kind.FUNCTION || kind == Kind.SUB;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof VBScriptSymbol)) return false;
+        VBScriptSymbol other = (VBScriptSymbol) o;
+        return offset == other.offset && local == other.local && kind == other.kind && name.equals(other.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, kind, offset, local);
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + name + "@" + offset + (local ? " (local)" : "");
+    }
+}
@@ -0,0 +1,195 @@
+package com.ferock.classicasp.index;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.IndexNotReadyException;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.Processor;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileBasedIndexExtension;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.IOUtil;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 项目级 VBScript 符号索引
+ * 键为小写的符号名，值为该文件中同名的全部定义（名称、类型、偏移）。
+ * 覆盖所有 .asp/.inc 文件，由平台在文件变化时增量更新；
+ * 补全与跳转直接查询索引，不再对文本做正则扫描。
+ */
+public class VBScriptSymbolIndex extends FileBasedIndexExtension<String, List<VBScriptSymbol>> {
+
+    public static final ID<String, List<VBScriptSymbol>> NAME = ID.create("com.ferock.classicasp.VBScriptSymbolIndex");
+
+    private static final VBScriptSymbol.Kind[] KINDS = VBScriptSymbol.Kind.values();
+
+    @NotNull
+    @Override
+    public ID<String, List<VBScriptSymbol>> getName() {
+        return NAME;
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, List<VBScriptSymbol>, FileContent> getIndexer() {
+        return inputData -> VBScriptSymbolScanner.groupByName(VBScriptSymbolScanner.scan(inputData.getContentAsText()));
+    }
+
+    @NotNull
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @NotNull
+    @Override
+    public DataExternalizer<List<VBScriptSymbol>> getValueExternalizer() {
+        return new DataExternalizer<List<VBScriptSymbol>>() {
+            @Override
+            public void save(@NotNull DataOutput out, List<VBScriptSymbol> value) throws IOException {
+                DataInputOutputUtil.writeINT(out, value.size());
+                for (VBScriptSymbol symbol : value) {
+                    IOUtil.writeUTF(out, symbol.name);
+                    out.writeByte(symbol.kind.ordinal());
+                    out.writeBoolean(symbol.local);
+                    DataInputOutputUtil.writeINT(out, symbol.offset);
+                }
+            }
+
+            @Override
+            public List<VBScriptSymbol> read(@NotNull DataInput in) throws IOException {
+                int size = DataInputOutputUtil.readINT(in);
+                List<VBScriptSymbol> value = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    String name = IOUtil.readUTF(in);
+                    VBScriptSymbol.Kind kind = KINDS[in.readByte()];
+                    boolean local = in.readBoolean();
+                    int offset = DataInputOutputUtil.readINT(in);
+                    value.add(new VBScriptSymbol(name, kind, offset, local));
+                }
+                return value;
+            }
+        };
+    }
+
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return VBScriptSymbolIndex::isIndexedFile;
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    /**
+     * @return 文件是否参与索引（.asp 或 .inc）
+     */
+    public static boolean isIndexedFile(@Nullable VirtualFile file) {
+        if (file == null || file.isDirectory()) return false;
+        String ext = file.getExtension();
+        return ext != null && (ext.equalsIgnoreCase("asp") || ext.equalsIgnoreCase("inc"));
+    }
+
+    /**
+     * 获取单个文件的全部符号
+     * 索引未就绪（dumb 模式）或文件不在索引范围内时，直接扫描给定文本。
+     * @param project 项目
+     * @param file 文件，可为 null（如尚未保存的临时文件）
+     * @param text 文件当前内容（用于回退扫描）
+     * @return 小写名称 -> 定义列表
+     */
+    @NotNull
+    public static Map<String, List<VBScriptSymbol>> getFileSymbols(@NotNull Project project, @Nullable VirtualFile file,
+                                                                   @NotNull CharSequence text) {
+        if (file != null && isIndexedFile(file) && !DumbService.isDumb(project)) {
+            try {
+                return FileBasedIndex.getInstance().getFileData(NAME, file, project);
+            } catch (IndexNotReadyException e) {
+                // 索引在查询期间进入 dumb 模式，回退到文本扫描
+            }
+        }
+        return VBScriptSymbolScanner.groupByName(VBScriptSymbolScanner.scan(text));
+    }
+
+    /**
+     * 获取单个文件的全部符号，回退扫描时读取文件的文档内容
+     * @param project 项目
+     * @param file 文件
+     * @return 小写名称 -> 定义列表
+     */
+    @NotNull
+    public static Map<String, List<VBScriptSymbol>> getFileSymbols(@NotNull Project project, @NotNull VirtualFile file) {
+        if (isIndexedFile(file) && !DumbService.isDumb(project)) {
+            try {
+                return FileBasedIndex.getInstance().getFileData(NAME, file, project);
+            } catch (IndexNotReadyException e) {
+                // 回退到文本扫描
+            }
+        }
+        Document document = FileDocumentManager.getInstance().getDocument(file);
+        return document != null ? getFileSymbols(project, null, document.getImmutableCharSequence()) : Collections.emptyMap();
+    }
+
+    /**
+     * 遍历项目中某个名称的所有定义
+     * @param project 项目
+     * @param nameLower 小写名称
+     * @param scope 搜索范围
+     * @param processor 返回 false 时停止
+     * @return 索引不可用时返回 false
+     */
+    public static boolean processDefinitions(@NotNull Project project, @NotNull String nameLower,
+                                             @NotNull GlobalSearchScope scope,
+                                             @NotNull FileBasedIndex.ValueProcessor<List<VBScriptSymbol>> processor) {
+        if (DumbService.isDumb(project)) return false;
+        try {
+            FileBasedIndex.getInstance().processValues(NAME, nameLower, null, processor, scope);
+            return true;
+        } catch (IndexNotReadyException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 遍历项目中出现过的所有小写符号名（可能包含已失效的键，需再用 processDefinitions 确认）
+     * @param project 项目
+     * @param scope 搜索范围
+     * @param processor 返回 false 时停止
+     * @return 索引不可用时返回 false
+     */
+    public static boolean processNames(@NotNull Project project, @NotNull GlobalSearchScope scope,
+                                       @NotNull Processor<? super String> processor) {
+        if (DumbService.isDumb(project)) return false;
+        try {
+            FileBasedIndex.getInstance().processAllKeys(NAME, processor, scope, null);
+            return true;
+        } catch (IndexNotReadyException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.ferock.classicasp.index;
+
+import com.intellij.openapi.progress.ProgressManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * VBScript 声明扫描器
+ * 单次扫描文本中的 ASP 代码区域（跳过 <%= 与 <%@），按语句识别
+ * Function/Sub/Property/Class/Const/Dim 以及 Public/Private 声明。
+ * 字符串、注释（' 与 Rem）、续行符 _ 与冒号分隔的多语句都会正确处理。
+ * 同时供符号索引与索引未就绪时的当前文件回退扫描使用。
+ * 扫描可被取消，但不设时限：索引内容必须只由文件内容决定。
+ */
+public final class VBScriptSymbolScanner {
+
+    private VBScriptSymbolScanner() {}
+
+    /**
+     * 扫描文本中的所有声明
+     * @param text 文件内容
+     * @return 按出现顺序排列的符号
+     */
+    public static List<VBScriptSymbol> scan(CharSequence text) {
+        List<VBScriptSymbol> symbols = new ArrayList<>();
+        if (text != null && text.length() > 0) {
+            new Scanner(text, symbols).run();
+        }
+        return symbols;
+    }
+
+    /**
+     * 按小写名称分组（即符号索引的键）
+     * @param symbols 符号
+     * @return 小写名称 -> 该名称的所有定义
+     */
+    public static Map<String, List<VBScriptSymbol>> groupByName(List<VBScriptSymbol> symbols) {
+        Map<String, List<VBScriptSymbol>> map = new HashMap<>();
+        for (VBScriptSymbol symbol : symbols) {
+            map.computeIfAbsent(symbol.name.toLowerCase(Locale.ROOT), k -> new ArrayList<>(1)).add(symbol);
+        }
+        return map;
+    }
+
+    private static final class Scanner {
+        private final CharSequence text;
+        private final int length;
+        private final List<VBScriptSymbol> symbols;
+
+        // 跨 ASP 区域保持的作用域状态
+        private boolean inProcedure;
+        private boolean inClass;
+
+        // 当前语句的 token（单词与 , ( ) 三种标点）
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private int count;
+
+        private Scanner(CharSequence text, List<VBScriptSymbol> symbols) {
+            this.text = text;
+            this.length = text.length();
+            this.symbols = symbols;
+        }
+
+        private void run() {
+            int pos = 0;
+            while (pos < length) {
+                int open = findOpen(pos);
+                if (open < 0) {
+                    return;
+                }
+                pos = open + 2;
+                if (pos < length && (text.charAt(pos) == '=' || text.charAt(pos) == '@')) {
+                    // 输出表达式与页面指令中没有声明
+                    pos = skipToClose(pos);
+                    continue;
+                }
+                pos = scanCode(pos);
+            }
+        }
+
+        /**
+         * 扫描一个 ASP 代码区域
+         * @return 区域结束标签之后的位置
+         */
+        private int scanCode(int pos) {
+            count = 0;
+            while (pos < length) {
+                char c = text.charAt(pos);
+                if (isClose(pos)) {
+                    endStatement();
+                    return pos + 2;
+                }
+                if (c == '\n' || c == ':') {
+                    endStatement();
+                    ProgressManager.checkCanceled();
+                    pos++;
+                } else if (c == '"') {
+                    pos++;
+                    while (pos < length && text.charAt(pos) != '"' && text.charAt(pos) != '\n' && !isClose(pos)) {
+                        pos++;
+                    }
+                    if (pos < length && text.charAt(pos) == '"') {
+                        pos++;
+                    }
+                } else if (c == '\'') {
+                    pos = skipComment(pos);
+                } else if (Character.isLetter(c)) {
+                    int start = pos;
+                    while (pos < length && isIdentifierPart(text.charAt(pos))) {
+                        pos++;
+                    }
+                    if (count == 0 && pos - start == 3 && matches(start, pos, "rem")) {
+                        pos = skipComment(pos);
+                    } else {
+                        addToken(start, pos);
+                    }
+                } else if (c == '_') {
+                    // 续行符：行尾的 _ 不结束语句
+                    int next = pos + 1;
+                    while (next < length && (text.charAt(next) == ' ' || text.charAt(next) == '\t' || text.charAt(next) == '\r')) {
+                        next++;
+                    }
+                    pos = next < length && text.charAt(next) == '\n' ? next + 1 : pos + 1;
+                } else if (c == ',' || c == '(' || c == ')') {
+                    addToken(pos, pos + 1);
+                    pos++;
+                } else {
+                    pos++;
+                }
+            }
+            endStatement();
+            return length;
+        }
+
+        private void endStatement() {
+            if (count > 0) {
+                parseStatement();
+                count = 0;
+            }
+        }
+
+        private void parseStatement() {
+            if (is(0, "end")) {
+                if (is(1, "function") || is(1, "sub") || is(1, "property")) {
+                    inProcedure = false;
+                } else if (is(1, "class")) {
+                    inClass = false;
+                }
+                return;
+            }
+
+            int i = 0;
+            boolean scoped = false;
+            while (is(i, "public") || is(i, "private")) {
+                scoped = true;
+                i++;
+            }
+            if (is(i, "default")) {
+                i++;
+            }
+            if (i >= count) {
+                return;
+            }
+
+            if (is(i, "class")) {
+                add(i + 1, VBScriptSymbol.Kind.CLASS);
+                inClass = true;
+            } else if (is(i, "function")) {
+                add(i + 1, VBScriptSymbol.Kind.FUNCTION);
+                inProcedure = true;
+            } else if (is(i, "sub")) {
+                add(i + 1, VBScriptSymbol.Kind.SUB);
+                inProcedure = true;
+            } else if (is(i, "property")) {
+                if (is(i + 1, "get") || is(i + 1, "let") || is(i + 1, "set")) {
+                    add(i + 2, VBScriptSymbol.Kind.PROPERTY);
+                }
+                inProcedure = true;
+            } else if (is(i, "const")) {
+                addList(i + 1, VBScriptSymbol.Kind.CONST);
+            } else if (is(i, "dim")) {
+                addList(i + 1, variableKind());
+            } else if (scoped) {
+                // Public/Private x, y
+                addList(i, variableKind());
+            }
+        }
+
+        private VBScriptSymbol.Kind variableKind() {
+            return inClass && !inProcedure ? VBScriptSymbol.Kind.FIELD : VBScriptSymbol.Kind.VARIABLE;
+        }
+
+        /**
+         * 逗号分隔的名称列表：每项取第一个单词，括号内（数组维度）的逗号不分项
+         */
+        private void addList(int i, VBScriptSymbol.Kind kind) {
+            int depth = 0;
+            boolean expectName = true;
+            for (; i < count; i++) {
+                char c = text.charAt(starts[i]);
+                if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    depth = Math.max(0, depth - 1);
+                } else if (c == ',') {
+                    if (depth == 0) expectName = true;
+                } else if (expectName && depth == 0) {
+                    add(i, kind);
+                    expectName = false;
+                }
+            }
+        }
+
+        private void add(int i, VBScriptSymbol.Kind kind) {
+            if (i >= count || !Character.isLetter(text.charAt(starts[i]))) {
+                return;
+            }
+            String name = text.subSequence(starts[i], ends[i]).toString();
+            symbols.add(new VBScriptSymbol(name, kind, starts[i], inProcedure || inClass));
+        }
+
+        private void addToken(int start, int end) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count << 1);
+                ends = Arrays.copyOf(ends, count << 1);
+            }
+            starts[count] = start;
+            ends[count] = end;
+            count++;
+        }
+
+        private boolean is(int i, String keyword) {
+            return i < count && ends[i] - starts[i] == keyword.length() && matches(starts[i], ends[i], keyword);
+        }
+
+        private boolean matches(int start, int end, String keyword) {
+            for (int k = start; k < end; k++) {
+                if (Character.toLowerCase(text.charAt(k)) != keyword.charAt(k - start)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 跳过注释到行尾或区域结束标签（不消费二者）
+         */
+        private int skipComment(int pos) {
+            while (pos < length && text.charAt(pos) != '\n' && !isClose(pos)) {
+                pos++;
+            }
+            return pos;
+        }
+
+        private int skipToClose(int pos) {
+            while (pos < length && !isClose(pos)) {
+                pos++;
+            }
+            return Math.min(length, pos + 2);
+        }
+
+        private int findOpen(int pos) {
+            for (int i = pos; i + 1 < length; i++) {
+                if (text.charAt(i) == '<' && text.charAt(i + 1) == '%') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private boolean isClose(int pos) {
+            return text.charAt(pos) == '%' && pos + 1 < length && text.charAt(pos + 1) == '>';
+        }
+
+        private static boolean isIdentifierPart(char c) {
+            return Character.isLetterOrDigit(c) || c == '_';
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.ferock.classicasp.lexer;
+
+import com.ferock.classicasp.psi.ClassicASPElementTypes;
+import com.intellij.lexer.LexerBase;
+import com.intellij.psi.tree.IElementType;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 声明解析器使用的粗粒度词法器
+ * HTML 部分整段作为 HTML_TEXT；ASP 代码只区分单词、字符串、注释、语句分隔符（换行与冒号）
+ * 以及声明列表需要的逗号和括号，关键字由解析器按文本判断。
+ * 状态完全由 getState 编码，可从任意 token 边界重新开始。
+ */
+public class ClassicASPDeclarationLexer extends LexerBase {
+
+    public static final int STATE_HTML = 0;
+    // ASP 代码，位于语句开头（Rem 注释只在语句开头识别）
+    public static final int STATE_CODE = 1;
+    // ASP 代码，位于语句中间
+    public static final int STATE_CODE_MID = 2;
+
+    private final boolean startInCode;
+
+    private CharSequence buffer;
+    private int endOffset;
+    private int tokenStart;
+    private int tokenEnd;
+    private int state;
+    private int tokenState;
+    private IElementType tokenType;
+
+    public ClassicASPDeclarationLexer() {
+        this(false);
+    }
+
+    /**
+     * @param startInCode 初始状态为 0 时是否从 ASP 代码开始（用于单独解析过程体）
+     */
+    public ClassicASPDeclarationLexer(boolean startInCode) {
+        this.startInCode = startInCode;
+    }
+
+    @Override
+    public void start(@NotNull CharSequence buffer, int startOffset, int endOffset, int initialState) {
+        this.buffer = buffer;
+        this.endOffset = endOffset;
+        this.tokenEnd = startOffset;
+        this.state = initialState == STATE_HTML && startInCode ? STATE_CODE : initialState;
+        advance();
+    }
+
+    @Override
+    public int getState() {
+        return tokenState;
+    }
+
+    @Override
+    public IElementType getTokenType() {
+        return tokenType;
+    }
+
+    @Override
+    public int getTokenStart() {
+        return tokenStart;
+    }
+
+    @Override
+    public int getTokenEnd() {
+        return tokenEnd;
+    }
+
+    @NotNull
+    @Override
+    public CharSequence getBufferSequence() {
+        return buffer;
+    }
+
+    @Override
+    public int getBufferEnd() {
+        return endOffset;
+    }
+
+    @Override
+    public void advance() {
+        tokenStart = tokenEnd;
+        tokenState = state;
+        if (tokenStart >= endOffset) {
+            tokenType = null;
+            return;
+        }
+        if (state == STATE_HTML) {
+            advanceHtml();
+        } else {
+            advanceCode();
+        }
+    }
+
+    private void advanceHtml() {
+        int pos = tokenStart;
+        if (isOpen(pos)) {
+            pos += 2;
+            // <%= 与 <%@ 的标记符号一并归入开始标签
+            if (pos < endOffset && (buffer.charAt(pos) == '=' || buffer.charAt(pos) == '@')) pos++;
+            finish(pos, ClassicASPElementTypes.ASP_OPEN, STATE_CODE);
+            return;
+        }
+        while (pos < endOffset && !isOpen(pos)) pos++;
+        finish(pos, ClassicASPElementTypes.HTML_TEXT, STATE_HTML);
+    }
+
+    private void advanceCode() {
+        int pos = tokenStart;
+        char c = buffer.charAt(pos);
+
+        if (isClose(pos)) {
+            finish(pos + 2, ClassicASPElementTypes.ASP_CLOSE, STATE_HTML);
+        } else if (c == '\n' || c == ':') {
+            finish(pos + 1, ClassicASPElementTypes.STATEMENT_END, STATE_CODE);
+        } else if (c == ' ' || c == '\t' || c == '\r' || c == '\f') {
+            while (pos < endOffset && isSpace(buffer.charAt(pos))) pos++;
+            finish(pos, ClassicASPElementTypes.WHITE_SPACE, state);
+        } else if (c == '\'') {
+            finish(skipComment(pos), ClassicASPElementTypes.COMMENT, STATE_CODE_MID);
+        } else if (c == '"') {
+            pos++;
+            while (pos < endOffset && buffer.charAt(pos) != '\n' && !isClose(pos)) {
+                if (buffer.charAt(pos++) == '"') {
+                    // "" 是字符串内的转义引号
+                    if (pos < endOffset && buffer.charAt(pos) == '"') {
+                        pos++;
+                    } else {
+                        break;
+                    }
+                }
+            }
+            finish(pos, ClassicASPElementTypes.STRING, STATE_CODE_MID);
+        } else if (Character.isLetter(c)) {
+            while (pos < endOffset && (Character.isLetterOrDigit(buffer.charAt(pos)) || buffer.charAt(pos) == '_')) pos++;
+            if (state == STATE_CODE && pos - tokenStart == 3 && isRem(tokenStart)) {
+                finish(skipComment(pos), ClassicASPElementTypes.COMMENT, STATE_CODE_MID);
+            } else {
+                finish(pos, ClassicASPElementTypes.IDENTIFIER, STATE_CODE_MID);
+            }
+        } else if (c == '_' && isLineContinuation(pos + 1)) {
+            // 续行符连同换行作为空白，语句不结束
+            int next = pos + 1;
+            while (buffer.charAt(next) != '\n') next++;
+            finish(next + 1, ClassicASPElementTypes.WHITE_SPACE, state);
+        } else if (c == ',') {
+            finish(pos + 1, ClassicASPElementTypes.COMMA, STATE_CODE_MID);
+        } else if (c == '(') {
+            finish(pos + 1, ClassicASPElementTypes.LPAREN, STATE_CODE_MID);
+        } else if (c == ')') {
+            finish(pos + 1, ClassicASPElementTypes.RPAREN, STATE_CODE_MID);
+        } else {
+            finish(pos + 1, ClassicASPElementTypes.OTHER, STATE_CODE_MID);
+        }
+    }
+
+    private void finish(int end, IElementType type, int nextState) {
+        tokenEnd = end;
+        tokenType = type;
+        state = nextState;
+    }
+
+    private int skipComment(int pos) {
+        while (pos < endOffset && buffer.charAt(pos) != '\n' && !isClose(pos)) pos++;
+        return pos;
+    }
+
+    private boolean isLineContinuation(int pos) {
+        while (pos < endOffset && (buffer.charAt(pos) == ' ' || buffer.charAt(pos) == '\t' || buffer.charAt(pos) == '\r')) pos++;
+        return pos < endOffset && buffer.charAt(pos) == '\n';
+    }
+
+    private boolean isRem(int pos) {
+        return (buffer.charAt(pos) | 0x20) == 'r' && (buffer.charAt(pos + 1) | 0x20) == 'e' && (buffer.charAt(pos + 2) | 0x20) == 'm';
+    }
+
+    private boolean isOpen(int pos) {
+        return buffer.charAt(pos) == '<' && pos + 1 < endOffset && buffer.charAt(pos + 1) == '%';
+    }
+
+    private boolean isClose(int pos) {
+        return buffer.charAt(pos) == '%' && pos + 1 < endOffset && buffer.charAt(pos + 1) == '>';
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\f';
+    }
+}
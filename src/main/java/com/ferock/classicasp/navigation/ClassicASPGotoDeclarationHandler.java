@@ -2,14 +2,29 @@ package com.ferock.classicasp.navigation;
 
 import com.intellij.codeInsight.navigation.actions.GotoDeclarationHandler;
 import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.fileTypes.FileTypeRegistry;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.NotNull;
 import com.ferock.classicasp.ASPSectionDetector;
-
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import com.ferock.classicasp.ClassicASPFileType;
+import com.ferock.classicasp.AspSectionIndex;
+import com.ferock.classicasp.index.AspIncludeGraph;
+import com.ferock.classicasp.index.VBScriptSymbol;
+import com.ferock.classicasp.index.VBScriptSymbolIndex;
+import com.ferock.classicasp.psi.ClassicASPDeclaration;
+import com.ferock.classicasp.psi.stubs.ClassicASPDeclarationIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 
 public class ClassicASPGotoDeclarationHandler implements GotoDeclarationHandler {
 
@@ -19,12 +34,12 @@ public class ClassicASPGotoDeclarationHandler implements GotoDeclarationHandler
         PsiFile file = sourceElement.getContainingFile();
         if (file == null) return PsiElement.EMPTY_ARRAY;
 
-        String text = file.getText();
-        if (text == null || text.isEmpty()) return PsiElement.EMPTY_ARRAY;
+        CharSequence text = editor != null ? editor.getDocument().getImmutableCharSequence() : file.getViewProvider().getContents();
+        if (text == null || text.length() == 0) return PsiElement.EMPTY_ARRAY;
 
-        // 仅在 ASP 区域内启用跳转
-        boolean inAsp = ASPSectionDetector.containsASPCode(text) && ASPSectionDetector.isInASPSection(text, offset);
-        if (!inAsp) return PsiElement.EMPTY_ARRAY;
+        // 仅在 ASP 区域内启用跳转（区域索引按文档修改时间戳缓存）
+        AspSectionIndex sectionIndex = editor != null ? ASPSectionDetector.getIndex(editor.getDocument()) : ASPSectionDetector.getIndex(file);
+        if (!sectionIndex.isInASPSection(offset)) return PsiElement.EMPTY_ARRAY;
 
         // 提取光标下的标识符（大小写不敏感）
         int start = offset - 1;
@@ -38,109 +53,124 @@ public class ClassicASPGotoDeclarationHandler implements GotoDeclarationHandler
             if (Character.isLetterOrDigit(c) || c == '_') end++; else break;
         }
         if (end <= start + 1) return PsiElement.EMPTY_ARRAY;
-        String ident = text.substring(start + 1, end);
-        String identLower = ident.toLowerCase();
-
-        // 仅在 ASP 段内扫描定义位置，优先向上最近的定义
-        int targetOffset = findDefinitionOffset(text, offset, identLower);
-        if (targetOffset < 0) return PsiElement.EMPTY_ARRAY;
+        String ident = text.subSequence(start + 1, end).toString();
+        String identLower = ident.toLowerCase(Locale.ROOT);
+
+        // 先查当前文件（优先光标之前最近的定义），再查项目中其它文件的全局定义
+        Project project = file.getProject();
+        VirtualFile virtualFile = file.getOriginalFile().getVirtualFile();
+        List<VBScriptSymbol> definitions = VBScriptSymbolIndex.getFileSymbols(project, virtualFile, text).get(identLower);
+        VBScriptSymbol local = findDefinition(definitions, offset);
+        if (local != null) {
+            System.out.println("[ASP][GoTo] 跳转: 标识符='" + ident + "', 目标偏移=" + local.offset);
+            return new PsiElement[]{toTarget(file, local)};
+        }
 
-        PsiElement target = file.findElementAt(targetOffset);
-        if (target == null) return PsiElement.EMPTY_ARRAY;
+        // 被 #include 的文件按包含顺序查找，第一个有定义的文件即为目标
+        List<PsiElement> included = findIncludedDefinitions(file, identLower);
+        if (!included.isEmpty()) {
+            return included.toArray(PsiElement.EMPTY_ARRAY);
+        }
 
-        System.out.println("[ASP][GoTo] 跳转: 标识符='" + ident + "', 目标偏移=" + targetOffset);
-        return new PsiElement[]{target};
+        return findProjectDefinitions(project, virtualFile, identLower).toArray(PsiElement.EMPTY_ARRAY);
     }
 
-    private int findDefinitionOffset(@NotNull String text, int fromOffset, @NotNull String identLower) {
-        int[][] sections = ASPSectionDetector.getASPSections(text);
-        if (sections == null || sections.length == 0) return -1;
-
-        // 正则定义（多行、忽略大小写）
-        Pattern dimLine = Pattern.compile("(?im)^\\s*Dim\\b\\s+([^'\\r\\n]+)");
-        Pattern classField = Pattern.compile("(?im)^\\s*(Public|Private)\\b\\s+([A-Za-z_][A-Za-z0-9_]*)\\b(?!\\s*\\()");
-        Pattern funcDecl = Pattern.compile("(?im)^\\s*(Public|Private)?\\s*(Function|Sub)\\s+([A-Za-z_][A-Za-z0-9_]*)\\b");
-        Pattern propDecl = Pattern.compile("(?im)^\\s*(Public|Private)?\\s*Property\\s+(Get|Let|Set)\\s+([A-Za-z_][A-Za-z0-9_]*)\\b");
-
-        int best = -1;
-
-        for (int[] sec : sections) {
-            int s = Math.max(0, sec[0]);
-            int e = Math.min(text.length(), sec[1]);
-            if (s >= e) continue;
-            // 仅考虑当前光标之前的 ASP 内容，优先最近的定义
-            int scanEnd = Math.min(e, fromOffset);
-            if (scanEnd <= s) continue;
-            String asp = text.substring(s, scanEnd);
-
-            // Dim a, b, c
-            Matcher mDim = dimLine.matcher(asp);
-            while (mDim.find()) {
-                int groupStart = mDim.start(1);
-                String list = mDim.group(1);
-                if (list == null) continue;
-                int idx = indexOfIdentifier(list, identLower);
-                if (idx >= 0) {
-                    int abs = s + groupStart + idx;
-                    if (abs > best) best = abs;
-                }
+    /**
+     * 在当前文件的定义中选择目标：光标之前最近的定义；没有时取其后第一个全局定义
+     * （页面底部定义的 Function/Sub 很常见）
+     */
+    @Nullable
+    private VBScriptSymbol findDefinition(@Nullable List<VBScriptSymbol> definitions, int fromOffset) {
+        if (definitions == null || definitions.isEmpty()) return null;
+        VBScriptSymbol before = null;
+        VBScriptSymbol after = null;
+        for (VBScriptSymbol symbol : definitions) {
+            if (symbol.offset < fromOffset) {
+                if (before == null || symbol.offset > before.offset) before = symbol;
+            } else if (symbol.isGlobal() && (after == null || symbol.offset < after.offset)) {
+                after = symbol;
             }
-            // Public/Private foo
-            Matcher mField = classField.matcher(asp);
-            while (mField.find()) {
-                String name = mField.group(2);
-                if (name != null && name.equalsIgnoreCase(identLower)) {
-                    int abs = s + mField.start(2);
-                    if (abs > best) best = abs;
+        }
+        return before != null ? before : after;
+    }
+
+    /**
+     * 在当前文件的包含闭包中查找全局定义
+     */
+    @NotNull
+    private List<PsiElement> findIncludedDefinitions(@NotNull PsiFile file, @NotNull String identLower) {
+        List<PsiElement> targets = new ArrayList<>();
+        Project project = file.getProject();
+        PsiManager psiManager = PsiManager.getInstance(project);
+        for (VirtualFile included : AspIncludeGraph.getIncludeClosure(file)) {
+            List<VBScriptSymbol> symbols = VBScriptSymbolIndex.getFileSymbols(project, included).get(identLower);
+            if (symbols == null) continue;
+            PsiFile psiFile = psiManager.findFile(included);
+            if (psiFile == null) continue;
+            for (VBScriptSymbol symbol : symbols) {
+                if (symbol.isGlobal()) {
+                    targets.add(toTarget(psiFile, symbol));
                 }
             }
-            // Function/Sub name
-            Matcher mFn = funcDecl.matcher(asp);
-            while (mFn.find()) {
-                String name = mFn.group(3);
-                if (name != null && name.equalsIgnoreCase(identLower)) {
-                    int abs = s + mFn.start(3);
-                    if (abs > best) best = abs;
-                }
+            if (!targets.isEmpty()) break;
+        }
+        return targets;
+    }
+
+    /**
+     * 查找项目中其它文件里的全局定义：.asp 文件查声明存根索引，
+     * 没有存根的 .inc 文件查符号索引
+     */
+    @NotNull
+    private List<PsiElement> findProjectDefinitions(@NotNull Project project, @Nullable VirtualFile current, @NotNull String identLower) {
+        List<PsiElement> targets = new ArrayList<>();
+        if (DumbService.isDumb(project)) return targets;
+        GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+        for (ClassicASPDeclaration declaration : ClassicASPDeclarationIndex.find(identLower, project, scope)) {
+            PsiFile psiFile = declaration.getContainingFile();
+            if (psiFile == null || psiFile.getVirtualFile() == null || psiFile.getVirtualFile().equals(current)) continue;
+            // 类成员不是全局定义
+            if (PsiTreeUtil.getStubOrPsiParentOfType(declaration, ClassicASPDeclaration.class) == null) {
+                targets.add(declaration);
             }
-            // Property Get/Let/Set name
-            Matcher mProp = propDecl.matcher(asp);
-            while (mProp.find()) {
-                String name = mProp.group(3);
-                if (name != null && name.equalsIgnoreCase(identLower)) {
-                    int abs = s + mProp.start(3);
-                    if (abs > best) best = abs;
+        }
+        PsiManager psiManager = PsiManager.getInstance(project);
+        VBScriptSymbolIndex.processDefinitions(project, identLower, scope, (candidate, symbols) -> {
+            if (candidate.equals(current) || hasDeclarationStubs(candidate)) return true;
+            PsiFile psiFile = psiManager.findFile(candidate);
+            if (psiFile == null) return true;
+            for (VBScriptSymbol symbol : symbols) {
+                if (symbol.isGlobal()) {
+                    targets.add(new VBScriptSymbolTarget(psiFile, symbol));
                 }
             }
-        }
-        return best;
+            return true;
+        });
+        return targets;
     }
 
-    private int indexOfIdentifier(String list, String identLower) {
-        int i = 0;
-        while (i < list.length()) {
-            // 跳过前导空白
-            while (i < list.length() && Character.isWhitespace(list.charAt(i))) i++;
-            int start = i;
-            while (i < list.length()) {
-                char c = list.charAt(i);
-                if (c == ',' || c == '\r' || c == '\n' || c == '"' || c == '\'') break;
-                i++;
-            }
-            String token = list.substring(start, i).trim();
-            if (!token.isEmpty()) {
-                // 去掉可能的 As 类型声明：x As Integer
-                String name = token.split("\\s+As\\s+", 2)[0].trim();
-                if (name.equalsIgnoreCase(identLower)) {
-                    // 返回该名称在 list 中的相对偏移
-                    int rel = list.toLowerCase().indexOf(name.toLowerCase(), start);
-                    return rel >= 0 ? rel : start;
+    /**
+     * @return 文件是否由声明存根索引覆盖（ClassicASP 文件类型，即 .asp）
+     */
+    private static boolean hasDeclarationStubs(@NotNull VirtualFile file) {
+        return FileTypeRegistry.getInstance().isFileOfType(file, ClassicASPFileType.INSTANCE);
+    }
+
+    /**
+     * 全局定义优先返回存根树中的声明（.asp 文件，读取时不解析过程体）；
+     * 同名同类型的声明可能有多个（如重复的 Dim），按名称偏移确认是索引中的那一个。
+     * .inc 文件与过程内的局部定义使用按偏移定位的目标
+     */
+    @NotNull
+    private static PsiElement toTarget(@NotNull PsiFile psiFile, @NotNull VBScriptSymbol symbol) {
+        if (symbol.isGlobal()) {
+            for (ClassicASPDeclaration declaration : PsiTreeUtil.getStubChildrenOfTypeAsList(psiFile, ClassicASPDeclaration.class)) {
+                if (declaration.getKind() == symbol.kind && symbol.name.equalsIgnoreCase(declaration.getName())
+                        && declaration.getTextOffset() == symbol.offset) {
+                    return declaration;
                 }
             }
-            // 跳过逗号
-            while (i < list.length() && list.charAt(i) != ',') i++;
-            if (i < list.length() && list.charAt(i) == ',') i++;
         }
-        return -1;
+        return new VBScriptSymbolTarget(psiFile, symbol);
     }
-}
\ No newline at end of file
+}
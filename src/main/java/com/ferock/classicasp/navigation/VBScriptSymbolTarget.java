@@ -0,0 +1,77 @@
+package com.ferock.classicasp.navigation;
+
+import com.ferock.classicasp.index.VBScriptSymbol;
+import com.intellij.openapi.fileEditor.OpenFileDescriptor;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.impl.FakePsiElement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 符号定义的跳转目标
+ * 用于没有声明 PSI 的定义（.inc 文件、过程体内的局部定义）：用索引中的偏移构造轻量目标，
+ * 跳转时直接定位到定义名称所在位置，无需解析文件。
+ */
+public class VBScriptSymbolTarget extends FakePsiElement {
+
+    private final PsiFile file;
+    private final VBScriptSymbol symbol;
+
+    public VBScriptSymbolTarget(@NotNull PsiFile file, @NotNull VBScriptSymbol symbol) {
+        this.file = file;
+        this.symbol = symbol;
+    }
+
+    @Override
+    public PsiElement getParent() {
+        return file;
+    }
+
+    @Override
+    public PsiFile getContainingFile() {
+        return file;
+    }
+
+    @Override
+    public String getName() {
+        return symbol.name;
+    }
+
+    @Override
+    public int getTextOffset() {
+        return symbol.offset;
+    }
+
+    @Override
+    public TextRange getTextRange() {
+        return TextRange.from(symbol.offset, symbol.name.length());
+    }
+
+    @Override
+    public boolean canNavigate() {
+        return file.getVirtualFile() != null;
+    }
+
+    @Override
+    public void navigate(boolean requestFocus) {
+        VirtualFile virtualFile = file.getVirtualFile();
+        if (virtualFile != null) {
+            new OpenFileDescriptor(file.getProject(), virtualFile, symbol.offset).navigate(requestFocus);
+        }
+    }
+
+    @Nullable
+    @Override
+    public String getPresentableText() {
+        return symbol.name;
+    }
+
+    @Nullable
+    @Override
+    public String getLocationString() {
+        return file.getName();
+    }
+}
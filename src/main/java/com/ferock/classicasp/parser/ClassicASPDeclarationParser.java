@@ -0,0 +1,395 @@
+package com.ferock.classicasp.parser;
+
+import com.ferock.classicasp.lexer.ClassicASPDeclarationLexer;
+import com.ferock.classicasp.psi.ClassicASPElementTypes;
+import com.intellij.lang.ASTNode;
+import com.intellij.lang.PsiBuilder;
+import com.intellij.lang.PsiParser;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.psi.tree.IElementType;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 容错的声明解析器
+ * 只识别 Class、Function、Sub、Property、Dim、Const 声明，其余语句原样保留为 token，
+ * 从不报告语法错误（不会出现红色波浪线）。
+ * Function/Sub/Property 的过程体折叠为惰性块（PROCEDURE_BODY），不含声明的 <% %> 块
+ * （包括大量的 <%= %> 输出片段）折叠为惰性块（ASP_BLOCK），打开或修改时才单独解析；
+ * 缺少 End 语句时，遇到下一个声明即结束当前过程。
+ */
+public class ClassicASPDeclarationParser implements PsiParser {
+
+    @NotNull
+    @Override
+    public ASTNode parse(@NotNull IElementType root, @NotNull PsiBuilder builder) {
+        PsiBuilder.Marker marker = builder.mark();
+        // 顶层多余的 End Class 等按普通 token 保留
+        new Parser(builder).parseStatements(false);
+        marker.done(root);
+        return builder.getTreeBuilt();
+    }
+
+    /**
+     * 解析惰性块（过程体或代码块）的内容：块内不再识别声明，只保留 token
+     */
+    @NotNull
+    public static ASTNode parseLazyContents(@NotNull IElementType root, @NotNull PsiBuilder builder) {
+        PsiBuilder.Marker marker = builder.mark();
+        while (!builder.eof()) {
+            builder.advanceLexer();
+        }
+        marker.done(root);
+        return builder.getTreeBuilt();
+    }
+
+    /**
+     * 修改后的过程体文本能否单独重新解析：
+     * 与过程头连在一起词法分析时，过程体恰好从一个语句边界开始、以语句边界结束（与完整解析时过程体的边界一致），
+     * 结束时仍处于 ASP 代码中，且不含声明头或 End Function/Sub/Property/Class，
+     * 否则声明结构可能改变，需要重新解析整个文件。
+     * 例如删掉 End Sub 前的换行后，完整解析不再把 End Sub 看作语句开头，过程体会延伸到下一个声明；
+     * 过程头末尾的注释、未闭合字符串或续行符也会吞掉过程体开头插入的内容。
+     * @param header 声明开头到过程体之前的文本
+     * @param text 修改后的过程体文本
+     */
+    public static boolean isSelfContainedBody(@NotNull CharSequence header, @NotNull CharSequence text) {
+        CharSequence buffer = new StringBuilder(header.length() + text.length()).append(header).append(text);
+        ClassicASPDeclarationLexer lexer = new ClassicASPDeclarationLexer(true);
+        lexer.start(buffer);
+        while (lexer.getTokenType() != null && lexer.getTokenStart() < header.length()) {
+            lexer.advance();
+        }
+        if (lexer.getTokenStart() != header.length() || !ClassicASPElementTypes.STATEMENT_BOUNDARIES.contains(lexer.getTokenType())) {
+            return false;
+        }
+        StructureDetector detector = new StructureDetector(false);
+        IElementType last = null;
+        IElementType type;
+        while ((type = lexer.getTokenType()) != null) {
+            if (detector.accept(type, tokenText(lexer))) return false;
+            last = type;
+            lexer.advance();
+        }
+        // 末尾的空白或注释在完整解析时不属于过程体（注释还会吞掉其后的 End 语句）
+        return ClassicASPElementTypes.STATEMENT_BOUNDARIES.contains(last)
+                && lexer.getState() != ClassicASPDeclarationLexer.STATE_HTML;
+    }
+
+    /**
+     * 修改后的代码块文本能否单独重新解析：
+     * 仍是恰好一对 <% ... %>（中间没有 HTML），且不含任何声明（包括 Dim、Const），
+     * 否则块的边界或存根树会改变，需要重新解析整个文件。
+     */
+    public static boolean isSelfContainedCodeBlock(@NotNull CharSequence text) {
+        ClassicASPDeclarationLexer lexer = new ClassicASPDeclarationLexer();
+        lexer.start(text);
+        if (lexer.getTokenType() != ClassicASPElementTypes.ASP_OPEN) return false;
+        lexer.advance();
+        StructureDetector detector = new StructureDetector(true);
+        IElementType type;
+        while ((type = lexer.getTokenType()) != null) {
+            if (type == ClassicASPElementTypes.ASP_CLOSE) {
+                lexer.advance();
+                return lexer.getTokenType() == null;
+            }
+            if (type == ClassicASPElementTypes.ASP_OPEN || type == ClassicASPElementTypes.HTML_TEXT) return false;
+            if (detector.accept(type, tokenText(lexer))) return false;
+            lexer.advance();
+        }
+        return false;
+    }
+
+    private static CharSequence tokenText(ClassicASPDeclarationLexer lexer) {
+        return lexer.getBufferSequence().subSequence(lexer.getTokenStart(), lexer.getTokenEnd());
+    }
+
+    private static boolean isBlockWord(String word) {
+        return word.equalsIgnoreCase("function") || word.equalsIgnoreCase("sub")
+                || word.equalsIgnoreCase("property") || word.equalsIgnoreCase("class");
+    }
+
+    private static boolean isModifier(String word) {
+        return word.equalsIgnoreCase("public") || word.equalsIgnoreCase("private");
+    }
+
+    /**
+     * 逐个 token 判断语句开头是否出现会改变声明结构的单词：
+     * 声明头与 End Function/Sub/Property/Class；包含变量时还有 Dim、Const 与 Public/Private 变量声明
+     */
+    private static final class StructureDetector {
+        private final boolean variables;
+        private boolean statementStart = true;
+        private boolean afterEnd;
+        private boolean afterModifier;
+
+        private StructureDetector(boolean variables) {
+            this.variables = variables;
+        }
+
+        /**
+         * @return 是否发现声明结构
+         */
+        private boolean accept(IElementType type, CharSequence text) {
+            if (type == ClassicASPElementTypes.WHITE_SPACE || type == ClassicASPElementTypes.COMMENT) return false;
+            if (ClassicASPElementTypes.STATEMENT_BOUNDARIES.contains(type)) {
+                statementStart = true;
+                afterEnd = false;
+                afterModifier = false;
+                return false;
+            }
+            if (!statementStart || type != ClassicASPElementTypes.IDENTIFIER) {
+                statementStart = false;
+                return false;
+            }
+            String word = text.toString();
+            if (afterEnd) {
+                statementStart = false;
+                return isBlockWord(word);
+            }
+            if (isBlockWord(word)) return true;
+            if (afterModifier) {
+                if (word.equalsIgnoreCase("default")) return false;
+                statementStart = false;
+                return variables;
+            }
+            if (isModifier(word)) {
+                afterModifier = true;
+            } else if (word.equalsIgnoreCase("end")) {
+                afterEnd = true;
+            } else if (variables && (word.equalsIgnoreCase("dim") || word.equalsIgnoreCase("const"))) {
+                return true;
+            } else {
+                statementStart = false;
+            }
+            return false;
+        }
+    }
+
+    private static final class Parser {
+        private final PsiBuilder builder;
+        // 上一个声明结束后是否仍位于语句开头（过程缺少 End 语句、停在下一个声明处）
+        private boolean atStatementStart;
+
+        private Parser(PsiBuilder builder) {
+            this.builder = builder;
+        }
+
+        /**
+         * 解析语句序列，直到文件结束；类内遇到 End Class 时返回（不消费）
+         */
+        private void parseStatements(boolean inClass) {
+            boolean statementStart = true;
+            while (!builder.eof()) {
+                ProgressManager.checkCanceled();
+                if (builder.getTokenType() == ClassicASPElementTypes.ASP_OPEN && isPlainCodeBlock()) {
+                    // 不含声明的 <% %> 块整体折叠，块内编辑只重新解析该块
+                    PsiBuilder.Marker block = builder.mark();
+                    while (builder.getTokenType() != ClassicASPElementTypes.ASP_CLOSE) {
+                        builder.advanceLexer();
+                    }
+                    builder.advanceLexer();
+                    block.collapse(ClassicASPElementTypes.ASP_BLOCK);
+                    statementStart = true;
+                    continue;
+                }
+                if (isBoundary()) {
+                    builder.advanceLexer();
+                    statementStart = true;
+                    continue;
+                }
+                if (statementStart) {
+                    if (isEnd("class")) {
+                        if (inClass) return;
+                    } else if (parseDeclaration(inClass)) {
+                        statementStart = atStatementStart;
+                        continue;
+                    }
+                }
+                builder.advanceLexer();
+                statementStart = false;
+            }
+        }
+
+        /**
+         * 在语句开头尝试解析声明
+         * @return 是否识别为声明（已消费）
+         */
+        private boolean parseDeclaration(boolean inClass) {
+            PsiBuilder.Marker declaration = builder.mark();
+            atStatementStart = false;
+            boolean scoped = false;
+            while (isWord("public") || isWord("private")) {
+                builder.advanceLexer();
+                scoped = true;
+            }
+            if (scoped && isWord("default")) {
+                builder.advanceLexer();
+            }
+
+            if (!inClass && isWord("class")) {
+                builder.advanceLexer();
+                name();
+                parseStatements(true);
+                consumeEnd();
+                atStatementStart = false;
+                declaration.done(ClassicASPElementTypes.CLASS_DECLARATION);
+                return true;
+            }
+            IElementType procedure = isWord("function") ? ClassicASPElementTypes.FUNCTION_DECLARATION
+                    : isWord("sub") ? ClassicASPElementTypes.SUB_DECLARATION
+                    : isWord("property") ? ClassicASPElementTypes.PROPERTY_DECLARATION
+                    : null;
+            if (procedure != null) {
+                String endWord = builder.getTokenText();
+                builder.advanceLexer();
+                if (procedure == ClassicASPElementTypes.PROPERTY_DECLARATION && (isWord("get") || isWord("let") || isWord("set"))) {
+                    builder.advanceLexer();
+                }
+                name();
+                // 参数表等头部剩余部分
+                while (!builder.eof() && !isBoundary()) {
+                    builder.advanceLexer();
+                }
+                parseBody(endWord);
+                declaration.done(procedure);
+                return true;
+            }
+            if (isWord("const") || isWord("dim")) {
+                IElementType type = isWord("const") ? ClassicASPElementTypes.CONST_DECLARATION : ClassicASPElementTypes.VARIABLE_DECLARATION;
+                builder.advanceLexer();
+                declaration.drop();
+                parseNameList(type);
+                return true;
+            }
+            if (scoped && builder.getTokenType() == ClassicASPElementTypes.IDENTIFIER) {
+                // Public/Private 直接声明变量或类成员
+                declaration.drop();
+                parseNameList(ClassicASPElementTypes.VARIABLE_DECLARATION);
+                return true;
+            }
+            declaration.rollbackTo();
+            return false;
+        }
+
+        /**
+         * 过程体：从头部结束处到 End 语句（或下一个声明、End Class、文件结束）之前，折叠为惰性块
+         */
+        private void parseBody(String endWord) {
+            PsiBuilder.Marker body = builder.mark();
+            boolean statementStart = false;
+            boolean empty = true;
+            while (!builder.eof()) {
+                ProgressManager.checkCanceled();
+                if (isBoundary()) {
+                    statementStart = true;
+                } else if (statementStart && (isEnd(endWord) || isEnd("class") || isDeclarationStart())) {
+                    break;
+                } else {
+                    statementStart = false;
+                }
+                builder.advanceLexer();
+                empty = false;
+            }
+            if (empty) {
+                body.drop();
+            } else {
+                body.collapse(ClassicASPElementTypes.PROCEDURE_BODY);
+            }
+            if (isEnd(endWord)) {
+                consumeEnd();
+            } else {
+                atStatementStart = statementStart;
+            }
+        }
+
+        /**
+         * Dim/Const/Public 之后的名称列表，每个名称是一个声明；括号内的数组维度与初始值表达式跳过
+         */
+        private void parseNameList(IElementType type) {
+            int depth = 0;
+            boolean expectName = true;
+            while (!builder.eof() && !isBoundary()) {
+                IElementType token = builder.getTokenType();
+                if (expectName && depth == 0 && token == ClassicASPElementTypes.IDENTIFIER) {
+                    PsiBuilder.Marker declaration = builder.mark();
+                    name();
+                    declaration.done(type);
+                    expectName = false;
+                    continue;
+                }
+                if (token == ClassicASPElementTypes.LPAREN) {
+                    depth++;
+                } else if (token == ClassicASPElementTypes.RPAREN) {
+                    depth = Math.max(0, depth - 1);
+                } else if (token == ClassicASPElementTypes.COMMA && depth == 0) {
+                    expectName = true;
+                }
+                builder.advanceLexer();
+            }
+        }
+
+        private void name() {
+            if (builder.getTokenType() == ClassicASPElementTypes.IDENTIFIER) {
+                builder.remapCurrentToken(ClassicASPElementTypes.NAME);
+                builder.advanceLexer();
+            }
+        }
+
+        private void consumeEnd() {
+            if (isWord("end")) {
+                builder.advanceLexer();
+                if (builder.getTokenType() == ClassicASPElementTypes.IDENTIFIER) {
+                    builder.advanceLexer();
+                }
+            }
+        }
+
+        /**
+         * 当前 <% 开始的块是否完整闭合且不含任何声明（预读后回退）
+         */
+        private boolean isPlainCodeBlock() {
+            PsiBuilder.Marker marker = builder.mark();
+            builder.advanceLexer();
+            StructureDetector detector = new StructureDetector(true);
+            boolean result = false;
+            while (!builder.eof()) {
+                IElementType type = builder.getTokenType();
+                if (type == ClassicASPElementTypes.ASP_CLOSE) {
+                    result = true;
+                    break;
+                }
+                if (detector.accept(type, builder.getTokenText())) break;
+                builder.advanceLexer();
+            }
+            marker.rollbackTo();
+            return result;
+        }
+
+        private boolean isDeclarationStart() {
+            PsiBuilder.Marker marker = builder.mark();
+            while (isWord("public") || isWord("private") || isWord("default")) {
+                builder.advanceLexer();
+            }
+            boolean result = isWord("function") || isWord("sub") || isWord("property") || isWord("class");
+            marker.rollbackTo();
+            return result;
+        }
+
+        private boolean isEnd(String word) {
+            if (!isWord("end")) return false;
+            PsiBuilder.Marker marker = builder.mark();
+            builder.advanceLexer();
+            boolean result = isWord(word);
+            marker.rollbackTo();
+            return result;
+        }
+
+        private boolean isWord(String word) {
+            return builder.getTokenType() == ClassicASPElementTypes.IDENTIFIER && word.equalsIgnoreCase(builder.getTokenText());
+        }
+
+        private boolean isBoundary() {
+            return ClassicASPElementTypes.STATEMENT_BOUNDARIES.contains(builder.getTokenType());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.ferock.classicasp.psi;
+
+import com.ferock.classicasp.ClassicASPLanguage;
+import com.ferock.classicasp.lexer.ClassicASPDeclarationLexer;
+import com.ferock.classicasp.parser.ClassicASPDeclarationParser;
+import com.intellij.lang.ASTNode;
+import com.intellij.lang.Language;
+import com.intellij.lang.PsiBuilder;
+import com.intellij.lang.PsiBuilderFactory;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.tree.IReparseableElementType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 不含声明的 <% ... %> 块（含 <%= %> 输出片段与 <%@ %> 指令）
+ * 以块边界为界惰性解析；块内编辑后只要仍是一对完整的 <% %> 且没有引入声明，
+ * 平台只重新词法分析并解析这一块，页面上其它成百上千的小块保持不变。
+ */
+public class ClassicASPCodeBlockElementType extends IReparseableElementType {
+
+    public ClassicASPCodeBlockElementType(@NotNull String debugName) {
+        super(debugName, ClassicASPLanguage.INSTANCE);
+    }
+
+    @Override
+    protected ASTNode doParseContents(@NotNull ASTNode chameleon, @NotNull PsiElement psi) {
+        PsiBuilder builder = PsiBuilderFactory.getInstance().createBuilder(psi.getProject(), chameleon,
+                new ClassicASPDeclarationLexer(), getLanguage(), chameleon.getChars());
+        return ClassicASPDeclarationParser.parseLazyContents(this, builder).getFirstChildNode();
+    }
+
+    @Override
+    public boolean isParsable(@Nullable ASTNode parent, @NotNull CharSequence buffer,
+                              @NotNull Language fileLanguage, @NotNull Project project) {
+        return ClassicASPDeclarationParser.isSelfContainedCodeBlock(buffer);
+    }
+}
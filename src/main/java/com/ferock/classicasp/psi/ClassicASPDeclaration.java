@@ -0,0 +1,22 @@
+package com.ferock.classicasp.psi;
+
+import com.ferock.classicasp.index.VBScriptSymbol;
+import com.ferock.classicasp.psi.stubs.ClassicASPDeclarationStub;
+import com.intellij.psi.NavigatablePsiElement;
+import com.intellij.psi.PsiNameIdentifierOwner;
+import com.intellij.psi.StubBasedPsiElement;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 声明（Class、Function、Sub、Property、Const 或 Dim/Public/Private 声明的变量）
+ * 名称与类型保存在存根中，读取时无需解析文件。
+ */
+public interface ClassicASPDeclaration extends StubBasedPsiElement<ClassicASPDeclarationStub>,
+        PsiNameIdentifierOwner, NavigatablePsiElement {
+
+    /**
+     * @return 声明类型；类内的变量为 FIELD
+     */
+    @NotNull
+    VBScriptSymbol.Kind getKind();
+}
@@ -0,0 +1,56 @@
+package com.ferock.classicasp.psi;
+
+import com.ferock.classicasp.index.VBScriptSymbol;
+import com.ferock.classicasp.psi.stubs.ClassicASPDeclarationElementType;
+import com.ferock.classicasp.psi.stubs.ClassicASPStubFileElementType;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.tree.TokenSet;
+
+/**
+ * 声明解析器的 token 与节点类型
+ * 只有声明（Class、Function、Sub、Property、Dim、Const）成为存根节点；
+ * 过程体与不含声明的 <% %> 块是惰性、可单独重新解析的块，其余代码与 HTML 均为普通 token。
+ */
+public interface ClassicASPElementTypes {
+
+    ClassicASPStubFileElementType FILE = ClassicASPStubFileElementType.INSTANCE;
+
+    // token
+    IElementType HTML_TEXT = new ClassicASTokenType("HTML_TEXT");
+    IElementType ASP_OPEN = new ClassicASTokenType("ASP_OPEN");
+    IElementType ASP_CLOSE = new ClassicASTokenType("ASP_CLOSE");
+    IElementType WHITE_SPACE = new ClassicASTokenType("WHITE_SPACE");
+    // 换行或冒号
+    IElementType STATEMENT_END = new ClassicASTokenType("STATEMENT_END");
+    IElementType COMMENT = new ClassicASTokenType("COMMENT");
+    IElementType STRING = new ClassicASTokenType("STRING");
+    IElementType IDENTIFIER = new ClassicASTokenType("IDENTIFIER");
+    // 声明的名称（解析时由 IDENTIFIER 重新映射）
+    IElementType NAME = new ClassicASTokenType("NAME");
+    IElementType COMMA = new ClassicASTokenType("COMMA");
+    IElementType LPAREN = new ClassicASTokenType("LPAREN");
+    IElementType RPAREN = new ClassicASTokenType("RPAREN");
+    IElementType OTHER = new ClassicASTokenType("OTHER");
+
+    // 声明（存根）
+    ClassicASPDeclarationElementType CLASS_DECLARATION = new ClassicASPDeclarationElementType("CLASS_DECLARATION", VBScriptSymbol.Kind.CLASS);
+    ClassicASPDeclarationElementType FUNCTION_DECLARATION = new ClassicASPDeclarationElementType("FUNCTION_DECLARATION", VBScriptSymbol.Kind.FUNCTION);
+    ClassicASPDeclarationElementType SUB_DECLARATION = new ClassicASPDeclarationElementType("SUB_DECLARATION", VBScriptSymbol.Kind.SUB);
+    ClassicASPDeclarationElementType PROPERTY_DECLARATION = new ClassicASPDeclarationElementType("PROPERTY_DECLARATION", VBScriptSymbol.Kind.PROPERTY);
+    ClassicASPDeclarationElementType CONST_DECLARATION = new ClassicASPDeclarationElementType("CONST_DECLARATION", VBScriptSymbol.Kind.CONST);
+    ClassicASPDeclarationElementType VARIABLE_DECLARATION = new ClassicASPDeclarationElementType("VARIABLE_DECLARATION", VBScriptSymbol.Kind.VARIABLE);
+
+    // 过程体（惰性解析）
+    ClassicASPProcedureBodyElementType PROCEDURE_BODY = new ClassicASPProcedureBodyElementType("PROCEDURE_BODY");
+    // 不含声明的 <% %> 块（惰性解析）
+    ClassicASPCodeBlockElementType ASP_BLOCK = new ClassicASPCodeBlockElementType("ASP_BLOCK");
+
+    // 构建存根时不展开的惰性块
+    TokenSet LAZY_BLOCKS = TokenSet.create(PROCEDURE_BODY, ASP_BLOCK);
+
+    TokenSet WHITE_SPACES = TokenSet.create(WHITE_SPACE);
+    TokenSet COMMENTS = TokenSet.create(COMMENT);
+    TokenSet STRINGS = TokenSet.create(STRING);
+    // 语句的边界：其后的第一个 token 位于语句开头
+    TokenSet STATEMENT_BOUNDARIES = TokenSet.create(STATEMENT_END, ASP_OPEN, ASP_CLOSE, HTML_TEXT);
+}
@@ -0,0 +1,44 @@
+package com.ferock.classicasp.psi;
+
+import com.ferock.classicasp.ClassicASPLanguage;
+import com.ferock.classicasp.lexer.ClassicASPDeclarationLexer;
+import com.ferock.classicasp.parser.ClassicASPDeclarationParser;
+import com.intellij.lang.ASTNode;
+import com.intellij.lang.Language;
+import com.intellij.lang.PsiBuilder;
+import com.intellij.lang.PsiBuilderFactory;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.tree.IReparseableElementType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 过程体（Function/Sub/Property 的头部与 End 语句之间）
+ * 惰性解析：构建存根与声明树时不展开，首次访问其子节点时才词法分析；
+ * 只在过程体内编辑且修改后仍自成一体时，平台只重新解析这一块。
+ */
+public class ClassicASPProcedureBodyElementType extends IReparseableElementType {
+
+    public ClassicASPProcedureBodyElementType(@NotNull String debugName) {
+        super(debugName, ClassicASPLanguage.INSTANCE);
+    }
+
+    @Override
+    protected ASTNode doParseContents(@NotNull ASTNode chameleon, @NotNull PsiElement psi) {
+        // 过程体以 ASP 代码开始，不能用文件级词法器的初始 HTML 状态
+        PsiBuilder builder = PsiBuilderFactory.getInstance().createBuilder(psi.getProject(), chameleon,
+                new ClassicASPDeclarationLexer(true), getLanguage(), chameleon.getChars());
+        return ClassicASPDeclarationParser.parseLazyContents(this, builder).getFirstChildNode();
+    }
+
+    @Override
+    public boolean isParsable(@Nullable ASTNode parent, @NotNull CharSequence buffer,
+                              @NotNull Language fileLanguage, @NotNull Project project) {
+        // parent 是所在的声明，过程头决定修改后的文本从哪里开始成为过程体
+        ASTNode body = parent == null ? null : parent.findChildByType(this);
+        if (body == null) return false;
+        CharSequence header = parent.getChars().subSequence(0, body.getStartOffsetInParent());
+        return ClassicASPDeclarationParser.isSelfContainedBody(header, buffer);
+    }
+}
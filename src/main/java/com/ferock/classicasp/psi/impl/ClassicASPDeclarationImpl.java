@@ -0,0 +1,108 @@
+package com.ferock.classicasp.psi.impl;
+
+import com.ferock.classicasp.index.VBScriptSymbol;
+import com.ferock.classicasp.psi.ClassicASPDeclaration;
+import com.ferock.classicasp.psi.ClassicASPElementTypes;
+import com.ferock.classicasp.psi.stubs.ClassicASPDeclarationElementType;
+import com.ferock.classicasp.psi.stubs.ClassicASPDeclarationStub;
+import com.intellij.extapi.psi.StubBasedPsiElementBase;
+import com.intellij.lang.ASTNode;
+import com.intellij.navigation.ItemPresentation;
+import com.intellij.navigation.PresentationData;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.impl.source.tree.LeafElement;
+import com.intellij.psi.stubs.IStubElementType;
+import com.intellij.util.IncorrectOperationException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 声明的 PSI：有存根时名称与类型直接取自存根，不加载语法树
+ */
+public class ClassicASPDeclarationImpl extends StubBasedPsiElementBase<ClassicASPDeclarationStub> implements ClassicASPDeclaration {
+
+    public ClassicASPDeclarationImpl(@NotNull ASTNode node) {
+        super(node);
+    }
+
+    public ClassicASPDeclarationImpl(@NotNull ClassicASPDeclarationStub stub, @NotNull IStubElementType<?, ?> nodeType) {
+        super(stub, nodeType);
+    }
+
+    @NotNull
+    @Override
+    public VBScriptSymbol.Kind getKind() {
+        VBScriptSymbol.Kind kind = ((ClassicASPDeclarationElementType) getElementType()).getKind();
+        if (kind == VBScriptSymbol.Kind.VARIABLE) {
+            ClassicASPDeclaration owner = getStubOrPsiParentOfType(ClassicASPDeclaration.class);
+            if (owner != null && owner.getKind() == VBScriptSymbol.Kind.CLASS) {
+                return VBScriptSymbol.Kind.FIELD;
+            }
+        }
+        return kind;
+    }
+
+    @Nullable
+    @Override
+    public String getName() {
+        ClassicASPDeclarationStub stub = getGreenStub();
+        if (stub != null) return stub.getName();
+        PsiElement identifier = getNameIdentifier();
+        return identifier != null ? identifier.getText() : null;
+    }
+
+    @Nullable
+    @Override
+    public PsiElement getNameIdentifier() {
+        ASTNode name = getNode().findChildByType(ClassicASPElementTypes.NAME);
+        return name != null ? name.getPsi() : null;
+    }
+
+    @Override
+    public PsiElement setName(@NotNull String name) throws IncorrectOperationException {
+        ASTNode identifier = getNode().findChildByType(ClassicASPElementTypes.NAME);
+        if (!(identifier instanceof LeafElement)) {
+            throw new IncorrectOperationException("声明没有名称: " + this);
+        }
+        ((LeafElement) identifier).replaceWithText(name);
+        return this;
+    }
+
+    @Override
+    public int getTextOffset() {
+        PsiElement identifier = getNameIdentifier();
+        return identifier != null ? identifier.getTextOffset() : super.getTextOffset();
+    }
+
+    @Override
+    public ItemPresentation getPresentation() {
+        VBScriptSymbol.Kind kind = getKind();
+        String name = getName();
+        boolean callable = kind == VBScriptSymbol.Kind.FUNCTION || kind == VBScriptSymbol.Kind.SUB;
+        return new PresentationData(callable ? name + "()" : name, kindText(kind), null, null);
+    }
+
+    private static String kindText(VBScriptSymbol.Kind kind) {
+        switch (kind) {
+            case CLASS:
+                return "Class";
+            case FUNCTION:
+                return "Function";
+            case SUB:
+                return "Sub";
+            case PROPERTY:
+                return "Property";
+            case CONST:
+                return "Const";
+            case FIELD:
+                return "字段";
+            default:
+                return "变量";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getElementType() + ":" + getName();
+    }
+}
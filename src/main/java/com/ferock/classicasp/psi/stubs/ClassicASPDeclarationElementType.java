@@ -0,0 +1,69 @@
+package com.ferock.classicasp.psi.stubs;
+
+import com.ferock.classicasp.ClassicASPLanguage;
+import com.ferock.classicasp.index.VBScriptSymbol;
+import com.ferock.classicasp.psi.ClassicASPDeclaration;
+import com.ferock.classicasp.psi.impl.ClassicASPDeclarationImpl;
+import com.intellij.psi.stubs.IStubElementType;
+import com.intellij.psi.stubs.IndexSink;
+import com.intellij.psi.stubs.StubElement;
+import com.intellij.psi.stubs.StubInputStream;
+import com.intellij.psi.stubs.StubOutputStream;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * 声明节点类型：每种声明一个实例，序列化名称并写入声明存根索引
+ */
+public class ClassicASPDeclarationElementType extends IStubElementType<ClassicASPDeclarationStub, ClassicASPDeclaration> {
+
+    private final VBScriptSymbol.Kind kind;
+
+    public ClassicASPDeclarationElementType(@NotNull String debugName, @NotNull VBScriptSymbol.Kind kind) {
+        super(debugName, ClassicASPLanguage.INSTANCE);
+        this.kind = kind;
+    }
+
+    @NotNull
+    public VBScriptSymbol.Kind getKind() {
+        return kind;
+    }
+
+    @Override
+    public ClassicASPDeclaration createPsi(@NotNull ClassicASPDeclarationStub stub) {
+        return new ClassicASPDeclarationImpl(stub, this);
+    }
+
+    @NotNull
+    @Override
+    public ClassicASPDeclarationStub createStub(@NotNull ClassicASPDeclaration psi, StubElement parentStub) {
+        return new ClassicASPDeclarationStub(parentStub, this, psi.getName());
+    }
+
+    @NotNull
+    @Override
+    public String getExternalId() {
+        return "ClassicASP." + this;
+    }
+
+    @Override
+    public void serialize(@NotNull ClassicASPDeclarationStub stub, @NotNull StubOutputStream dataStream) throws IOException {
+        dataStream.writeName(stub.getName());
+    }
+
+    @NotNull
+    @Override
+    public ClassicASPDeclarationStub deserialize(@NotNull StubInputStream dataStream, StubElement parentStub) throws IOException {
+        return new ClassicASPDeclarationStub(parentStub, this, dataStream.readNameString());
+    }
+
+    @Override
+    public void indexStub(@NotNull ClassicASPDeclarationStub stub, @NotNull IndexSink sink) {
+        String name = stub.getName();
+        if (name != null) {
+            sink.occurrence(ClassicASPDeclarationIndex.KEY, name.toLowerCase(Locale.ROOT));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.ferock.classicasp.psi.stubs;
+
+import com.ferock.classicasp.psi.ClassicASPDeclaration;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.stubs.StringStubIndexExtension;
+import com.intellij.psi.stubs.StubIndex;
+import com.intellij.psi.stubs.StubIndexKey;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+
+/**
+ * 声明存根索引：键为小写的声明名称
+ * 只覆盖 .asp 文件的文件级与类级声明（过程体内的局部定义不在存根中）。
+ */
+public class ClassicASPDeclarationIndex extends StringStubIndexExtension<ClassicASPDeclaration> {
+
+    public static final StubIndexKey<String, ClassicASPDeclaration> KEY =
+            StubIndexKey.createIndexKey("com.ferock.classicasp.declaration");
+
+    @NotNull
+    @Override
+    public StubIndexKey<String, ClassicASPDeclaration> getKey() {
+        return KEY;
+    }
+
+    @Override
+    public int getVersion() {
+        return super.getVersion() + 1;
+    }
+
+    /**
+     * @param nameLower 小写名称
+     * @return 范围内同名的全部声明
+     */
+    @NotNull
+    public static Collection<ClassicASPDeclaration> find(@NotNull String nameLower, @NotNull Project project,
+                                                         @NotNull GlobalSearchScope scope) {
+        return StubIndex.getElements(KEY, nameLower, project, scope, ClassicASPDeclaration.class);
+    }
+}
@@ -0,0 +1,17 @@
+package com.ferock.classicasp.psi.stubs;
+
+import com.ferock.classicasp.psi.ClassicASPDeclaration;
+import com.intellij.psi.stubs.IStubElementType;
+import com.intellij.psi.stubs.NamedStubBase;
+import com.intellij.psi.stubs.StubElement;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 声明的存根：只保存名称，类型由节点类型与父存根决定
+ */
+public class ClassicASPDeclarationStub extends NamedStubBase<ClassicASPDeclaration> {
+
+    public ClassicASPDeclarationStub(StubElement parent, IStubElementType elementType, @Nullable String name) {
+        super(parent, elementType, name);
+    }
+}
@@ -0,0 +1,45 @@
+package com.ferock.classicasp.psi.stubs;
+
+import com.ferock.classicasp.ClassicASPLanguage;
+import com.ferock.classicasp.psi.ClassicASPElementTypes;
+import com.intellij.lang.ASTNode;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.StubBuilder;
+import com.intellij.psi.stubs.DefaultStubBuilder;
+import com.intellij.psi.stubs.PsiFileStub;
+import com.intellij.psi.tree.IStubFileElementType;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 文件节点类型：存根树只包含声明
+ * 构建存根时跳过过程体与代码块，惰性块不会因此被解析。
+ */
+public class ClassicASPStubFileElementType extends IStubFileElementType<PsiFileStub<PsiFile>> {
+
+    public static final ClassicASPStubFileElementType INSTANCE = new ClassicASPStubFileElementType();
+
+    private ClassicASPStubFileElementType() {
+        super("ClassicASP.FILE", ClassicASPLanguage.INSTANCE);
+    }
+
+    @Override
+    public int getStubVersion() {
+        return 1;
+    }
+
+    @NotNull
+    @Override
+    public String getExternalId() {
+        return "ClassicASP.FILE";
+    }
+
+    @Override
+    public StubBuilder getBuilder() {
+        return new DefaultStubBuilder() {
+            @Override
+            protected boolean skipChildProcessingWhenBuildingStubs(@NotNull ASTNode parent, @NotNull ASTNode node) {
+                return ClassicASPElementTypes.LAZY_BLOCKS.contains(node.getElementType());
+            }
+        };
+    }
+}
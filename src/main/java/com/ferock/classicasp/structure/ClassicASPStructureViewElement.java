@@ -0,0 +1,79 @@
+package com.ferock.classicasp.structure;
+
+import com.ferock.classicasp.index.VBScriptSymbol;
+import com.ferock.classicasp.psi.ClassicASPDeclaration;
+import com.intellij.ide.structureView.StructureViewTreeElement;
+import com.intellij.ide.util.treeView.smartTree.SortableTreeElement;
+import com.intellij.ide.util.treeView.smartTree.TreeElement;
+import com.intellij.navigation.ItemPresentation;
+import com.intellij.navigation.NavigationItem;
+import com.intellij.navigation.PresentationData;
+import com.intellij.pom.Navigatable;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * 结构视图节点：子节点直接取自存根树，不解析过程体
+ */
+public class ClassicASPStructureViewElement implements StructureViewTreeElement, SortableTreeElement {
+
+    private final PsiElement element;
+
+    public ClassicASPStructureViewElement(@NotNull PsiElement element) {
+        this.element = element;
+    }
+
+    @Override
+    public Object getValue() {
+        return element;
+    }
+
+    @Override
+    public void navigate(boolean requestFocus) {
+        if (element instanceof Navigatable) {
+            ((Navigatable) element).navigate(requestFocus);
+        }
+    }
+
+    @Override
+    public boolean canNavigate() {
+        return element instanceof Navigatable && ((Navigatable) element).canNavigate();
+    }
+
+    @Override
+    public boolean canNavigateToSource() {
+        return element instanceof Navigatable && ((Navigatable) element).canNavigateToSource();
+    }
+
+    @NotNull
+    @Override
+    public String getAlphaSortKey() {
+        String name = element instanceof ClassicASPDeclaration ? ((ClassicASPDeclaration) element).getName() : null;
+        return name != null ? name : "";
+    }
+
+    @NotNull
+    @Override
+    public ItemPresentation getPresentation() {
+        ItemPresentation presentation = element instanceof NavigationItem ? ((NavigationItem) element).getPresentation() : null;
+        return presentation != null ? presentation : new PresentationData();
+    }
+
+    @NotNull
+    @Override
+    public TreeElement[] getChildren() {
+        boolean container = element instanceof PsiFile
+                || element instanceof ClassicASPDeclaration && ((ClassicASPDeclaration) element).getKind() == VBScriptSymbol.Kind.CLASS;
+        if (!container) return EMPTY_ARRAY;
+        List<ClassicASPDeclaration> declarations = PsiTreeUtil.getStubChildrenOfTypeAsList(element, ClassicASPDeclaration.class);
+        TreeElement[] children = new TreeElement[declarations.size()];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = new ClassicASPStructureViewElement(declarations.get(i));
+        }
+        return children;
+    }
+}
@@ -0,0 +1,33 @@
+package com.ferock.classicasp.structure;
+
+import com.ferock.classicasp.psi.ClassicASPDeclaration;
+import com.intellij.ide.structureView.StructureViewBuilder;
+import com.intellij.ide.structureView.StructureViewModel;
+import com.intellij.ide.structureView.StructureViewModelBase;
+import com.intellij.ide.structureView.TreeBasedStructureViewBuilder;
+import com.intellij.ide.util.treeView.smartTree.Sorter;
+import com.intellij.lang.PsiStructureViewFactory;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 结构视图：列出文件中的类、过程、常量与变量声明（类下列出成员）
+ */
+public class ClassicASPStructureViewFactory implements PsiStructureViewFactory {
+
+    @Nullable
+    @Override
+    public StructureViewBuilder getStructureViewBuilder(@NotNull PsiFile psiFile) {
+        return new TreeBasedStructureViewBuilder() {
+            @NotNull
+            @Override
+            public StructureViewModel createStructureViewModel(@Nullable Editor editor) {
+                return new StructureViewModelBase(psiFile, editor, new ClassicASPStructureViewElement(psiFile))
+                        .withSorters(Sorter.ALPHA_SORTER)
+                        .withSuitableClasses(ClassicASPDeclaration.class);
+            }
+        };
+    }
+}
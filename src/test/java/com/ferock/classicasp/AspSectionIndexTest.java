@@ -0,0 +1,74 @@
+package com.ferock.classicasp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * AspSectionIndex.update 与全量扫描 build 的差分测试
+ * 在标签与换行附近随机插入、删除，每次修改后增量结果必须与重新扫描完全一致。
+ */
+class AspSectionIndexTest {
+
+    // 插入的片段集中在标签与换行上，容易切开或拼出 <% / %>
+    private static final String[] FRAGMENTS = {
+            "<%", "%>", "<%=", "\n", "<", "%", ">", "=", "\r\n", " ", "x", "<%\n", "%>\n", "\n%>", "<%=x%>"
+    };
+
+    private static final int EDITS = 20_000;
+
+    @Test
+    void incrementalUpdateMatchesFullScan() {
+        Random random = new Random(20240501L);
+        StringBuilder text = new StringBuilder("<html>\n<% Dim x %>\n<p><%= x %></p>\n");
+        AspSectionIndex index = AspSectionIndex.build(text);
+
+        for (int edit = 0; edit < EDITS; edit++) {
+            int offset = random.nextInt(text.length() + 1);
+            int oldLength = random.nextInt(3) == 0 ? 0 : random.nextInt(Math.min(6, text.length() - offset) + 1);
+            String inserted = random.nextInt(4) == 0 ? "" : randomInsertion(random);
+            // 文本过长时只删不插，保持每次比较的开销可控
+            if (text.length() > 400) {
+                inserted = "";
+                oldLength = Math.min(text.length() - offset, 20);
+            }
+
+            String description = "edit #" + edit + " offset=" + offset + " oldLength=" + oldLength
+                    + " inserted='" + inserted.replace("\n", "\\n") + "'";
+            text.replace(offset, offset + oldLength, inserted);
+            index = index.update(text, offset, oldLength, inserted.length());
+            assertSameAsFullScan(text, index, description);
+        }
+    }
+
+    @Test
+    void mismatchedEditFallsBackToFullScan() {
+        String before = "a<%b%>c";
+        AspSectionIndex index = AspSectionIndex.build(before);
+        String after = "<%\n%>";
+        // 修改信息与文本长度不符时退回全量扫描
+        assertSameAsFullScan(after, index.update(after, 0, 1, 1), "mismatched edit");
+    }
+
+    private static String randomInsertion(Random random) {
+        StringBuilder inserted = new StringBuilder();
+        int parts = 1 + random.nextInt(3);
+        for (int i = 0; i < parts; i++) {
+            inserted.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+        }
+        return inserted.toString();
+    }
+
+    private static void assertSameAsFullScan(CharSequence text, AspSectionIndex actual, String description) {
+        AspSectionIndex expected = AspSectionIndex.build(text);
+        assertEquals(expected.getTextLength(), actual.getTextLength(), description);
+        assertArrayEquals(expected.boundaries(), actual.boundaries(), description);
+        assertArrayEquals(expected.lineStarts(), actual.lineStarts(), description);
+        for (int offset = -1; offset <= text.length(); offset++) {
+            assertEquals(expected.isInASPSection(offset), actual.isInASPSection(offset), description + " at " + offset);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.ferock.classicasp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 大小写不敏感查找表：查询区间与整串查询的结果必须与按小写键查 HashMap 一致
+ */
+class CaseInsensitiveLookupTest {
+
+    @Test
+    void lookupIgnoresCase() {
+        Map<String, String> source = new HashMap<>();
+        source.put("Response", "object");
+        source.put("end", "keyword");
+        CaseInsensitiveLookup<String> lookup = CaseInsensitiveLookup.of(source);
+
+        assertEquals("object", lookup.get("response"));
+        assertEquals("object", lookup.get("RESPONSE"));
+        assertEquals("keyword", lookup.get("End"));
+        assertNull(lookup.get("Respons"));
+        assertNull(lookup.get("ended"));
+        assertNull(lookup.get(""));
+        assertNull(lookup.get(null));
+        assertEquals(2, lookup.size());
+    }
+
+    @Test
+    void rangeLookupMatchesOnlyTheRange() {
+        CaseInsensitiveLookup<Boolean> lookup = CaseInsensitiveLookup.of(Collections.singletonMap("Mod", Boolean.TRUE));
+        String line = "x = a MOD b : y = Modulo";
+
+        assertTrue(lookup.contains(line, 6, 9));
+        // 前缀相同但区间更长或更短都不匹配
+        assertFalse(lookup.contains(line, 18, 24));
+        assertFalse(lookup.contains(line, 18, 20));
+        assertTrue(lookup.contains(new StringBuilder(line), 18, 21));
+    }
+
+    @Test
+    void keysDifferingOnlyInCaseCollapse() {
+        Map<String, Integer> source = new LinkedHashMap<>();
+        source.put("IsNull", 1);
+        source.put("ISNULL", 2);
+        source.put("skip", null);
+        CaseInsensitiveLookup<Integer> lookup = CaseInsensitiveLookup.of(source);
+
+        assertEquals(1, lookup.size());
+        assertEquals(Integer.valueOf(2), lookup.get("isnull"));
+        assertNull(lookup.get("skip"));
+    }
+
+    @Test
+    void nonAsciiKeysFoldWithCharacterToLowerCase() {
+        CaseInsensitiveLookup<String> lookup = CaseInsensitiveLookup.of(Collections.singletonMap("ÄBC", "x"));
+        assertEquals("x", lookup.get("äbc"));
+        assertEquals("x", lookup.get("Äbc"));
+    }
+
+    @Test
+    void everyKeyIsFoundInALargeTable() {
+        Map<String, Integer> source = new HashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            source.put("Key" + i, i);
+        }
+        CaseInsensitiveLookup<Integer> lookup = CaseInsensitiveLookup.of(source);
+
+        assertEquals(2000, lookup.size());
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(Integer.valueOf(i), lookup.get("KEY" + i));
+            assertNull(lookup.get("key" + i + "x"));
+        }
+        assertNull(CaseInsensitiveLookup.of(Collections.<String, Integer>emptyMap()).get("key"));
+    }
+}
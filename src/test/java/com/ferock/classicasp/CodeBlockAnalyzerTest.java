@@ -0,0 +1,152 @@
+package com.ferock.classicasp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 代码块分析：HTML 区域中的关键字不算代码块，分析耗时随行数线性增长；
+ * 按行查询与父块指针必须与递归遍历的结果一致
+ */
+class CodeBlockAnalyzerTest {
+
+    // 每页 10 行：HTML 中的 If 不是代码块，<% %> 内是 If 套 For
+    private static final String PAGE =
+            "<div>\n"
+            + "If this is text\n"
+            + "<%\n"
+            + "If x Then\n"
+            + "  For i = 1 To 3\n"
+            + "    y = i\n"
+            + "  Next\n"
+            + "End If\n"
+            + "%>\n"
+            + "</div>\n";
+
+    @Test
+    void blocksAreFoundOnlyInsideAspSections() {
+        List<CodeBlockAnalyzer.CodeBlock> blocks = analyze(PAGE + PAGE);
+
+        assertEquals(4, blocks.size());
+        CodeBlockAnalyzer.CodeBlock outer = blocks.get(0);
+        CodeBlockAnalyzer.CodeBlock inner = blocks.get(1);
+        assertEquals(CodeBlockAnalyzer.BlockType.CONTROL, outer.getType());
+        assertEquals(3, outer.getStartLine());
+        assertEquals(7, outer.getEndLine());
+        assertEquals(0, outer.getIndentLevel());
+        assertEquals(CodeBlockAnalyzer.BlockType.LOOP, inner.getType());
+        assertEquals(4, inner.getStartLine());
+        assertEquals(6, inner.getEndLine());
+        assertEquals(1, inner.getIndentLevel());
+        assertEquals(List.of(inner), outer.getChildren());
+        assertEquals(13, blocks.get(2).getStartLine());
+    }
+
+    @Test
+    void sectionStateFollowsTagsWithinLines() {
+        // 同一行内先开后闭：下一行回到 HTML
+        assertEquals(0, analyze("<% x = 1 %>\nIf b Then\nEnd If\n").size());
+        // 行内开启且未闭合：下一行在 ASP 区域内
+        List<CodeBlockAnalyzer.CodeBlock> blocks = analyze("<p><% x = 1\nIf b Then\nEnd If\n%>\n");
+        assertEquals(1, blocks.size());
+        assertEquals(1, blocks.get(0).getStartLine());
+        assertEquals(2, blocks.get(0).getEndLine());
+    }
+
+    @Test
+    void analysisScalesLinearlyWithLineCount() {
+        String small = PAGE.repeat(1_000);
+        String large = PAGE.repeat(4_000);
+        assertEquals(2_000, analyze(small).size());
+        assertEquals(8_000, analyze(large).size());
+
+        // 预热后取多次中的最短耗时
+        for (int i = 0; i < 3; i++) {
+            analyze(small);
+            analyze(large);
+        }
+        long smallNanos = fastest(small);
+        long largeNanos = fastest(large);
+
+        // 1 万行与 4 万行：线性约为 4 倍，逐行重扫全文的平方复杂度约为 16 倍
+        assertTrue(largeNanos < smallNanos * 10,
+                "10k lines: " + smallNanos / 1_000 + "us, 40k lines: " + largeNanos / 1_000 + "us");
+    }
+
+    @Test
+    void lineTableMatchesRecursiveLookup() throws IOException {
+        List<String> texts = new ArrayList<>();
+        texts.add(PAGE.repeat(3));
+        texts.add("<%\nSub A\n  If x Then\n    Do\n    Loop\n  End If\nEnd Sub\nIf y Then\n%>\n");
+        try (Stream<Path> files = Files.list(Paths.get("test"))) {
+            for (Path sample : files.filter(path -> path.toString().endsWith(".asp")).sorted().collect(Collectors.toList())) {
+                texts.add(new String(Files.readAllBytes(sample), StandardCharsets.UTF_8).replace("\r\n", "\n"));
+            }
+        }
+
+        for (String text : texts) {
+            List<CodeBlockAnalyzer.CodeBlock> blocks = analyze(text);
+            assertTrue(blocks instanceof CodeBlockAnalyzer.CodeBlockList);
+            // 普通列表走递归查找
+            List<CodeBlockAnalyzer.CodeBlock> plain = new ArrayList<>(blocks);
+            int lineCount = text.split("\n", -1).length;
+            for (int line = -1; line <= lineCount; line++) {
+                assertSame(CodeBlockAnalyzer.getBlockAtLine(plain, line), CodeBlockAnalyzer.getBlockAtLine(blocks, line),
+                        "line " + line);
+            }
+        }
+    }
+
+    @Test
+    void parentPointerMatchesChildrenLists() {
+        List<CodeBlockAnalyzer.CodeBlock> blocks =
+                analyze("<%\nClass C\n  Sub A\n    If x Then\n      For i = 1 To 2\n      Next\n    End If\n  End Sub\nEnd Class\n%>\n");
+        assertEquals(4, blocks.size());
+        for (CodeBlockAnalyzer.CodeBlock block : blocks) {
+            CodeBlockAnalyzer.CodeBlock expected = null;
+            for (CodeBlockAnalyzer.CodeBlock candidate : blocks) {
+                if (candidate.getChildren().contains(block)) {
+                    expected = candidate;
+                }
+            }
+            assertSame(expected, block.getParent(), block.toString());
+        }
+        assertNull(blocks.get(0).getParent());
+        assertSame(blocks.get(2), blocks.get(3).getParent());
+    }
+
+    @Test
+    void emptyContentHasNoBlocks() {
+        List<CodeBlockAnalyzer.CodeBlock> blocks = analyze("  \n");
+        assertTrue(blocks.isEmpty());
+        assertNull(CodeBlockAnalyzer.getBlockAtLine(blocks, 0));
+    }
+
+    private static List<CodeBlockAnalyzer.CodeBlock> analyze(String content) {
+        // 时限放宽，测试结果不受机器速度影响
+        return CodeBlockAnalyzer.analyzeCodeBlocks(content, SafetyLimits.Budget.start("CodeBlockAnalyzerTest", 60_000));
+    }
+
+    private static long fastest(String content) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            analyze(content);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
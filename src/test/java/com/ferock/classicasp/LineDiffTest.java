@@ -0,0 +1,117 @@
+package com.ferock.classicasp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 行级差异：替换按偏移升序且互不重叠，应用到旧文本后得到新文本，未变化的行不被触及
+ */
+class LineDiffTest {
+
+    @Test
+    void identicalTextNeedsNoEdits() {
+        assertTrue(LineDiff.computeEdits("", "").isEmpty());
+        assertTrue(LineDiff.computeEdits("a\nb\n", "a\nb\n").isEmpty());
+    }
+
+    @Test
+    void changedLineIsTrimmedToTheDifferingCharacters() {
+        List<LineDiff.Edit> edits = LineDiff.computeEdits("If x Then\ny = 1\nEnd If\n", "If x Then\n    y = 1\nEnd If\n");
+        assertEquals(1, edits.size());
+        assertEquals(10, edits.get(0).startOffset);
+        assertEquals(10, edits.get(0).endOffset);
+        assertEquals("    ", edits.get(0).replacement);
+    }
+
+    @Test
+    void separateChangesStaySeparate() {
+        String old = "a\nb\nc\nd\ne\n";
+        String changed = "A\nb\nc\nd\nE\n";
+        List<LineDiff.Edit> edits = LineDiff.computeEdits(old, changed);
+        assertEquals(2, edits.size());
+        assertEquals(changed, applyEdits(old, edits));
+    }
+
+    @Test
+    void insertingOneLineInALargeFileIsOneEdit() {
+        StringBuilder old = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            old.append("line ").append(i).append('\n');
+        }
+        int at = old.indexOf("line 5000\n");
+        String changed = new StringBuilder(old).insert(at, "inserted\n").toString();
+
+        List<LineDiff.Edit> edits = LineDiff.computeEdits(old, changed);
+        assertEquals(1, edits.size());
+        assertEquals(at, edits.get(0).startOffset);
+        assertEquals(at, edits.get(0).endOffset);
+        assertEquals("inserted\n", edits.get(0).replacement);
+    }
+
+    @Test
+    void missingFinalNewlineIsHandled() {
+        assertEquals("a\nb", applyEdits("a\nb\n", LineDiff.computeEdits("a\nb\n", "a\nb")));
+        assertEquals("a\nb\n", applyEdits("a\nb", LineDiff.computeEdits("a\nb", "a\nb\n")));
+        assertEquals("x", applyEdits("", LineDiff.computeEdits("", "x")));
+        assertEquals("", applyEdits("x\ny\n", LineDiff.computeEdits("x\ny\n", "")));
+    }
+
+    @Test
+    void randomEditsRoundTrip() {
+        Random random = new Random(42);
+        String[] pool = {"If x Then", "  y = 1", "End If", "", "Dim a", "Next", "%>", "<%"};
+        for (int round = 0; round < 2_000; round++) {
+            List<String> lines = new ArrayList<>();
+            int count = random.nextInt(30);
+            for (int i = 0; i < count; i++) {
+                lines.add(pool[random.nextInt(pool.length)]);
+            }
+            List<String> changedLines = new ArrayList<>(lines);
+            int changes = random.nextInt(6);
+            for (int c = 0; c < changes; c++) {
+                int op = random.nextInt(3);
+                int at = changedLines.isEmpty() ? 0 : random.nextInt(changedLines.size());
+                if (op == 0 || changedLines.isEmpty()) {
+                    changedLines.add(at, pool[random.nextInt(pool.length)]);
+                } else if (op == 1) {
+                    changedLines.remove(at);
+                } else {
+                    changedLines.set(at, "  " + changedLines.get(at));
+                }
+            }
+            String old = join(lines, random.nextBoolean());
+            String changed = join(changedLines, random.nextBoolean());
+
+            List<LineDiff.Edit> edits = LineDiff.computeEdits(old, changed);
+            int previousEnd = 0;
+            for (LineDiff.Edit edit : edits) {
+                assertTrue(edit.startOffset >= previousEnd && edit.endOffset >= edit.startOffset, edits.toString());
+                previousEnd = edit.endOffset;
+            }
+            assertEquals(changed, applyEdits(old, edits), old + " -> " + changed);
+        }
+    }
+
+    private static String join(List<String> lines, boolean finalNewline) {
+        String text = String.join("\n", lines);
+        return finalNewline && !lines.isEmpty() ? text + "\n" : text;
+    }
+
+    /**
+     * 按 LineDiff.apply 的方式从后往前替换
+     */
+    private static String applyEdits(CharSequence old, List<LineDiff.Edit> edits) {
+        StringBuilder text = new StringBuilder(old);
+        for (int i = edits.size() - 1; i >= 0; i--) {
+            LineDiff.Edit edit = edits.get(i);
+            text.replace(edit.startOffset, edit.endOffset, edit.replacement);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,109 @@
+package com.ferock.classicasp;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 按文件缓存的 LRU：每个文件只保留最新版本，并受条目数、总权重与超时约束
+ */
+class RevisionCacheTest {
+
+    @Test
+    void hitsOnlyTheCachedRevision() {
+        RevisionCache<String> cache = new RevisionCache<>("test", 10, 1000, 0);
+        cache.put("a.asp", 1L, "v1", 10);
+
+        assertEquals("v1", cache.get("a.asp", 1L));
+        assertNull(cache.get("a.asp", 2L));
+        assertNull(cache.get("b.asp", 1L));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    void newRevisionReplacesTheOldOne() {
+        RevisionCache<String> cache = new RevisionCache<>("test", 10, 1000, 0);
+        cache.put("a.asp", 1L, "v1", 10);
+        cache.put("a.asp", 2L, "v2", 30);
+
+        assertEquals(1, cache.size());
+        assertEquals(30, cache.getWeight());
+        assertNull(cache.get("a.asp", 1L));
+        assertEquals("v2", cache.get("a.asp", 2L));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedFileWhenFull() {
+        RevisionCache<String> cache = new RevisionCache<>("test", 2, 1000, 0);
+        cache.put("a.asp", 1L, "a", 1);
+        cache.put("b.asp", 1L, "b", 1);
+        // 访问 a 后，b 成为最久未使用的条目
+        cache.get("a.asp", 1L);
+        cache.put("c.asp", 1L, "c", 1);
+
+        assertEquals(2, cache.size());
+        assertEquals("a", cache.get("a.asp", 1L));
+        assertNull(cache.get("b.asp", 1L));
+        assertEquals("c", cache.get("c.asp", 1L));
+    }
+
+    @Test
+    void evictsUntilTotalWeightFits() {
+        RevisionCache<String> cache = new RevisionCache<>("test", 10, 100, 0);
+        cache.put("a.asp", 1L, "a", 40);
+        cache.put("b.asp", 1L, "b", 40);
+        cache.put("c.asp", 1L, "c", 50);
+
+        assertNull(cache.get("a.asp", 1L));
+        assertEquals("b", cache.get("b.asp", 1L));
+        assertEquals(90, cache.getWeight());
+
+        // 超过总权重上限的单个值不缓存，也不挤掉其它条目
+        cache.put("d.asp", 1L, "d", 101);
+        assertNull(cache.get("d.asp", 1L));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void expiredEntriesAreDropped() throws InterruptedException {
+        RevisionCache<String> cache = new RevisionCache<>("test", 10, 1000, 1);
+        cache.put("a.asp", 1L, "a", 5);
+        Thread.sleep(20);
+
+        assertNull(cache.get("a.asp", 1L));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    void invalidateAndClearReleaseWeight() {
+        RevisionCache<String> cache = new RevisionCache<>("test", 10, 1000, 0);
+        cache.put("a.asp", 1L, "a", 5);
+        cache.put("b.asp", 1L, "b", 7);
+
+        cache.invalidate("a.asp");
+        assertNull(cache.get("a.asp", 1L));
+        assertEquals(7, cache.getWeight());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    void contentDigestDistinguishesCollidingHashCodes() {
+        // "Aa" 与 "BB" 的 String.hashCode() 相同
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        assertNotEquals(RevisionCache.contentDigest("Aa"), RevisionCache.contentDigest("BB"));
+        assertEquals(RevisionCache.contentDigest("Aa"), RevisionCache.contentDigest(new StringBuilder("Aa")));
+
+        // 超过一个分块（4096 个字符）的内容同样逐字符区分
+        String large = "x".repeat(10000);
+        assertNotEquals(RevisionCache.contentDigest(large), RevisionCache.contentDigest(large + "y"));
+        assertEquals(64, RevisionCache.contentDigest(large).length());
+    }
+}
@@ -0,0 +1,208 @@
+package com.ferock.classicasp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * 规范快照：二进制表写出后读回与原快照一致，校验和不符或内容损坏时读取失败；
+ * 覆盖表按键覆盖、集合取并集、运算符追加，未改变的表沿用原实例
+ */
+class SpecSnapshotTest {
+
+    @Test
+    void bundledYamlRoundTrips() throws IOException {
+        byte[] yaml = bundledYaml();
+        SpecSnapshot parsed = SpecYamlParser.parse(new ByteArrayInputStream(yaml));
+        long checksum = SpecSnapshot.checksum(yaml);
+
+        byte[] data = write(parsed, checksum);
+        SpecSnapshot read = SpecSnapshot.read(data, checksum);
+
+        assertNotNull(read);
+        assertSameTables(parsed, read);
+        // 键按字典序写出：相同的快照总是生成相同的文件
+        assertArrayEquals(data, write(read, checksum));
+    }
+
+    @Test
+    void smallSnapshotRoundTrips() throws IOException {
+        SpecSnapshot snapshot = base();
+        SpecSnapshot read = SpecSnapshot.read(write(snapshot, 42L), 42L);
+
+        assertNotNull(read);
+        assertSameTables(snapshot, read);
+        // 运算符保持原有顺序
+        assertEquals(Arrays.asList("<>", "&", "="), read.getOperatorSymbolsWithSpaces());
+    }
+
+    @Test
+    void staleOrCorruptDataIsRejected() throws IOException {
+        SpecSnapshot snapshot = new SpecSnapshot(Map.of("dim", "Dim"), Collections.emptyMap(), Collections.emptyMap(),
+                Collections.emptySet(), Collections.emptyMap(), Set.of("dim"), Collections.emptyList(),
+                Collections.emptySet());
+        byte[] data = write(snapshot, 7L);
+
+        assertNotNull(SpecSnapshot.read(data, 7L));
+        assertNull(SpecSnapshot.read(data, 8L));
+        assertNull(SpecSnapshot.read(Arrays.copyOf(data, data.length - 3), 7L));
+        assertNull(SpecSnapshot.read(new byte[0], 7L));
+
+        byte[] badMagic = data.clone();
+        badMagic[0] ^= 1;
+        assertNull(SpecSnapshot.read(badMagic, 7L));
+        byte[] badVersion = data.clone();
+        badVersion[7] ^= 1;
+        assertNull(SpecSnapshot.read(badVersion, 7L));
+    }
+
+    @Test
+    void checksumFollowsContent() {
+        assertEquals(SpecSnapshot.checksum("keywords: [Dim]".getBytes()), SpecSnapshot.checksum("keywords: [Dim]".getBytes()));
+        assertNotEquals(SpecSnapshot.checksum("keywords: [Dim]".getBytes()), SpecSnapshot.checksum("keywords: [Din]".getBytes()));
+    }
+
+    @Test
+    void overlayOverridesByKeyAndMergesSets() {
+        SpecSnapshot merged = base().withOverlay(new SpecSnapshot(
+                Map.of("len", "LEN", "foo", "Foo"),
+                Map.of("response", Set.of("flush"), "request", Set.of("form")),
+                Map.of("response", Map.of("flush", "Flush", "write", "WRITE")),
+                Set.of("foo"),
+                Map.of("foo", "Foo"),
+                Set.of("foo"),
+                Arrays.asList("&", "\\"),
+                Set.of("xor")));
+
+        assertEquals(Map.of("dim", "Dim", "len", "LEN", "foo", "Foo"), merged.getCaseMap());
+        assertEquals(Map.of("response", Set.of("write", "end", "flush"), "request", Set.of("form")),
+                merged.getObjectToMethods());
+        assertEquals(Map.of("response", Map.of("write", "WRITE", "end", "End", "flush", "Flush")),
+                merged.getObjectMethodCase());
+        assertEquals(Set.of("len", "foo"), merged.getSysFunctions());
+        assertEquals(Map.of("len", "Len", "foo", "Foo"), merged.getSysFunctionCase());
+        assertEquals(Set.of("dim", "len", "foo"), merged.getKeywords());
+        // 运算符按顺序追加，已有的不重复
+        assertEquals(Arrays.asList("<>", "&", "=", "\\"), merged.getOperatorSymbolsWithSpaces());
+        assertEquals(Set.of("and", "mod", "xor"), merged.getKeywordOpsWithSpaces());
+    }
+
+    @Test
+    void emptyOverlayKeepsBaseTables() {
+        SpecSnapshot base = base();
+        SpecSnapshot merged = base.withOverlay(new SpecSnapshot(Collections.emptyMap(), Collections.emptyMap(),
+                Collections.emptyMap(), Collections.emptySet(), Collections.emptyMap(), Collections.emptySet(),
+                Collections.emptyList(), Collections.emptySet()));
+
+        assertAllTablesSame(base, merged);
+    }
+
+    @Test
+    void overlayAlreadyContainedKeepsSetInstances() {
+        SpecSnapshot base = base();
+        SpecSnapshot merged = base.withOverlay(new SpecSnapshot(Collections.emptyMap(), Collections.emptyMap(),
+                Collections.emptyMap(), Set.of("len"), Collections.emptyMap(), Set.of("dim"), List.of("&"),
+                Set.of("mod")));
+
+        assertSame(base.getSysFunctions(), merged.getSysFunctions());
+        assertSame(base.getKeywords(), merged.getKeywords());
+        assertSame(base.getOperatorSymbolsWithSpaces(), merged.getOperatorSymbolsWithSpaces());
+        assertSame(base.getKeywordOpsWithSpaces(), merged.getKeywordOpsWithSpaces());
+    }
+
+    @Test
+    void reuseTablesKeepsUnchangedInstances() {
+        SpecSnapshot previous = base();
+        SpecSnapshot rebuilt = base().reuseTables(previous);
+        assertAllTablesSame(previous, rebuilt);
+
+        SpecSnapshot changed = previous.withOverlay(new SpecSnapshot(Map.of("foo", "Foo"), Collections.emptyMap(),
+                Collections.emptyMap(), Collections.emptySet(), Collections.emptyMap(), Collections.emptySet(),
+                Collections.emptyList(), Collections.emptySet())).reuseTables(previous);
+        assertNotEquals(previous.getCaseMap(), changed.getCaseMap());
+        assertSame(previous.getObjectToMethods(), changed.getObjectToMethods());
+        assertSame(previous.getKeywords(), changed.getKeywords());
+    }
+
+    @Test
+    void registryOverlayIsAppliedAndRemoved() {
+        SpecSnapshot bundled = SpecRegistry.snapshot();
+        SpecSnapshot overlay = new SpecSnapshot(Map.of("specsnapshottest", "SpecSnapshotTest"), Collections.emptyMap(),
+                Collections.emptyMap(), Collections.emptySet(), Collections.emptyMap(), Collections.emptySet(),
+                Collections.emptyList(), Collections.emptySet());
+        try {
+            assertSame(bundled, SpecRegistry.setOverlay("test/overlay.yaml", overlay));
+            assertEquals("SpecSnapshotTest", SpecRegistry.getCaseMap().get("specsnapshottest"));
+            assertSame(bundled.getKeywords(), SpecRegistry.getKeywords());
+        } finally {
+            SpecRegistry.setOverlay("test/overlay.yaml", null);
+        }
+        assertNull(SpecRegistry.getCaseMap().get("specsnapshottest"));
+        assertAllTablesSame(bundled, SpecRegistry.snapshot());
+    }
+
+    private static SpecSnapshot base() {
+        return new SpecSnapshot(
+                Map.of("dim", "Dim", "len", "Len"),
+                Map.of("response", Set.of("write", "end")),
+                Map.of("response", Map.of("write", "Write", "end", "End")),
+                Set.of("len"),
+                Map.of("len", "Len"),
+                Set.of("dim", "len"),
+                Arrays.asList("<>", "&", "="),
+                Set.of("and", "mod"));
+    }
+
+    private static void assertAllTablesSame(SpecSnapshot expected, SpecSnapshot actual) {
+        assertSame(expected.getCaseMap(), actual.getCaseMap());
+        assertSame(expected.getObjectToMethods(), actual.getObjectToMethods());
+        assertSame(expected.getObjectMethodCase(), actual.getObjectMethodCase());
+        assertSame(expected.getSysFunctions(), actual.getSysFunctions());
+        assertSame(expected.getSysFunctionCase(), actual.getSysFunctionCase());
+        assertSame(expected.getKeywords(), actual.getKeywords());
+        assertSame(expected.getOperatorSymbolsWithSpaces(), actual.getOperatorSymbolsWithSpaces());
+        assertSame(expected.getKeywordOpsWithSpaces(), actual.getKeywordOpsWithSpaces());
+    }
+
+    private static void assertSameTables(SpecSnapshot expected, SpecSnapshot actual) {
+        assertEquals(expected.getCaseMap(), actual.getCaseMap());
+        assertEquals(expected.getObjectToMethods(), actual.getObjectToMethods());
+        assertEquals(expected.getObjectMethodCase(), actual.getObjectMethodCase());
+        assertEquals(expected.getSysFunctions(), actual.getSysFunctions());
+        assertEquals(expected.getSysFunctionCase(), actual.getSysFunctionCase());
+        assertEquals(expected.getKeywords(), actual.getKeywords());
+        assertEquals(expected.getOperatorSymbolsWithSpaces(), actual.getOperatorSymbolsWithSpaces());
+        assertEquals(expected.getKeywordOpsWithSpaces(), actual.getKeywordOpsWithSpaces());
+    }
+
+    private static byte[] write(SpecSnapshot snapshot, long checksum) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            snapshot.write(out, checksum);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] bundledYaml() throws IOException {
+        try (InputStream in = SpecSnapshotTest.class.getClassLoader().getResourceAsStream(SpecRegistry.YAML_RESOURCE)) {
+            assertNotNull(in, SpecRegistry.YAML_RESOURCE);
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.ferock.classicasp.completion;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 前缀树：按前缀取值的结果必须与“过滤后按 String.CASE_INSENSITIVE_ORDER 稳定排序”一致
+ */
+class LookupTrieTest {
+
+    @Test
+    void prefixLookupIgnoresCase() {
+        LookupTrie<String> trie = new LookupTrie.Builder<String>()
+                .add("Response", "Response")
+                .add("Request", "Request")
+                .add("ReDim", "ReDim")
+                .add("Server", "Server")
+                .build();
+
+        assertEquals(Arrays.asList("ReDim", "Request", "Response"), trie.withPrefix("re"));
+        assertEquals(Collections.singletonList("Response"), trie.withPrefix("rEs"));
+        assertEquals(Collections.singletonList("Request"), trie.withPrefix("REQ"));
+        assertEquals(Collections.singletonList("Server"), trie.withPrefix("server"));
+        assertTrue(trie.withPrefix("serverx").isEmpty());
+        assertTrue(trie.withPrefix("x").isEmpty());
+        assertEquals(4, trie.withPrefix("").size());
+    }
+
+    @Test
+    void shorterKeysComeFirstAndEqualKeysKeepInsertionOrder() {
+        LookupTrie<String> trie = new LookupTrie.Builder<String>()
+                .add("Left", "Left")
+                .add("LCase", "LCase")
+                .add("Len", "Len")
+                .add("LenB", "LenB")
+                .add("len", "len (second)")
+                .build();
+
+        assertEquals(Arrays.asList("LCase", "Left", "Len", "len (second)", "LenB"), trie.withPrefix("l"));
+    }
+
+    @Test
+    void orderMatchesCaseInsensitiveSort() {
+        Random random = new Random(7);
+        String alphabet = "aAbBzZ_09";
+        List<String> keys = new ArrayList<>();
+        LookupTrie.Builder<String> builder = new LookupTrie.Builder<>();
+        for (int i = 0; i < 3_000; i++) {
+            StringBuilder key = new StringBuilder();
+            int length = 1 + random.nextInt(5);
+            for (int j = 0; j < length; j++) {
+                key.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            keys.add(key.toString());
+            builder.add(key.toString(), key.toString());
+        }
+        LookupTrie<String> trie = builder.build();
+
+        for (String prefix : Arrays.asList("", "a", "B", "_", "0", "ab", "Zz_", "a9b")) {
+            List<String> expected = new ArrayList<>();
+            for (String key : keys) {
+                if (key.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                    expected.add(key);
+                }
+            }
+            // List.sort 是稳定排序：同键保持加入顺序
+            expected.sort(String.CASE_INSENSITIVE_ORDER);
+            assertEquals(expected, trie.withPrefix(prefix), "prefix '" + prefix + "'");
+        }
+    }
+
+    @Test
+    void emptyTrieYieldsNothing() {
+        LookupTrie<Integer> empty = new LookupTrie.Builder<Integer>().build();
+        List<Integer> seen = new ArrayList<>();
+        empty.forEachWithPrefix("a", seen::add);
+        empty.forEachWithPrefix("", seen::add);
+        assertTrue(seen.isEmpty());
+    }
+}
@@ -0,0 +1,120 @@
+package com.ferock.classicasp.formatting;
+
+import com.ferock.classicasp.AspSectionIndex;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 流式格式化（format）与格式化处理器使用的整文件 run 必须得到相同结果
+ */
+class AspFormattingPipelineTest {
+
+    private static final String[] WITHOUT_ASP = {
+            "",
+            "<p>hello</p>\n",
+            "<div>\n  %>\n</div>\n\n\n",
+            "  text %>\n\tEnd If\n\n",
+            "\n\n\n",
+            "no trailing newline %>",
+    };
+
+    @Test
+    void streamingMatchesWholeFileRunOnSamples() throws IOException {
+        List<Path> samples;
+        try (Stream<Path> files = Files.list(Paths.get("test"))) {
+            samples = files.filter(path -> path.toString().endsWith(".asp")).sorted().collect(Collectors.toList());
+        }
+        assertFalse(samples.isEmpty(), "no sample files under test/");
+        for (Path sample : samples) {
+            String text = new String(Files.readAllBytes(sample), StandardCharsets.UTF_8).replace("\r\n", "\n");
+            for (int mask = 0; mask < 16; mask++) {
+                AspFormattingPipeline.Stages stages = new AspFormattingPipeline.Stages(
+                        (mask & 1) != 0, (mask & 2) != 0, (mask & 4) != 0, (mask & 8) != 0);
+                assertEquals(run(text, stages), stream(new StringReader(text), stages), sample + " stages=" + mask);
+            }
+        }
+    }
+
+    @Test
+    void inputWithoutAspCodeIsUnchanged() throws IOException {
+        for (String text : WITHOUT_ASP) {
+            AspSectionIndex index = AspSectionIndex.build(text);
+            assertNull(AspFormattingPipeline.run(text, index, 0, index.getLineCount() - 1, AspFormattingPipeline.Stages.ALL));
+            assertEquals(text, stream(new StringReader(text), AspFormattingPipeline.Stages.ALL));
+            assertEquals(text, stream(new ChunkedReader(text, 1), AspFormattingPipeline.Stages.ALL));
+        }
+    }
+
+    @Test
+    void openTagSplitAcrossReadsIsDetected() throws IOException {
+        String text = "<p>\n  %>\n</p><\n%\n<%\nif x then\ny=1\nend if\n%>\n\n\n";
+        String expected = run(text, AspFormattingPipeline.Stages.ALL);
+        for (int chunk = 1; chunk <= 8; chunk++) {
+            assertEquals(expected, stream(new ChunkedReader(text, chunk), AspFormattingPipeline.Stages.ALL), "chunk=" + chunk);
+        }
+    }
+
+    @Test
+    void simpleFormatterReturnsTextWithoutAspUnchanged() {
+        for (String text : WITHOUT_ASP) {
+            if (!text.trim().isEmpty()) {
+                assertEquals(text, SimpleAspFormatter.format(text));
+            }
+        }
+    }
+
+    private static String run(String text, AspFormattingPipeline.Stages stages) {
+        AspSectionIndex index = AspSectionIndex.build(text);
+        AspFormattingPipeline.RangeEdit edit = AspFormattingPipeline.run(text, index, 0, index.getLineCount() - 1, stages);
+        return edit == null ? text : edit.text;
+    }
+
+    private static String stream(Reader in, AspFormattingPipeline.Stages stages) throws IOException {
+        StringBuilder out = new StringBuilder();
+        AspFormattingPipeline.format(in, out, stages);
+        return out.toString();
+    }
+
+    /**
+     * 每次最多返回 chunk 个字符，用于检查跨越读取边界的 <%
+     */
+    private static final class ChunkedReader extends Reader {
+        private final String text;
+        private final int chunk;
+        private int pos;
+
+        ChunkedReader(String text, int chunk) {
+            this.text = text;
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (pos >= text.length()) {
+                return -1;
+            }
+            int count = Math.min(Math.min(length, chunk), text.length() - pos);
+            text.getChars(pos, pos + count, buffer, offset);
+            pos += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.ferock.classicasp.formatting;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * 关键字与 对象.方法 的大小写规范化（查找表来自 keywords.yaml）
+ */
+class KeywordCaseNormalizerTest {
+
+    @Test
+    void keywordsTakeTheirProperCase() {
+        assertEquals("If x Then", KeywordCaseNormalizer.normalize("if x then"));
+        assertEquals("Dim x : Set y = nothing", KeywordCaseNormalizer.normalize("dim x : set y = nothing"));
+        assertEquals("Do While Not rs.eof", KeywordCaseNormalizer.normalize("do while not rs.eof"));
+    }
+
+    @Test
+    void multiWordKeywordsMatchAsOnePhrase() {
+        assertEquals("End If", KeywordCaseNormalizer.normalize("end if"));
+        assertEquals("Select Case x", KeywordCaseNormalizer.normalize("select case x"));
+        // 多词关键字只按单个空格匹配
+        assertEquals("End   If", KeywordCaseNormalizer.normalize("End   If"));
+    }
+
+    @Test
+    void onlyWholeWordsAreReplaced() {
+        assertEquals("ifx = endif", KeywordCaseNormalizer.normalize("ifx = endif"));
+        assertEquals("end if2", KeywordCaseNormalizer.normalize("end if2"));
+    }
+
+    @Test
+    void methodsFollowTheirObject() {
+        assertEquals("response.Write x", KeywordCaseNormalizer.normalize("response.write x"));
+        assertEquals("RESPONSE . Write(x)", KeywordCaseNormalizer.normalize("RESPONSE . WRITE(x)"));
+        assertEquals("server.CreateObject(y)", KeywordCaseNormalizer.normalize("server.createobject(y)"));
+        // 未知对象与对象名的一部分都不算
+        assertEquals("foo.write x", KeywordCaseNormalizer.normalize("foo.write x"));
+        assertEquals("myresponse.write", KeywordCaseNormalizer.normalize("myresponse.write"));
+        assertEquals("x.response", KeywordCaseNormalizer.normalize("x.response"));
+    }
+
+    @Test
+    void unchangedLineIsReturnedAsIs() {
+        String line = "If x Then y = 1";
+        assertSame(line, KeywordCaseNormalizer.normalize(line));
+        String plain = "a = b + c";
+        assertSame(plain, KeywordCaseNormalizer.normalize(plain));
+    }
+}
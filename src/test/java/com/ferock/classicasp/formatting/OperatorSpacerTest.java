@@ -0,0 +1,51 @@
+package com.ferock.classicasp.formatting;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 运算符空格（规则来自 keywords.yaml 的 formatting 段）
+ */
+class OperatorSpacerTest {
+
+    @Test
+    void spacedOperatorsGetOneSpaceOnEachSide() {
+        assertEquals("x = a + b", OperatorSpacer.apply("x=a+b"));
+        assertEquals("s = a & b", OperatorSpacer.apply("s=a&b"));
+        assertEquals("a > b", OperatorSpacer.apply("a>b"));
+        assertEquals("y = a mod b", OperatorSpacer.apply("y=a mod b"));
+    }
+
+    @Test
+    void compoundOperatorsStayTogether() {
+        assertEquals("if a <> b then", OperatorSpacer.apply("if a<>b then"));
+        assertEquals("if a <= b and c >= d then", OperatorSpacer.apply("if a<=b and c>=d then"));
+        // 中间夹空白的复合运算符同样合并
+        assertEquals("if a <> b then", OperatorSpacer.apply("if a< >b then"));
+        assertEquals("if a <= b", OperatorSpacer.apply("if a< =b"));
+    }
+
+    @Test
+    void whitespaceIsCollapsedAndTrimmed() {
+        assertEquals("x = 1", OperatorSpacer.apply("  x=1  "));
+        assertEquals("END IF", OperatorSpacer.apply("END  IF"));
+        assertEquals("x = 1 :y = 2", OperatorSpacer.apply("x=1 :y=2"));
+    }
+
+    @Test
+    void unaryMinusStaysWithTheNumber() {
+        assertEquals("x = -1", OperatorSpacer.apply("x  =  -1"));
+        assertEquals("a = b * -3", OperatorSpacer.apply("a=b*-3"));
+        assertEquals("f(-1,-2)", OperatorSpacer.apply("f(-1,-2)"));
+        // 只有紧跟数字时才视为一元负号
+        assertEquals("z = - x", OperatorSpacer.apply("z=-x"));
+    }
+
+    @Test
+    void identifiersAndMemberAccessAreUntouched() {
+        assertEquals("response.write x", OperatorSpacer.apply("response.write x"));
+        assertEquals("RESPONSE . WRITE(x)", OperatorSpacer.apply("RESPONSE . WRITE(x)"));
+        assertEquals("modulo = x_mod", OperatorSpacer.apply("modulo=x_mod"));
+    }
+}
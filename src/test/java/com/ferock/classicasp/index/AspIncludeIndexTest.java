@@ -0,0 +1,69 @@
+package com.ferock.classicasp.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * #include 指令扫描：键为带前缀的规范化路径，值为路径首次出现的偏移
+ */
+class AspIncludeIndexTest {
+
+    @Test
+    void fileAndVirtualIncludes() {
+        String text = "<!--#include file=\"inc/header.inc\"-->\n<!-- #include virtual=\"/lib/db.asp\" -->\n";
+        Map<String, Integer> includes = AspIncludeIndex.scan(text);
+
+        assertEquals(2, includes.size());
+        assertEquals(Integer.valueOf(text.indexOf("inc/header.inc")), includes.get("file:inc/header.inc"));
+        assertEquals(Integer.valueOf(text.indexOf("/lib/db.asp")), includes.get("virtual:/lib/db.asp"));
+    }
+
+    @Test
+    void syntaxVariantsAreAccepted() {
+        Map<String, Integer> includes = AspIncludeIndex.scan(
+                "<!--#INCLUDE FILE = 'single.inc' -->"
+                + "<!--#include file=bare.inc-->"
+                + "<!--  #Include  Virtual=\"spaced.asp\"  -->");
+
+        assertTrue(includes.containsKey("file:single.inc"));
+        assertTrue(includes.containsKey("file:bare.inc"));
+        assertTrue(includes.containsKey("virtual:spaced.asp"));
+        assertEquals(3, includes.size());
+    }
+
+    @Test
+    void backslashesAreNormalizedAndFirstOffsetWins() {
+        String text = "<!--#include file=\"inc\\a.inc\"-->\n<!--#include file=\"inc/a.inc\"-->";
+        Map<String, Integer> includes = AspIncludeIndex.scan(text);
+
+        assertEquals(1, includes.size());
+        assertEquals(Integer.valueOf(text.indexOf("inc\\a.inc")), includes.get("file:inc/a.inc"));
+    }
+
+    @Test
+    void otherCommentsAndBrokenDirectivesAreIgnored() {
+        Map<String, Integer> includes = AspIncludeIndex.scan(
+                "<!-- include file=\"no-hash.inc\" -->"
+                + "<!--#include src=\"wrong-attr.inc\"-->"
+                + "<!--#include file-->"
+                + "<!--#include file=\"\"-->"
+                + "<!--#include file=\"ok.inc\"-->"
+                + "<!--#include file=");
+
+        assertEquals(1, includes.size());
+        assertTrue(includes.containsKey("file:ok.inc"));
+        assertTrue(AspIncludeIndex.scan("").isEmpty());
+    }
+
+    @Test
+    void unterminatedQuoteStopsAtLineEnd() {
+        Map<String, Integer> includes = AspIncludeIndex.scan("<!--#include file=\"open.inc\n<!--#include file=\"next.inc\"-->");
+
+        assertTrue(includes.containsKey("file:open.inc"));
+        assertTrue(includes.containsKey("file:next.inc"));
+    }
+}
@@ -0,0 +1,104 @@
+package com.ferock.classicasp.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 声明扫描：字符串、注释、续行符与冒号分隔的语句都不能产生或吞掉声明
+ */
+class VBScriptSymbolScannerTest {
+
+    @Test
+    void declarationsAtFileLevel() {
+        String text = "<%\nFunction Foo(a)\nEnd Function\nSub Bar\nEnd Sub\nConst A = 1, B = 2\nDim x, y(3), z\n"
+                + "Public Shared\nPrivate Const Hidden = 3\n%>";
+        assertEquals(Arrays.asList("FUNCTION Foo", "SUB Bar", "CONST A", "CONST B", "VARIABLE x", "VARIABLE y",
+                "VARIABLE z", "VARIABLE Shared", "CONST Hidden"), describe(text));
+    }
+
+    @Test
+    void offsetPointsAtTheName() {
+        String text = "<% Dim first, second %>";
+        List<VBScriptSymbol> symbols = VBScriptSymbolScanner.scan(text);
+        assertEquals(2, symbols.size());
+        assertEquals(text.indexOf("first"), symbols.get(0).offset);
+        assertEquals(text.indexOf("second"), symbols.get(1).offset);
+    }
+
+    @Test
+    void proceduresMakeDeclarationsLocal() {
+        String text = "<%\nSub Foo\n  Dim inner\nEnd Sub\nDim outer\n%>";
+        assertEquals(Arrays.asList("SUB Foo", "VARIABLE inner (local)", "VARIABLE outer"), describe(text));
+    }
+
+    @Test
+    void classMembersAreFields() {
+        String text = "<%\nClass Person\n  Private mName\n  Public Age, Height\n  Public Default Property Get Name\n"
+                + "    Dim tmp\n  End Property\n  Public Sub Save()\n  End Sub\nEnd Class\nDim p\n%>";
+        assertEquals(Arrays.asList("CLASS Person", "FIELD mName (local)", "FIELD Age (local)", "FIELD Height (local)",
+                "PROPERTY Name (local)", "VARIABLE tmp (local)", "SUB Save (local)", "VARIABLE p"), describe(text));
+    }
+
+    @Test
+    void stringsAndCommentsHideKeywords() {
+        String text = "<%\nx = \"Dim hidden : Function Nope\"\n' Dim commented\nRem Sub Remark\n"
+                + "y = 1 ' : Dim afterComment\nDim shown\n%>";
+        assertEquals(Collections.singletonList("VARIABLE shown"), describe(text));
+    }
+
+    @Test
+    void remOnlyStartsACommentAtStatementStart() {
+        assertEquals(Collections.singletonList("VARIABLE rem1"), describe("<% Dim rem1 %>"));
+        assertEquals(Collections.singletonList("VARIABLE b"), describe("<% x = 1 : Rem note\nDim b %>"));
+    }
+
+    @Test
+    void colonSeparatesStatements() {
+        assertEquals(Arrays.asList("VARIABLE a", "CONST B", "SUB Go"),
+                describe("<% Dim a : Const B = 1 : Sub Go : End Sub %>"));
+    }
+
+    @Test
+    void lineContinuationJoinsStatements() {
+        assertEquals(Arrays.asList("VARIABLE a", "VARIABLE b"), describe("<%\nDim a, _\n    b\n%>"));
+        // _ 之后仍有代码时不是续行符
+        assertEquals(Collections.singletonList("VARIABLE c"), describe("<%\nx = a_b\nDim c\n%>"));
+    }
+
+    @Test
+    void outputExpressionsAndDirectivesAreSkipped() {
+        String text = "<%@ Language=\"VBScript\" %>\n<html>Dim notCode</html>\n<%= Dim %>\n<% Dim real %>";
+        assertEquals(Collections.singletonList("VARIABLE real"), describe(text));
+    }
+
+    @Test
+    void scopeCarriesAcrossCodeBlocks() {
+        String text = "<% Sub Foo %><p>html</p><% Dim inner %><% End Sub %><% Dim outer %>";
+        assertEquals(Arrays.asList("SUB Foo", "VARIABLE inner (local)", "VARIABLE outer"), describe(text));
+    }
+
+    @Test
+    void groupByNameIsCaseInsensitive() {
+        Map<String, List<VBScriptSymbol>> byName = VBScriptSymbolScanner.groupByName(
+                VBScriptSymbolScanner.scan("<% Dim Total\nSub Show\n Dim TOTAL\nEnd Sub %>"));
+        assertEquals(2, byName.size());
+        assertEquals(2, byName.get("total").size());
+        assertTrue(byName.containsKey("show"));
+    }
+
+    private static List<String> describe(String text) {
+        List<String> result = new ArrayList<>();
+        for (VBScriptSymbol symbol : VBScriptSymbolScanner.scan(text)) {
+            result.add(symbol.kind + " " + symbol.name + (symbol.local ? " (local)" : ""));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,75 @@
+package com.ferock.classicasp.parser;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 惰性块能否单独重新解析的边界判断
+ * 只有修改后的文本在完整解析时仍是同一个块，才允许平台只重新解析这一块。
+ */
+class ClassicASPDeclarationParserTest {
+
+    private static final String HEADER = "Sub Foo(a, b)";
+
+    @Test
+    void bodyBetweenStatementBoundariesIsSelfContained() {
+        assertTrue(ClassicASPDeclarationParser.isSelfContainedBody(HEADER, "\n  Dim x\n  x = a + b\n"));
+        assertTrue(ClassicASPDeclarationParser.isSelfContainedBody(HEADER, ": x = 1 :"));
+        assertTrue(ClassicASPDeclarationParser.isSelfContainedBody(HEADER, "\n  y = \"End Sub\" ' End Sub\n"));
+        assertTrue(ClassicASPDeclarationParser.isSelfContainedBody(HEADER, "\n  %>html<%\n"));
+    }
+
+    @Test
+    void bodyMustEndAtStatementBoundary() {
+        // 删掉 End Sub 前的换行：End Sub 不再位于语句开头
+        assertFalse(ClassicASPDeclarationParser.isSelfContainedBody(HEADER, "\n  x = 1"));
+        // 末尾的空白在完整解析时属于 End 语句之前，不属于过程体
+        assertFalse(ClassicASPDeclarationParser.isSelfContainedBody(HEADER, "\n  x = 1\n  "));
+        // 末尾的注释会吞掉其后的 End Sub
+        assertFalse(ClassicASPDeclarationParser.isSelfContainedBody(HEADER, "\n  x = 1\n' note"));
+        // 续行符把 End Sub 接到上一条语句
+        assertFalse(ClassicASPDeclarationParser.isSelfContainedBody(HEADER, "\n  x = 1 _\n"));
+        // 结束时位于 HTML 中
+        assertFalse(ClassicASPDeclarationParser.isSelfContainedBody(HEADER, "\n  x = 1\n%>html"));
+    }
+
+    @Test
+    void bodyMustStartAtStatementBoundaryAfterHeader() {
+        assertFalse(ClassicASPDeclarationParser.isSelfContainedBody(HEADER, " x = 1\n"));
+        assertFalse(ClassicASPDeclarationParser.isSelfContainedBody(HEADER, "  \n  x = 1\n"));
+        // 过程头末尾的注释或未闭合字符串延续到换行
+        assertFalse(ClassicASPDeclarationParser.isSelfContainedBody("Sub Foo() ' note", ": x = 1\n"));
+        assertFalse(ClassicASPDeclarationParser.isSelfContainedBody("Sub Foo() \"open", ": x = 1\n"));
+        assertTrue(ClassicASPDeclarationParser.isSelfContainedBody("Sub Foo() ' note", "\n  x = 1\n"));
+        // 过程头末尾的续行符把开头的换行变成空白
+        assertFalse(ClassicASPDeclarationParser.isSelfContainedBody("Sub Foo() _ ", "\n  x = 1\n"));
+    }
+
+    @Test
+    void bodyMustNotChangeDeclarationStructure() {
+        assertFalse(ClassicASPDeclarationParser.isSelfContainedBody(HEADER, "\n  x = 1\nEnd Sub\nDim y\n"));
+        assertFalse(ClassicASPDeclarationParser.isSelfContainedBody(HEADER, "\n  x = 1\nFunction Bar()\n"));
+        assertFalse(ClassicASPDeclarationParser.isSelfContainedBody(HEADER, "\n  Private Sub Bar()\n"));
+        assertFalse(ClassicASPDeclarationParser.isSelfContainedBody(HEADER, "\n  End Class\n"));
+        // 过程体内的 Dim 不是存根声明
+        assertTrue(ClassicASPDeclarationParser.isSelfContainedBody(HEADER, "\n  Dim y : Const z = 1\n"));
+        // Rem 注释中的 End Sub 不算
+        assertTrue(ClassicASPDeclarationParser.isSelfContainedBody(HEADER, "\n  Rem End Sub\n"));
+    }
+
+    @Test
+    void codeBlockMustStayOnePairWithoutDeclarations() {
+        assertTrue(ClassicASPDeclarationParser.isSelfContainedCodeBlock("<%= x %>"));
+        assertTrue(ClassicASPDeclarationParser.isSelfContainedCodeBlock("<% If a Then %>"));
+        assertTrue(ClassicASPDeclarationParser.isSelfContainedCodeBlock("<% ' Dim x\n y %>"));
+        assertFalse(ClassicASPDeclarationParser.isSelfContainedCodeBlock("<% Dim q %>"));
+        assertFalse(ClassicASPDeclarationParser.isSelfContainedCodeBlock("<% Public x %>"));
+        assertFalse(ClassicASPDeclarationParser.isSelfContainedCodeBlock("<% End Sub %>"));
+        assertFalse(ClassicASPDeclarationParser.isSelfContainedCodeBlock("<% x %>html<% y %>"));
+        assertFalse(ClassicASPDeclarationParser.isSelfContainedCodeBlock("<% x"));
+        assertFalse(ClassicASPDeclarationParser.isSelfContainedCodeBlock(" <% x %>"));
+        assertFalse(ClassicASPDeclarationParser.isSelfContainedCodeBlock("<% x %> "));
+    }
+}
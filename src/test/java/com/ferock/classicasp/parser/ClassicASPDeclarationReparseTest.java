@@ -0,0 +1,68 @@
+package com.ferock.classicasp.parser;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.impl.DebugUtil;
+import com.intellij.testFramework.ParsingTestCase;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+/**
+ * 在过程体首尾编辑后，增量重新解析得到的树必须与完整解析相同
+ * 顶层的 Dim/Const 紧跟在过程之后，过程体边界判断错误时会被吞进过程体。
+ */
+public class ClassicASPDeclarationReparseTest extends BasePlatformTestCase {
+
+    private static final String TEXT = "<%\n"
+            + "Sub Foo(a) ' header\n"
+            + "  x = a\n"
+            + "<caret>End Sub\n"
+            + "Dim top\n"
+            + "Const LIMIT = 10\n"
+            + "Function Bar()\n"
+            + "  Bar = 1\n"
+            + "End Function\n"
+            + "%>\n";
+
+    public void testDeleteNewlineBeforeEnd() {
+        // 在 End Sub 行首按退格
+        checkReparse(TEXT, 1, "");
+    }
+
+    public void testInsertBeforeEnd() {
+        checkReparse(TEXT, 0, "y = 2 ");
+        checkReparse(TEXT, 0, "y = 2\n");
+        checkReparse(TEXT, 0, "' note ");
+        checkReparse(TEXT, 0, "  ");
+        checkReparse(TEXT, 0, "x = 1 _\n");
+    }
+
+    public void testEditAtBodyStart() {
+        String text = TEXT.replace("<caret>", "").replace("' header\n", "' header<caret>\n");
+        checkReparse(text, 0, ": y = 1");
+        checkReparse(text, 1, "");
+        checkReparse(text.replace("' header", "_ "), 0, "\n  y = 1");
+        checkReparse(text.replace("' header<caret>\n", "<caret>: x = 0\n"), 0, "\n");
+    }
+
+    public void testEditInsideBody() {
+        checkReparse(TEXT.replace("<caret>End Sub", "End Sub").replace("x = a", "x = <caret>a"), 1, "b + c");
+    }
+
+    /**
+     * 在光标前删除 removed 个字符并插入 inserted，提交后与同一文本的完整解析比较
+     */
+    private void checkReparse(String text, int removed, String inserted) {
+        myFixture.configureByText("test.asp", text);
+        PsiFile file = myFixture.getFile();
+        // 展开惰性块，编辑时平台才会尝试只重新解析所在的块
+        DebugUtil.psiToString(file, true, false);
+        int offset = myFixture.getCaretOffset();
+        Document document = myFixture.getEditor().getDocument();
+        WriteCommandAction.runWriteCommandAction(getProject(),
+                () -> document.replaceString(offset - removed, offset, inserted));
+        PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+        ParsingTestCase.ensureCorrectReparse(file);
+    }
+}